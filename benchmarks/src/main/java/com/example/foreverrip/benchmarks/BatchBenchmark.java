@@ -0,0 +1,64 @@
+package com.example.foreverrip.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетный перевод: {@code translateBatch} (GET /batch, сортировка и удаление дубликатов)
+ * и {@code translateStream} (POST /batch, по результату на слово).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    @Param({"15", "100000", "1000000"})
+    private int dictionarySize;
+
+    @Param({"10", "1000", "100000"})
+    private int batchSize;
+
+    private TranslationServices services;
+    private List<String> words;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DictionaryFixture fixture = DictionaryFixture.of(dictionarySize);
+        services = new TranslationServices(fixture.textFile(), false);
+        words = fixture.batch(batchSize, new Random(42));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public List<String> translateBatch() {
+        return services.service.translateBatch(words).collectList().block();
+    }
+
+    @Benchmark
+    public Long translateStream() {
+        return services.service.translateStream(Flux.fromIterable(words)).count().block();
+    }
+}
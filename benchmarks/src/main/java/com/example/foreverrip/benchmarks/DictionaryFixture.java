@@ -0,0 +1,216 @@
+package com.example.foreverrip.benchmarks;
+
+import com.example.foreverrip.dictionary.DictionaryCompiler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Словари для бенчмарков и наборы запросов к ним.
+ * Размер 15 - словарь, поставляемый с сервером; остальные размеры генерируются
+ * детерминированно (одинаково в каждом запуске) и кэшируются во временном каталоге,
+ * чтобы форки JMH не генерировали их заново.
+ * <p>
+ * Ключи генерируются без буквы 'ъ', поэтому слово с 'ъ' гарантированно не найдется.
+ */
+public final class DictionaryFixture {
+
+    /** Без 'ё' и 'й': нормализация снимает с них диакритику, и ключ в индексе отличался бы от исходного. */
+    private static final String LETTERS = "абвгдежзиклмнопрстуфхцчшщыьэюя";
+    private static final char MISSING_LETTER = 'ъ';
+    private static final int QUERY_POOL_SIZE = 4096;
+
+    private final Path textFile;
+    private final List<String> keys;
+    private final Set<String> keySet;
+    private final Set<String> tokens;
+
+    private DictionaryFixture(Path textFile, List<String> keys) {
+        this.textFile = textFile;
+        this.keys = keys;
+        this.keySet = new HashSet<>(keys);
+        this.tokens = new HashSet<>();
+        for (String key : keys) {
+            if (key.indexOf(' ') >= 0) {
+                tokens.addAll(List.of(key.split(" ")));
+            }
+        }
+    }
+
+    public static DictionaryFixture of(int size) {
+        try {
+            Path dir = Files.createDirectories(Path.of(System.getProperty("java.io.tmpdir"), "foreverrip-benchmarks"));
+            Path file = dir.resolve("dictionary-" + size + ".txt");
+            if (!Files.exists(file)) {
+                Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+                if (size == 15) {
+                    copyBundled(temp);
+                } else {
+                    generate(size, temp);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return new DictionaryFixture(file, readKeys(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Текстовый файл словаря {@code русское=english}. */
+    public Path textFile() {
+        return textFile;
+    }
+
+    /** Скомпилированный (.ripd) вариант словаря; собирается при первом обращении. */
+    public Path compiledFile() {
+        Path file = textFile.resolveSibling(textFile.getFileName().toString().replace(".txt", ".ripd"));
+        try {
+            if (!Files.exists(file)) {
+                DictionaryCompiler.compile(textFile, file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /** Ключи словаря - точные попадания. */
+    public String[] hits(Random random) {
+        String[] words = new String[QUERY_POOL_SIZE];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = keys.get(random.nextInt(keys.size()));
+        }
+        return words;
+    }
+
+    /** Слова, которых нет ни целиком, ни подстрокой: проходят все три стадии поиска. */
+    public String[] misses(Random random) {
+        String[] words = new String[QUERY_POOL_SIZE];
+        for (int i = 0; i < words.length; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            int at = random.nextInt(key.length() + 1);
+            words[i] = key.substring(0, at) + MISSING_LETTER + key.substring(at);
+        }
+        return words;
+    }
+
+    /**
+     * Части однословных ключей, которые сами не являются ни ключом, ни словом фразы,
+     * поэтому находятся только на стадии поиска подстроки.
+     */
+    public String[] substrings(Random random) {
+        List<String> candidates = new ArrayList<>();
+        for (String key : keys) {
+            if (key.length() >= 5 && key.indexOf(' ') < 0) {
+                String part = key.substring(1, key.length() - 1);
+                if (!tokens.contains(part) && !keySet.contains(part)) {
+                    candidates.add(part);
+                }
+            }
+            if (candidates.size() >= QUERY_POOL_SIZE * 4) {
+                break;
+            }
+        }
+        String[] words = new String[QUERY_POOL_SIZE];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = candidates.get(random.nextInt(candidates.size()));
+        }
+        return words;
+    }
+
+    /**
+     * Однословные ключи с одной заменой буквы, которые сами не являются ключом:
+     * находятся только поиском с опечатками.
+     */
+    public String[] typos(Random random) {
+        String[] words = new String[QUERY_POOL_SIZE];
+        for (int i = 0; i < words.length; ) {
+            String key = keys.get(random.nextInt(keys.size()));
+            if (key.length() < 5 || key.indexOf(' ') >= 0) {
+                continue;
+            }
+            int at = random.nextInt(key.length());
+            String typo = key.substring(0, at) + LETTERS.charAt(random.nextInt(LETTERS.length())) + key.substring(at + 1);
+            if (!keySet.contains(typo)) {
+                words[i++] = typo;
+            }
+        }
+        return words;
+    }
+
+    /** Пакет из {@code count} слов: примерно 80% попаданий и 20% промахов. */
+    public List<String> batch(int count, Random random) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            words.add(random.nextInt(5) == 0 ? key + MISSING_LETTER : key);
+        }
+        return words;
+    }
+
+    private static void copyBundled(Path target) throws IOException {
+        try (InputStream in = DictionaryFixture.class.getResourceAsStream("/dictionary.txt")) {
+            if (in == null) {
+                throw new IOException("dictionary.txt is not on the classpath");
+            }
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void generate(int size, Path target) throws IOException {
+        Random random = new Random(size);
+        Set<String> keys = new LinkedHashSet<>(size * 2);
+        while (keys.size() < size) {
+            String key = word(random);
+            if (random.nextInt(5) == 0) {
+                key = key + " " + word(random);
+            }
+            keys.add(key);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            int i = 0;
+            for (String key : keys) {
+                writer.write(key);
+                writer.write("=word");
+                writer.write(Integer.toString(i++));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String word(Random random) {
+        int length = 3 + random.nextInt(8);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return word.toString();
+    }
+
+    private static List<String> readKeys(Path file) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int separator = line.indexOf('=');
+            if (separator > 0 && !line.startsWith("#")) {
+                keys.add(line.substring(0, separator));
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.foreverrip.benchmarks;
+
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.dictionary.DictionaryCompiler;
+import com.example.foreverrip.dictionary.DictionaryIndex;
+import com.example.foreverrip.dictionary.DictionaryLoader;
+import com.example.foreverrip.dictionary.MappedDictionaryIndex;
+import com.example.foreverrip.service.TextNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка словаря: разбор текста с построением индекса в памяти, открытие
+ * скомпилированного файла и сама компиляция. Каждый вызов - отдельная холодная загрузка,
+ * поэтому режим - однократный замер.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadingBenchmark {
+
+    @Param({"15", "100000", "1000000"})
+    private int dictionarySize;
+
+    private DictionaryFixture fixture;
+    private DictionaryLoader loader;
+    private Path compiled;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = DictionaryFixture.of(dictionarySize);
+        loader = new DictionaryLoader(new TextNormalizer(new NormalizationProperties()));
+        compiled = fixture.compiledFile();
+        output = Files.createTempFile("dictionary-" + dictionarySize, ".ripd");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public DictionaryIndex loadText() throws IOException {
+        try (InputStream in = Files.newInputStream(fixture.textFile())) {
+            return loader.load(in, fixture.textFile().toString(), 1);
+        }
+    }
+
+    @Benchmark
+    public DictionaryIndex openCompiled() throws IOException {
+        return MappedDictionaryIndex.open(compiled, 1);
+    }
+
+    @Benchmark
+    public int compile() throws IOException {
+        return DictionaryCompiler.compile(fixture.textFile(), output);
+    }
+}
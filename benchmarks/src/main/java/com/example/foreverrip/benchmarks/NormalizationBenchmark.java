@@ -0,0 +1,74 @@
+package com.example.foreverrip.benchmarks;
+
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.service.TextNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нормализация входных слов, взятых из словаря.
+ * cyrillic - слова как есть (быстрый путь), mixed - с заглавной буквой, латиницей
+ * полной ширины и комбинируемым знаком (полный NFKC-путь).
+ * {@code normalize} идет через кэш нормализатора, {@code normalizeUncached} - всегда полный путь.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NormalizationBenchmark {
+
+    @Param({"15", "100000", "1000000"})
+    private int dictionarySize;
+
+    @Param({"cyrillic", "mixed"})
+    private String script;
+
+    private TextNormalizer normalizer;
+    private String[] inputs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        normalizer = new TextNormalizer(new NormalizationProperties());
+        inputs = DictionaryFixture.of(dictionarySize).hits(new Random(42));
+        if ("mixed".equals(script)) {
+            for (int i = 0; i < inputs.length; i++) {
+                String word = inputs[i];
+                inputs[i] = Character.toUpperCase(word.charAt(0)) + word.substring(1) + "́ Ｔｅｘｔ";
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String pick(String[] words) {
+            return words[next++ & (words.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public String normalize(Cursor cursor) {
+        return normalizer.normalize(cursor.pick(inputs));
+    }
+
+    @Benchmark
+    public String normalizeUncached(Cursor cursor) {
+        return normalizer.normalizeUncached(cursor.pick(inputs));
+    }
+}
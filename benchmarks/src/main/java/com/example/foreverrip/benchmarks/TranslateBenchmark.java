@@ -0,0 +1,93 @@
+package com.example.foreverrip.benchmarks;
+
+import com.example.foreverrip.service.Translation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перевод одного слова через {@code TranslationService.translate}: точное попадание,
+ * промах (все стадии поиска впустую), попадание только на стадии поиска подстроки
+ * и слово с опечаткой в режиме {@code fuzzy}.
+ * Включает переход в CPU-пул, как и при обработке HTTP-запроса.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TranslateBenchmark {
+
+    @Param({"15", "100000", "1000000"})
+    private int dictionarySize;
+
+    /** text - индекс в памяти, compiled - отображенный в память .ripd */
+    @Param({"text", "compiled"})
+    private String dictionaryFormat;
+
+    private TranslationServices services;
+    private String[] hits;
+    private String[] misses;
+    private String[] substrings;
+    private String[] typos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DictionaryFixture fixture = DictionaryFixture.of(dictionarySize);
+        services = new TranslationServices(
+            "compiled".equals(dictionaryFormat) ? fixture.compiledFile() : fixture.textFile(), false);
+        Random random = new Random(42);
+        hits = fixture.hits(random);
+        misses = fixture.misses(random);
+        substrings = fixture.substrings(random);
+        typos = fixture.typos(random);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String pick(String[] words) {
+            return words[next++ & (words.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public Translation hit(Cursor cursor) {
+        return services.service.translate(cursor.pick(hits)).block();
+    }
+
+    @Benchmark
+    public Translation miss(Cursor cursor) {
+        return services.service.translate(cursor.pick(misses)).block();
+    }
+
+    @Benchmark
+    public Translation substringFallback(Cursor cursor) {
+        return services.service.translate(cursor.pick(substrings)).block();
+    }
+
+    @Benchmark
+    public Translation fuzzyTypo(Cursor cursor) {
+        return services.service.translate(cursor.pick(typos), true).block();
+    }
+}
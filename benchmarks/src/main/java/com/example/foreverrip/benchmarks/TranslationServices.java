@@ -0,0 +1,58 @@
+package com.example.foreverrip.benchmarks;
+
+import com.example.foreverrip.config.DictionaryProperties;
+import com.example.foreverrip.config.ExecutionProperties;
+import com.example.foreverrip.config.FuzzyProperties;
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.config.ResultCacheProperties;
+import com.example.foreverrip.config.ShardingProperties;
+import com.example.foreverrip.config.SnapshotProperties;
+import com.example.foreverrip.config.UpdatesProperties;
+import com.example.foreverrip.dictionary.DictionaryHolder;
+import com.example.foreverrip.dictionary.ShardMembership;
+import com.example.foreverrip.service.TextNormalizer;
+import com.example.foreverrip.service.TranslationExecutor;
+import com.example.foreverrip.service.TranslationMetrics;
+import com.example.foreverrip.service.TranslationResultCache;
+import com.example.foreverrip.service.TranslationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.file.Path;
+
+/**
+ * Серверный конвейер перевода, собранный вручную, без Spring-контекста и HTTP.
+ * Кэш результатов по умолчанию выключен, чтобы каждый вызов проходил весь конвейер,
+ * снимок для быстрого старта не используется: словарь всегда разбирается из текста.
+ */
+final class TranslationServices implements AutoCloseable {
+
+    final TextNormalizer normalizer;
+    final DictionaryHolder dictionary;
+    final TranslationExecutor executor;
+    final TranslationService service;
+
+    TranslationServices(Path dictionaryFile, boolean resultCache) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        DictionaryProperties dictionaryProperties = new DictionaryProperties();
+        dictionaryProperties.setLocation(dictionaryFile);
+        dictionaryProperties.setWatch(false);
+
+        ResultCacheProperties cacheProperties = new ResultCacheProperties();
+        cacheProperties.setEnabled(resultCache);
+
+        ShardMembership shard = new ShardMembership(new ShardingProperties());
+        this.normalizer = new TextNormalizer(new NormalizationProperties());
+        this.dictionary = new DictionaryHolder(dictionaryProperties, new SnapshotProperties(),
+            new UpdatesProperties(), normalizer, shard, event -> { }, registry);
+        this.executor = new TranslationExecutor(new ExecutionProperties(), registry);
+        this.service = new TranslationService(dictionary, normalizer,
+            new TranslationResultCache(cacheProperties, registry), executor, new TranslationMetrics(registry),
+            new FuzzyProperties(), shard);
+    }
+
+    @Override
+    public void close() {
+        executor.destroy();
+    }
+}
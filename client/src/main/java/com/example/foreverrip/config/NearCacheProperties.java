@@ -0,0 +1,44 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки клиентского кэша переводов (префикс {@code translation.client.near-cache}).
+ */
+@ConfigurationProperties(prefix = "translation.client.near-cache")
+public class NearCacheProperties {
+
+    private boolean enabled = true;
+
+    /** Максимальное число слов в кэше. */
+    private long maximumSize = 10_000;
+
+    /** Сколько держать полученный перевод; должно быть не больше допустимой задержки обновления словаря. */
+    private Duration ttl = Duration.ofMinutes(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.foreverrip.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бюджет повторов (token bucket): каждый исходный запрос добавляет {@code ratio} жетона,
+ * каждый повтор забирает один. Когда сервер отказывает массово, повторы быстро
+ * заканчиваются и нагрузка на него не умножается.
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    public RetryBudget(double ratio, int reserve) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.capacity = Math.max(1, reserve) * SCALE;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    public void onRequest() {
+        balance.getAndUpdate(current -> Math.min(capacity, current + deposit));
+    }
+
+    public boolean tryRetry() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    public double available() {
+        return (double) balance.get() / SCALE;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.foreverrip.config;
+
+import com.example.foreverrip.sharding.ShardRing;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шардированный словарь (префикс {@code translation.client.sharding}): список серверов-шардов.
+ * Имена узлов и {@code virtual-nodes} должны совпадать с {@code translation.sharding}
+ * на серверах. Пустой список - один сервер из {@code translation.client.http.base-url}.
+ */
+@ConfigurationProperties(prefix = "translation.client.sharding")
+public class ShardingProperties {
+
+    private List<Node> nodes = new ArrayList<>();
+
+    /** Точек на кольце у каждого узла. */
+    private int virtualNodes = ShardRing.DEFAULT_VIRTUAL_NODES;
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Один сервер-шард.
+     */
+    public static class Node {
+
+        /** Имя узла на кольце, как в {@code translation.sharding.node} сервера. */
+        private String name;
+
+        private String baseUrl;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public void setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + baseUrl;
+        }
+    }
+}
@@ -1,73 +1,249 @@
 package com.example.foreverrip.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.netty.channel.ChannelOption;
-import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.ReadTimeoutException;
 import io.netty.handler.timeout.WriteTimeoutHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.client.reactive.ClientHttpConnector;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
 
 @Configuration
 public class WebClientConfig {
-    
+
     private static final Logger log = LoggerFactory.getLogger(WebClientConfig.class);
-    
+
+    private static final String WRITE_TIMEOUT_HANDLER = "translationWriteTimeout";
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(
+        HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+
+    /**
+     * Именованный пул соединений; метрики пула публикуются как reactor.netty.connection.provider.*
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider translationConnectionProvider(WebClientProperties properties) {
+        WebClientProperties.Pool pool = properties.getPool();
+        return ConnectionProvider.builder(pool.getName())
+            .maxConnections(pool.getMaxConnections())
+            .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+            .maxIdleTime(pool.getMaxIdleTime())
+            .maxLifeTime(pool.getMaxLifeTime())
+            .evictInBackground(pool.getEvictInBackground())
+            .metrics(true)
+            .build();
+    }
+
     @Bean
-    public WebClient translationWebClient() {
-        HttpClient httpClient = HttpClient.create()
-            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
-            .responseTimeout(Duration.ofSeconds(5))
-            .doOnConnected(conn -> 
-                conn.addHandlerLast(new ReadTimeoutHandler(5, TimeUnit.SECONDS))
-                    .addHandlerLast(new WriteTimeoutHandler(5, TimeUnit.SECONDS)));
-        
+    public WebClient translationWebClient(WebClientProperties properties, ConnectionProvider connectionProvider,
+                                          MeterRegistry registry) {
+        long timeoutMillis = properties.getResponseTimeout().toMillis();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .keepAlive(true)
+            .protocol(properties.isHttp2()
+                ? new HttpProtocol[] {HttpProtocol.H2C, HttpProtocol.HTTP11}
+                : new HttpProtocol[] {HttpProtocol.HTTP11})
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+            .responseTimeout(properties.getResponseTimeout())
+            // Таймаут записи живет только на время запроса: обработчик на всё соединение
+            // срабатывал бы и на простаивающем в пуле соединении и рвал бы keep-alive
+            .doOnRequest((request, conn) -> conn.addHandlerLast(WRITE_TIMEOUT_HANDLER,
+                new WriteTimeoutHandler(timeoutMillis, TimeUnit.MILLISECONDS)))
+            .doOnResponse((response, conn) -> conn.removeHandler(WRITE_TIMEOUT_HANDLER));
+
         ClientHttpConnector connector = new ReactorClientHttpConnector(httpClient);
-        
+
         return WebClient.builder()
-            .baseUrl("http://localhost:8081")  // ← ИСПРАВЛЕНО: убрали /server
+            .baseUrl(properties.getBaseUrl())
             .clientConnector(connector)
-            .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-            .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
             .defaultHeader(HttpHeaders.USER_AGENT, "TranslationWebClient/1.0")
-            .filter(logRequest())
-            .filter(logResponse())
-            .filter((request, next) -> 
-                next.exchange(request)
-                    .timeout(Duration.ofSeconds(10))
-                    .retryWhen(Retry.backoff(3, Duration.ofSeconds(1))
-                        .filter(throwable -> {
-                            log.warn("Retrying request due to error: {}", throwable.getMessage());
-                            return true;
-                        })
-                    )
-            )
+            .filter(serverRequestMetrics(registry))
+            .filter(retryPolicy(properties.getRetry(), registry))
             .build();
     }
-    
-    private ExchangeFilterFunction logRequest() {
-        return ExchangeFilterFunction.ofRequestProcessor(clientRequest -> {
-            log.info("Request: {} {}", clientRequest.method(), clientRequest.url());
-            return Mono.just(clientRequest);
-        });
+
+    /**
+     * Повторяет только идемпотентные запросы и только после временных сбоев:
+     * ошибки соединения, таймауты и статусы из {@code retry.statuses}. 4xx не повторяются.
+     * Каждый повтор оплачивается из {@link RetryBudget}; когда бюджет исчерпан,
+     * ошибка отдается сразу. Пауза - экспоненциальная с разбросом, но не меньше Retry-After
+     * ответа: сервер, сбрасывающий нагрузку, не получает повтор раньше, чем просил.
+     */
+    private ExchangeFilterFunction retryPolicy(WebClientProperties.Retry retry, MeterRegistry registry) {
+        RetryBudget budget = new RetryBudget(retry.getBudgetRatio(), retry.getBudgetReserve());
+        Gauge.builder("translation.client.retry.budget", budget, RetryBudget::available)
+            .description("Retries currently available in the retry budget")
+            .register(registry);
+        Counter retried = Counter.builder("translation.client.retries")
+            .description("Requests retried after a transient failure")
+            .tag("outcome", "retried")
+            .register(registry);
+        Counter budgetExhausted = Counter.builder("translation.client.retries")
+            .description("Retryable failures that were not retried because the budget was empty")
+            .tag("outcome", "budget-exhausted")
+            .register(registry);
+        Counter retryAfterTooLong = Counter.builder("translation.client.retries")
+            .description("Retryable failures that were not retried because Retry-After exceeded max-backoff")
+            .tag("outcome", "retry-after")
+            .register(registry);
+
+        return (request, next) -> {
+            budget.onRequest();
+            if (!IDEMPOTENT_METHODS.contains(request.method())) {
+                return next.exchange(request);
+            }
+
+            return Mono.defer(() -> exchangeFailingOnRetryableStatus(request, next, retry.getStatuses()))
+                .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                    Throwable failure = signal.failure();
+                    if (signal.totalRetries() >= retry.getMaxAttempts() || !isRetryable(failure, retry.getStatuses())) {
+                        return Mono.error(failure);
+                    }
+                    Duration delay = backoff(retry, signal.totalRetries());
+                    Duration retryAfter = retryAfter(failure);
+                    if (retryAfter != null) {
+                        if (retryAfter.compareTo(retry.getMaxBackoff()) > 0) {
+                            // Сервер просит подождать дольше, чем запрос готов ждать: не нагружаем его повтором
+                            retryAfterTooLong.increment();
+                            return Mono.error(failure);
+                        }
+                        delay = retryAfter.compareTo(delay) > 0 ? retryAfter : delay;
+                    }
+                    if (!budget.tryRetry()) {
+                        budgetExhausted.increment();
+                        return Mono.error(failure);
+                    }
+                    retried.increment();
+                    log.warn("Retrying {} {} in {} ms (attempt {}) due to: {}", request.method(), request.url(),
+                        delay.toMillis(), signal.totalRetries() + 1, failure.toString());
+                    return Mono.delay(delay);
+                })));
+        };
+    }
+
+    /**
+     * Ответ с повторяемым статусом превращается в ошибку, чтобы до него добрался retryWhen;
+     * остальные ответы (включая 4xx) отдаются как есть.
+     */
+    private static Mono<ClientResponse> exchangeFailingOnRetryableStatus(ClientRequest request, ExchangeFunction next,
+                                                                         Set<Integer> retryableStatuses) {
+        return next.exchange(request).flatMap(response ->
+            retryableStatuses.contains(response.statusCode().value())
+                ? response.createException().flatMap(Mono::error)
+                : Mono.just(response));
+    }
+
+    /**
+     * Пауза перед повтором номер {@code retries + 1}: min-backoff * 2^retries, не больше max-backoff,
+     * со случайным разбросом +-50%, чтобы повторы разных запросов не приходили одновременно.
+     */
+    private static Duration backoff(WebClientProperties.Retry retry, long retries) {
+        long base = retry.getMinBackoff().toMillis() << Math.min(retries, 20);
+        long capped = Math.min(base, retry.getMaxBackoff().toMillis());
+        long jitter = capped / 2;
+        return Duration.ofMillis(capped - jitter + ThreadLocalRandom.current().nextLong(2 * jitter + 1));
+    }
+
+    /**
+     * Retry-After ответа с ошибкой - число секунд или HTTP-дата; null, если заголовка нет.
+     */
+    private static Duration retryAfter(Throwable failure) {
+        if (!(failure instanceof WebClientResponseException e)) {
+            return null;
+        }
+        String value = e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                Duration until = Duration.between(Instant.now(),
+                    ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (DateTimeParseException invalid) {
+                return null;
+            }
+        }
+    }
+
+    private static boolean isRetryable(Throwable throwable, Set<Integer> retryableStatuses) {
+        if (throwable instanceof WebClientResponseException e) {
+            return retryableStatuses.contains(e.getStatusCode().value());
+        }
+        return throwable instanceof WebClientRequestException
+            || throwable instanceof TimeoutException
+            || throwable instanceof ReadTimeoutException;
+    }
+
+    /**
+     * Время обращения к серверу (вместе с повторами) до получения заголовков ответа -
+     * {@code translation.client.server.requests} с тегом status: код ответа или IO_ERROR.
+     * Таймеры создаются один раз на статус; журнал каждого запроса - только на DEBUG.
+     */
+    private ExchangeFilterFunction serverRequestMetrics(MeterRegistry registry) {
+        Map<Integer, Timer> byStatus = new ConcurrentHashMap<>();
+        IntFunction<Timer> statusTimer = status -> byStatus.computeIfAbsent(status,
+            s -> serverRequestTimer(registry, Integer.toString(s)));
+        Timer ioErrors = serverRequestTimer(registry, "IO_ERROR");
+
+        return (request, next) -> {
+            long start = System.nanoTime();
+            return next.exchange(request)
+                .doOnNext(response -> {
+                    long elapsed = System.nanoTime() - start;
+                    statusTimer.apply(response.statusCode().value()).record(elapsed, TimeUnit.NANOSECONDS);
+                    if (log.isDebugEnabled()) {
+                        log.debug("{} {} -> {} in {} ms", request.method(), request.url(),
+                            response.statusCode().value(), elapsed / 1_000_000);
+                    }
+                })
+                .doOnError(error -> {
+                    ioErrors.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    log.debug("{} {} failed", request.method(), request.url(), error);
+                });
+        };
     }
-    
-    private ExchangeFilterFunction logResponse() {
-        return ExchangeFilterFunction.ofResponseProcessor(clientResponse -> {
-            log.info("Response status: {}", clientResponse.statusCode());
-            return Mono.just(clientResponse);
-        });
+
+    private static Timer serverRequestTimer(MeterRegistry registry, String status) {
+        return Timer.builder("translation.client.server.requests")
+            .description("Time until the translation server responded, including retries")
+            .tag("status", status)
+            .register(registry);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,231 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Настройки HTTP-клиента к серверу перевода (префикс {@code translation.client.http}).
+ */
+@ConfigurationProperties(prefix = "translation.client.http")
+public class WebClientProperties {
+
+    private String baseUrl = "http://localhost:8081";
+
+    private Duration connectTimeout = Duration.ofSeconds(3);
+
+    /** Таймаут ответа одной попытки. */
+    private Duration responseTimeout = Duration.ofSeconds(5);
+
+    /** Предлагать серверу HTTP/2 без TLS (h2c); на сервере нужен server.http2.enabled. */
+    private boolean http2 = false;
+
+    /**
+     * Сколько слов одного пакета одновременно запрашивается у сервера (без шардов):
+     * при замедлении сервера пакет не превращается в сотни одновременных запросов и повторов.
+     */
+    private int batchConcurrency = 16;
+
+    private final Pool pool = new Pool();
+
+    private final Retry retry = new Retry();
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public void setResponseTimeout(Duration responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public int getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
+    public void setBatchConcurrency(int batchConcurrency) {
+        this.batchConcurrency = batchConcurrency;
+    }
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    /**
+     * Пул соединений Reactor Netty.
+     */
+    public static class Pool {
+
+        private String name = "translation-server";
+
+        private int maxConnections = 200;
+
+        /** Сколько запросов может ждать свободное соединение; дальше - немедленная ошибка. */
+        private int pendingAcquireMaxCount = 1000;
+
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+
+        /** Соединение, простоявшее дольше, закрывается. */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+
+        /** Период фоновой проверки простаивающих соединений. */
+        private Duration evictInBackground = Duration.ofSeconds(30);
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getPendingAcquireMaxCount() {
+            return pendingAcquireMaxCount;
+        }
+
+        public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        }
+
+        public Duration getPendingAcquireTimeout() {
+            return pendingAcquireTimeout;
+        }
+
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+        }
+
+        public Duration getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        public void setMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+
+        public Duration getMaxLifeTime() {
+            return maxLifeTime;
+        }
+
+        public void setMaxLifeTime(Duration maxLifeTime) {
+            this.maxLifeTime = maxLifeTime;
+        }
+
+        public Duration getEvictInBackground() {
+            return evictInBackground;
+        }
+
+        public void setEvictInBackground(Duration evictInBackground) {
+            this.evictInBackground = evictInBackground;
+        }
+    }
+
+    /**
+     * Повторы: только идемпотентные запросы, только временные ошибки, и не больше,
+     * чем разрешает бюджет повторов. Если сервер прислал Retry-After, повтор ждет не меньше
+     * указанного времени, а если оно больше {@code max-backoff} - не выполняется вовсе.
+     */
+    public static class Retry {
+
+        private int maxAttempts = 2;
+
+        private Duration minBackoff = Duration.ofMillis(100);
+
+        private Duration maxBackoff = Duration.ofSeconds(1);
+
+        /** Статусы ответа, после которых запрос можно повторить. */
+        private Set<Integer> statuses = Set.of(502, 503, 504);
+
+        /** Доля повторов от числа запросов: 0.1 - не больше одного повтора на десять запросов. */
+        private double budgetRatio = 0.1;
+
+        /** Запас повторов, доступный даже при малом трафике; он же верхняя граница накопления. */
+        private int budgetReserve = 10;
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getMinBackoff() {
+            return minBackoff;
+        }
+
+        public void setMinBackoff(Duration minBackoff) {
+            this.minBackoff = minBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public Set<Integer> getStatuses() {
+            return statuses;
+        }
+
+        public void setStatuses(Set<Integer> statuses) {
+            this.statuses = statuses;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+
+        public int getBudgetReserve() {
+            return budgetReserve;
+        }
+
+        public void setBudgetReserve(int budgetReserve) {
+            this.budgetReserve = budgetReserve;
+        }
+    }
+}
@@ -23,26 +23,26 @@ public class ClientController {
     
     @GetMapping("/translate/{word}")
     public Mono<String> translate(@PathVariable String word) {
-        log.info("API: Received request to translate word: {}", word);
+        log.debug("API: Received request to translate word: {}", word);
         return translationService.translateWord(word);
     }
     
     @GetMapping("/translate/batch")
     public Flux<String> translateBatch(@RequestParam String words) {
         List<String> wordList = Arrays.asList(words.split(","));
-        log.info("API: Batch translation request for words: {}", wordList);
+        log.debug("API: Batch translation request for words: {}", wordList);
         return translationService.translateWords(wordList);
     }
     
     @GetMapping("/health")
     public Mono<String> health() {
-        log.info("API: Health check requested");
+        log.debug("API: Health check requested");
         return translationService.checkHealth();
     }
     
     @GetMapping("/test")
     public Flux<String> test() {
-        log.info("API: Test endpoint called");
+        log.debug("API: Test endpoint called");
         List<String> testWords = Arrays.asList("привет", "мир", "дом", "кот", "собака");
         return translationService.translateWords(testWords);
     }
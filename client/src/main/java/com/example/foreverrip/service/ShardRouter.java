@@ -0,0 +1,57 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.ShardingProperties;
+import com.example.foreverrip.config.ShardingProperties.Node;
+import com.example.foreverrip.sharding.ShardRing;
+import com.example.foreverrip.text.WordNormalization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Выбор сервера-шарда для слова: то же кольцо {@link ShardRing}, что и на серверах,
+ * и та же нормализация, что применяется к ключам словаря, поэтому слово уходит
+ * ровно на тот узел, который загрузил его точный ключ.
+ */
+@Component
+public class ShardRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+    private final List<Node> shards;
+    private final ShardRing ring;
+
+    public ShardRouter(ShardingProperties properties) {
+        this.shards = List.copyOf(properties.getNodes());
+        if (shards.isEmpty()) {
+            this.ring = null;
+            return;
+        }
+        for (Node shard : shards) {
+            if (shard.getName() == null || shard.getBaseUrl() == null) {
+                throw new IllegalArgumentException("Every translation.client.sharding node needs name and base-url: "
+                    + shard);
+            }
+        }
+        this.ring = new ShardRing(shards.stream().map(Node::getName).toList(), properties.getVirtualNodes());
+        log.info("Translation server is sharded: {}", shards);
+    }
+
+    public boolean isSharded() {
+        return ring != null;
+    }
+
+    public List<Node> shards() {
+        return shards;
+    }
+
+    /**
+     * Шард, которому принадлежит точный ключ этого слова.
+     */
+    public Node route(String word) {
+        String key = WordNormalization.normalize(word);
+        return shards.get(ring.ownerIndex(key == null ? "" : key));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.sharding.MatchKind;
+
+/**
+ * Ответ одного шарда на слово: перевод и как он найден. Та же форма, что у строк
+ * NDJSON пакетного перевода на сервере; ответ без вида совпадения (сервер без шардирования)
+ * считается окончательным.
+ */
+record ShardTranslation(String word, String translation, MatchKind match, Integer rank) {
+
+    boolean isFinal() {
+        return match == null || match == MatchKind.EXACT;
+    }
+
+    /**
+     * Лучший из двух ответов по правилам {@link MatchKind}; при равенстве - этот.
+     */
+    ShardTranslation better(ShardTranslation other) {
+        return MatchKind.compare(kind(), order(), other.kind(), other.order()) <= 0 ? this : other;
+    }
+
+    private MatchKind kind() {
+        return match == null ? MatchKind.EXACT : match;
+    }
+
+    private int order() {
+        return rank == null ? Integer.MAX_VALUE : rank;
+    }
+}
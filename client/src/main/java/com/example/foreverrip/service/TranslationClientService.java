@@ -1,66 +1,318 @@
 package com.example.foreverrip.service;
 
+import com.example.foreverrip.config.NearCacheProperties;
+import com.example.foreverrip.config.ShardingProperties.Node;
+import com.example.foreverrip.config.WebClientProperties;
+import com.example.foreverrip.sharding.MatchKind;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class TranslationClientService {
     
     private static final Logger log = LoggerFactory.getLogger(TranslationClientService.class);
     private final WebClient webClient;
+    private final ShardRouter shardRouter;
+    private final int batchConcurrency;
     
-    public TranslationClientService(WebClient webClient) {
+    /**
+     * Ближний кэш: слово -> ответ сервера. Пока запрос к серверу в полете, в кэше лежит
+     * его future, поэтому одновременные запросы одного слова ждут один общий ответ.
+     * Неудачные ответы Caffeine из кэша удаляет сам.
+     */
+    private final AsyncCache<String, String> nearCache;
+    private final Counter serverCalls;
+    private final Counter savedByCache;
+    private final Counter savedByCoalescing;
+    private final Timer translateTimer;
+    private final Counter scatteredWords;
+    
+    public TranslationClientService(WebClient webClient, WebClientProperties httpProperties,
+                                    NearCacheProperties cacheProperties, ShardRouter shardRouter,
+                                    MeterRegistry registry) {
         this.webClient = webClient;
+        this.shardRouter = shardRouter;
+        this.batchConcurrency = httpProperties.getBatchConcurrency();
+        
+        if (cacheProperties.isEnabled()) {
+            this.nearCache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfterWrite(cacheProperties.getTtl())
+                .recordStats()
+                .buildAsync();
+            CaffeineCacheMetrics.monitor(registry, nearCache.synchronous(), "translation.client.near");
+        } else {
+            this.nearCache = null;
+        }
+        
+        this.serverCalls = Counter.builder("translation.client.server.calls")
+            .description("Translation requests actually sent to the server")
+            .register(registry);
+        this.savedByCache = Counter.builder("translation.client.server.calls.saved")
+            .description("Translation requests answered without a server call")
+            .tag("reason", "near-cache")
+            .register(registry);
+        this.savedByCoalescing = Counter.builder("translation.client.server.calls.saved")
+            .description("Translation requests answered without a server call")
+            .tag("reason", "coalesced")
+            .register(registry);
+        this.translateTimer = Timer.builder("translation.client.translate")
+            .description("Time to translate one word: near cache, coalesced or server call")
+            .register(registry);
+        this.scatteredWords = Counter.builder("translation.client.shard.scattered")
+            .description("Words without an exact key on their shard, sent to all other shards")
+            .register(registry);
     }
     
+    /**
+     * Время перевода от подписки до ответа пишется в {@code translation.client.translate};
+     * журнал каждого слова - только на DEBUG.
+     */
     public Mono<String> translateWord(String russianWord) {
-        log.info("Sending translation request for: {}", russianWord);
+        Mono<String> timed = Mono.defer(() -> {
+            long start = System.nanoTime();
+            return cachedTranslation(russianWord)
+                .doOnSuccess(translation -> {
+                    translateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    log.debug("Translation received: {} -> {}", russianWord, translation);
+                });
+        });
         
-        return webClient.get()
-            .uri("/api/translate/{word}", russianWord)  // ← Путь без /server
-            .retrieve()
-            .bodyToMono(String.class)
-            .doOnSuccess(translation -> 
-                log.info("Translation received: {} -> {}", russianWord, translation))
+        return timed
             .doOnError(error -> 
                 log.error("Failed to translate '{}': {}", russianWord, error.getMessage()))
             .onErrorResume(error -> 
                 Mono.just("ERROR: Failed to translate - " + error.getMessage()));
     }
     
+    /**
+     * Перевод из ближнего кэша, из уже идущего запроса того же слова или новым запросом к серверу.
+     */
+    private Mono<String> cachedTranslation(String russianWord) {
+        if (nearCache == null) {
+            return fetchTranslation(russianWord);
+        }
+        return Mono.defer(() -> {
+            boolean[] started = {false};
+            CompletableFuture<String> translation = nearCache.get(russianWord, (word, executor) -> {
+                started[0] = true;
+                return fetchTranslation(word).toFuture();
+            });
+            if (!started[0]) {
+                (translation.isDone() ? savedByCache : savedByCoalescing).increment();
+            }
+            // Отмена одного подписчика не должна отменять общий запрос остальных
+            return Mono.fromFuture(translation, true);
+        });
+    }
+    
+    private Mono<String> fetchTranslation(String russianWord) {
+        if (shardRouter.isSharded()) {
+            return fetchSharded(russianWord);
+        }
+        return webClient.get()
+            .uri("/api/translate/{word}", russianWord)  // ← Путь без /server
+            .accept(MediaType.TEXT_PLAIN)
+            .retrieve()
+            .bodyToMono(String.class)
+            .doOnSubscribe(subscription -> serverCalls.increment());
+    }
+    
     public Flux<String> translateWords(List<String> words) {
-        log.info("Starting batch translation of {} words", words.size());
+        log.debug("Starting batch translation of {} words", words.size());
         
-        return Flux.fromIterable(words)
-            .flatMap(this::translateWord)
+        Flux<String> translations = shardRouter.isSharded()
+            ? translateSharded(words).flatMapMany(byWord -> Flux.fromIterable(words).map(byWord::get))
+            : Flux.fromIterable(words).flatMap(this::translateWord, batchConcurrency);
+        return translations
             .collectList()
-            .flatMapMany(translations -> {
-                log.info("Batch translation completed. Processing {} results", translations.size());
-                return Flux.fromIterable(translations)
+            .flatMapMany(results -> {
+                log.debug("Batch translation completed. Processing {} results", results.size());
+                return Flux.fromIterable(results)
                     .map(String::toUpperCase)
                     .map(String::toLowerCase)
                     .distinct()
                     .sort();
             })
-            .doOnComplete(() -> log.info("Batch translation fully completed"))
+            .doOnComplete(() -> log.debug("Batch translation fully completed"))
             .doOnError(error -> log.error("Batch translation failed: {}", error.getMessage()));
     }
     
+    // ============================
+    // Шардированный словарь
+    // ============================
+    
+    /**
+     * Перевод слова по шардам (scatter-gather):
+     * <ol>
+     *     <li>слово уходит владельцу его точного ключа; точное совпадение - окончательный ответ;</li>
+     *     <li>иначе то же слово параллельно отправляется остальным шардам, и из всех ответов
+     *     берется лучший по {@link MatchKind}: слово внутри ключа раньше подстроки,
+     *     затем rank. Это тот же ответ, что дал бы один сервер со всем словарем;</li>
+     *     <li>если какой-то шард не ответил, ответа нет (ошибка): неполное слияние могло бы
+     *     молча вернуть не тот перевод.</li>
+     * </ol>
+     */
+    private Mono<String> fetchSharded(String russianWord) {
+        Node owner = shardRouter.route(russianWord);
+        return askShard(owner, russianWord)
+            .flatMap(answer -> {
+                if (answer.isFinal()) {
+                    return Mono.just(answer);
+                }
+                scatteredWords.increment();
+                return Flux.fromIterable(shardRouter.shards())
+                    .filter(shard -> shard != owner)
+                    .flatMap(shard -> askShard(shard, russianWord))
+                    .reduce(answer, ShardTranslation::better);
+            })
+            .map(ShardTranslation::translation);
+    }
+    
+    private Mono<ShardTranslation> askShard(Node shard, String russianWord) {
+        return webClient.get()
+            .uri(shard.getBaseUrl() + "/api/translate/{word}", russianWord)
+            .accept(MediaType.TEXT_PLAIN)
+            .retrieve()
+            .toEntity(String.class)
+            .map(response -> shardTranslation(russianWord, response))
+            .doOnSubscribe(subscription -> serverCalls.increment());
+    }
+    
+    private static ShardTranslation shardTranslation(String russianWord, ResponseEntity<String> response) {
+        String match = response.getHeaders().getFirst(MatchKind.HEADER);
+        String rank = response.getHeaders().getFirst(MatchKind.RANK_HEADER);
+        return new ShardTranslation(russianWord, response.getBody(),
+            match != null ? MatchKind.valueOf(match) : null,
+            rank != null ? Integer.valueOf(rank) : null);
+    }
+    
+    /**
+     * Пакет по шардам: слова группируются по владельцу и уходят пакетами во все шарды параллельно;
+     * слова без точного совпадения вторым шагом уходят пакетами в остальные шарды,
+     * ответы сливаются так же, как в {@link #fetchSharded}. Уже готовые переводы из ближнего кэша
+     * не запрашиваются, полученные - кладутся в кэш. При ошибке любого шарда каждое слово
+     * пакета получает текст ошибки, как при одиночном переводе.
+     */
+    private Mono<Map<String, String>> translateSharded(List<String> words) {
+        Map<String, String> known = new HashMap<>();
+        Map<Node, List<String>> byOwner = new LinkedHashMap<>();
+        for (String word : new LinkedHashSet<>(words)) {
+            String cached = completedNearCacheEntry(word);
+            if (cached != null) {
+                savedByCache.increment();
+                known.put(word, cached);
+            } else {
+                byOwner.computeIfAbsent(shardRouter.route(word), shard -> new ArrayList<>()).add(word);
+            }
+        }
+        if (byOwner.isEmpty()) {
+            return Mono.just(known);
+        }
+        
+        return askShards(byOwner)
+            .collectMap(ShardTranslation::word)
+            .flatMap(owned -> {
+                Map<Node, List<String>> scatter = new LinkedHashMap<>();
+                byOwner.forEach((owner, ownedWords) -> {
+                    for (String word : ownedWords) {
+                        if (!owned.get(word).isFinal()) {
+                            scatteredWords.increment();
+                            for (Node shard : shardRouter.shards()) {
+                                if (shard != owner) {
+                                    scatter.computeIfAbsent(shard, s -> new ArrayList<>()).add(word);
+                                }
+                            }
+                        }
+                    }
+                });
+                return askShards(scatter)
+                    .collect(() -> new HashMap<>(owned),
+                        (best, answer) -> best.merge(answer.word(), answer, ShardTranslation::better));
+            })
+            .map(best -> {
+                best.forEach((word, answer) -> {
+                    known.put(word, answer.translation());
+                    if (nearCache != null) {
+                        nearCache.put(word, CompletableFuture.completedFuture(answer.translation()));
+                    }
+                });
+                return known;
+            })
+            .onErrorResume(error -> {
+                log.error("Sharded batch translation failed: {}", error.getMessage());
+                Map<String, String> failed = new HashMap<>(known);
+                for (String word : words) {
+                    failed.putIfAbsent(word, "ERROR: Failed to translate - " + error.getMessage());
+                }
+                return Mono.just(failed);
+            });
+    }
+    
+    private Flux<ShardTranslation> askShards(Map<Node, List<String>> wordsByShard) {
+        return Flux.fromIterable(wordsByShard.entrySet())
+            .flatMap(batch -> webClient.post()
+                .uri(batch.getKey().getBaseUrl() + "/api/translate/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(batch.getValue())
+                .retrieve()
+                .bodyToFlux(ShardTranslation.class)
+                .doOnSubscribe(subscription -> serverCalls.increment()));
+    }
+    
+    private String completedNearCacheEntry(String word) {
+        if (nearCache == null) {
+            return null;
+        }
+        CompletableFuture<String> translation = nearCache.getIfPresent(word);
+        return translation != null && translation.isDone() && !translation.isCompletedExceptionally()
+            ? translation.join()
+            : null;
+    }
+    
     public Mono<String> checkHealth() {
-        log.info("Checking server health...");
+        log.debug("Checking server health...");
         
+        if (shardRouter.isSharded()) {
+            return Flux.fromIterable(shardRouter.shards())
+                .concatMap(shard -> checkHealth(shard.getBaseUrl() + "/api/translate/health")
+                    .map(status -> shard.getName() + ": " + status))
+                .collect(Collectors.joining("\n"));
+        }
+        return checkHealth("/api/translate/health");  // ← Путь без /server
+    }
+    
+    private Mono<String> checkHealth(String uri) {
         return webClient.get()
-            .uri("/api/translate/health")  // ← Путь без /server
+            .uri(uri)
+            .accept(MediaType.TEXT_PLAIN)
             .retrieve()
             .bodyToMono(String.class)
             .timeout(Duration.ofSeconds(3))
             .onErrorResume(error -> Mono.just("Server is unavailable: " + error.getMessage()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package com.example.foreverrip.sharding;
+
+/**
+ * Как шард нашел перевод. Порядок констант - приоритет при слиянии ответов шардов:
+ * точный ключ, затем ключ с опечаткой (только по запросу {@code ?fuzzy=1}),
+ * слово внутри ключа, подстрока; среди ответов одного вида
+ * побеждает меньший rank - номер записи в исходном словаре, а среди подстрок - больший
+ * (из подстрок побеждает позже стоящая запись). Точным считается только ключ, который не встречается
+ * отдельным словом в более раннем ключе, иначе ответ - слово внутри ключа. Так ответ шардированного
+ * словаря совпадает с ответом одного узла, загрузившего весь словарь.
+ * <p>
+ * В шардированном режиме сервер отдает вид и rank в заголовках {@link #HEADER} и
+ * {@link #RANK_HEADER} (одиночный перевод) или в полях {@code match}/{@code rank} (пакет).
+ */
+public enum MatchKind {
+
+    EXACT,
+    FUZZY,
+    TOKEN,
+    SUBSTRING,
+    NONE;
+
+    public static final String HEADER = "X-Translation-Match";
+    public static final String RANK_HEADER = "X-Translation-Rank";
+
+    /**
+     * Отрицательно, если ответ (kind, rank) лучше ответа (otherKind, otherRank).
+     */
+    public static int compare(MatchKind kind, int rank, MatchKind otherKind, int otherRank) {
+        int cmp = kind.compareTo(otherKind);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return kind == SUBSTRING ? Integer.compare(otherRank, rank) : Integer.compare(rank, otherRank);
+    }
+}
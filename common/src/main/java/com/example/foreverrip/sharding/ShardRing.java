@@ -0,0 +1,106 @@
+package com.example.foreverrip.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Кольцо согласованного хеширования: ключ словаря принадлежит узлу, чья точка на кольце
+ * первая не меньше хеша ключа. Каждый узел занимает {@code virtualNodes} точек, поэтому
+ * диапазоны получаются равномерными, а добавление или удаление узла переносит
+ * примерно 1/N ключей.
+ * <p>
+ * Кольцо зависит только от списка имен узлов, числа точек и хеш-функции: сервер по нему
+ * решает, какие записи загружать, клиент - куда отправить слово. Хешируется уже
+ * нормализованный ключ ({@link com.example.foreverrip.text.WordNormalization}).
+ */
+public final class ShardRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Shard ring needs at least one node");
+        }
+        if (new LinkedHashSet<>(nodes).size() != nodes.size()) {
+            throw new IllegalArgumentException("Shard node names must be unique: " + nodes);
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        this.nodes = List.copyOf(nodes);
+
+        List<long[]> ring = new ArrayList<>(nodes.size() * virtualNodes);
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.add(new long[] {hash(nodes.get(node) + "#" + i), node});
+            }
+        }
+        // Порядок при совпадении точек задан номером узла, чтобы кольцо не зависело от сортировки
+        ring.sort((a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compare(a[1], b[1]));
+        this.points = new long[ring.size()];
+        this.owners = new int[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            points[i] = ring.get(i)[0];
+            owners[i] = (int) ring.get(i)[1];
+        }
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * Имя узла, которому принадлежит нормализованный ключ.
+     */
+    public String owner(String normalizedKey) {
+        return nodes.get(ownerIndex(normalizedKey));
+    }
+
+    /**
+     * Номер узла (в порядке {@link #nodes()}), которому принадлежит нормализованный ключ.
+     */
+    public int ownerIndex(String normalizedKey) {
+        long hash = hash(normalizedKey);
+        int low = 0;
+        int high = points.length;
+        // Первая точка, не меньшая хеша (беззнаково); за последней точкой - снова первая
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], hash) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /**
+     * 64-битный FNV-1a по байтам UTF-8 с перемешиванием из MurmurHash3 (fmix64):
+     * FNV дает плохо распределенные старшие биты на коротких строках.
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return nodes + " x " + points.length / nodes.size() + " points";
+    }
+}
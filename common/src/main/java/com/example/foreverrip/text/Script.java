@@ -0,0 +1,104 @@
+package com.example.foreverrip.text;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Письменность языка и ее правила нормализации поверх общей цепочки {@link WordNormalization}.
+ * Правила зависят от письменности, а не от пары языков, поэтому нормализатор одной письменности
+ * общий у всех пар с ней: ключи и запросы - по письменности исходного языка, переводы - целевого.
+ * <p>
+ * Быстрая проверка {@link WordNormalization#isAlreadyNormalized} годится для всех письменностей:
+ * строчные ASCII и кириллицу дополнительные правила не меняют.
+ */
+public enum Script {
+
+    /** Кириллица: общая цепочка без изменений (ей нормализован основной русско-английский словарь). */
+    CYRILLIC,
+
+    /** Латиница: еще ß -> ss, чтобы {@code STRASSE} и {@code Straße} давали один ключ. */
+    LATIN {
+        @Override
+        String fold(String normalized) {
+            return normalized.indexOf('ß') < 0 ? normalized : normalized.replace("ß", "ss");
+        }
+    },
+
+    /**
+     * Греческий: без ударений и придыханий (в NFKC это не отдельные знаки, а составные буквы,
+     * поэтому они разбираются NFD) и с конечной ς как σ - запрос пишут как придется.
+     */
+    GREEK {
+        @Override
+        String fold(String normalized) {
+            if (!hasGreek(normalized)) {
+                return normalized;
+            }
+            String stripped = WordNormalization.stripMarks(Normalizer.normalize(normalized, Normalizer.Form.NFD));
+            return Normalizer.normalize(stripped, Normalizer.Form.NFC).replace('ς', 'σ');
+        }
+    },
+
+    /** Прочие письменности: только общая цепочка. */
+    OTHER;
+
+    private static final Map<String, Script> LANGUAGES = Map.ofEntries(
+        Map.entry("ru", CYRILLIC), Map.entry("uk", CYRILLIC), Map.entry("be", CYRILLIC),
+        Map.entry("bg", CYRILLIC), Map.entry("sr", CYRILLIC), Map.entry("mk", CYRILLIC),
+        Map.entry("kk", CYRILLIC), Map.entry("ky", CYRILLIC), Map.entry("tg", CYRILLIC),
+        Map.entry("mn", CYRILLIC),
+        Map.entry("el", GREEK),
+        Map.entry("en", LATIN), Map.entry("de", LATIN), Map.entry("fr", LATIN), Map.entry("es", LATIN),
+        Map.entry("it", LATIN), Map.entry("pt", LATIN), Map.entry("nl", LATIN), Map.entry("pl", LATIN),
+        Map.entry("cs", LATIN), Map.entry("sk", LATIN), Map.entry("sl", LATIN), Map.entry("hr", LATIN),
+        Map.entry("bs", LATIN), Map.entry("ro", LATIN), Map.entry("hu", LATIN), Map.entry("fi", LATIN),
+        Map.entry("et", LATIN), Map.entry("lv", LATIN), Map.entry("lt", LATIN), Map.entry("sv", LATIN),
+        Map.entry("da", LATIN), Map.entry("no", LATIN), Map.entry("nb", LATIN), Map.entry("nn", LATIN),
+        Map.entry("is", LATIN), Map.entry("tr", LATIN), Map.entry("az", LATIN), Map.entry("uz", LATIN),
+        Map.entry("id", LATIN), Map.entry("ms", LATIN), Map.entry("vi", LATIN), Map.entry("ca", LATIN),
+        Map.entry("eu", LATIN), Map.entry("gl", LATIN), Map.entry("ga", LATIN), Map.entry("cy", LATIN),
+        Map.entry("sq", LATIN), Map.entry("la", LATIN), Map.entry("eo", LATIN), Map.entry("af", LATIN),
+        Map.entry("sw", LATIN), Map.entry("mt", LATIN));
+
+    /**
+     * Письменность по коду языка ISO 639-1; для незнакомых языков - {@link #OTHER}.
+     */
+    public static Script forLanguage(String language) {
+        return LANGUAGES.getOrDefault(language.toLowerCase(Locale.ROOT), OTHER);
+    }
+
+    /**
+     * Полная нормализация с быстрой проверкой.
+     */
+    public String normalize(String input) {
+        if (input == null || input.isEmpty() || WordNormalization.isAlreadyNormalized(input)) {
+            return input;
+        }
+        return normalizeSlow(input);
+    }
+
+    /**
+     * Полная цепочка без быстрой проверки - для входов, не прошедших {@link WordNormalization#isAlreadyNormalized}.
+     */
+    public String normalizeSlow(String input) {
+        return fold(WordNormalization.normalizeSlow(input));
+    }
+
+    /**
+     * Правила письменности поверх уже нормализованной строки.
+     */
+    String fold(String normalized) {
+        return normalized;
+    }
+
+    private static boolean hasGreek(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= 0x0370 && c <= 0x03FF || c >= 0x1F00 && c <= 0x1FFF) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.foreverrip.text;
+
+import java.text.Normalizer;
+
+/**
+ * Unicode нормализация слов (NFKC форма) без состояния и кэшей.
+ * Один и тот же код нужен серверу (ключи словаря и входящие слова) и клиенту
+ * (выбор шарда по нормализованному слову), поэтому он вынесен сюда.
+ * <p>
+ * Результат побитово совпадает с исходной цепочкой
+ * NFKC -> удаление \p{M} -> toLowerCase -> trim -> NFKC -> toLowerCase -> trim,
+ * но дорогие шаги пропускаются, когда ничего не меняют:
+ * <ol>
+ *     <li>строчная кириллица/ASCII без пробелов по краям возвращается как есть;</li>
+ *     <li>NFKC выполняется только если {@link Normalizer#isNormalized} говорит, что это нужно;</li>
+ *     <li>диакритика удаляется одним проходом по code point вместо String.replaceAll.</li>
+ * </ol>
+ * Дополнительные правила отдельных письменностей - в {@link Script}.
+ */
+public final class WordNormalization {
+
+    /**
+     * Версия правил нормализации здесь и в {@link Script}. Увеличивается при любом изменении результата,
+     * чтобы сохраненные нормализованные строки (снимок словаря) собирались заново.
+     */
+    public static final int RULES_VERSION = 1;
+
+    private WordNormalization() {
+    }
+
+    public static String normalize(String input) {
+        if (input == null || input.isEmpty() || isAlreadyNormalized(input)) {
+            return input;
+        }
+        return normalizeSlow(input);
+    }
+
+    /**
+     * Быстрая проверка по диапазонам символов: строчные ASCII и кириллица не меняются
+     * ни NFKC, ни toLowerCase, а отсутствие пробельных символов по краям - ни trim.
+     * Строка не должна быть пустой.
+     */
+    public static boolean isAlreadyNormalized(String input) {
+        int length = input.length();
+        if (input.charAt(0) <= ' ' || input.charAt(length - 1) <= ' ') {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (c < 0x80) {
+                if (c < ' ' || c == 0x7F || (c >= 'A' && c <= 'Z')) {
+                    return false;
+                }
+            } else if (!((c >= 'а' && c <= 'я') || c == 'ё')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Полная цепочка без быстрой проверки - для входов, не прошедших {@link #isAlreadyNormalized}.
+     */
+    public static String normalizeSlow(String input) {
+        String normalized = nfkc(input);
+        normalized = stripMarks(normalized);
+        normalized = normalized.toLowerCase().trim();
+
+        // Повторный проход нужен только если toLowerCase вывел строку из NFKC
+        normalized = nfkc(normalized);
+        return normalized.toLowerCase().trim();
+    }
+
+    private static String nfkc(String input) {
+        return Normalizer.isNormalized(input, Normalizer.Form.NFKC)
+            ? input
+            : Normalizer.normalize(input, Normalizer.Form.NFKC);
+    }
+
+    /**
+     * Удаляет символы категорий Mn, Mc, Me - то же, что replaceAll("\\p{M}", "").
+     */
+    static String stripMarks(String input) {
+        int length = input.length();
+        int first = 0;
+        while (first < length) {
+            int cp = input.codePointAt(first);
+            if (isMark(cp)) {
+                break;
+            }
+            first += Character.charCount(cp);
+        }
+        if (first == length) {
+            return input;
+        }
+
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(input, 0, first);
+        for (int i = first; i < length; ) {
+            int cp = input.codePointAt(i);
+            if (!isMark(cp)) {
+                sb.appendCodePoint(cp);
+            }
+            i += Character.charCount(cp);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isMark(int codePoint) {
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK
+            || type == Character.ENCLOSING_MARK
+            || type == Character.COMBINING_SPACING_MARK;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.foreverrip.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link WordNormalization} против прежней цепочки heavyUnicodeNormalization, перенесенной сюда как есть:
+ * NFKC -> удаление \p{M} -> toLowerCase -> trim -> NFKC -> toLowerCase -> trim.
+ */
+class WordNormalizationTest {
+
+    /** Входы быстрого пути: строка возвращается без изменений. */
+    private static final String[] FAST_PATH = {
+        "кошка",
+        "ёлка",
+        "синий кит",
+        "hello",
+        "a1-b2_c3!",
+        "рыба-меч",
+        "я",
+        "x",
+    };
+
+    /** Входы медленного пути: регистр, диакритика, совместимые формы, смешанные письменности. */
+    private static final String[] SLOW_PATH = {
+        "Кошка",
+        "  кошка\t",
+        "\u00A0кошка\u2009",
+        "ЁЛКА",
+        "е\u0308лка",
+        "ЙОД",
+        "и\u0306од",
+        "Straße",
+        "STRASSE",
+        "\u1E9E",
+        "İstanbul",
+        "ıI",
+        "ΟΔΟΣ",
+        "Σίσυφος",
+        "café",
+        "cafe\u0301",
+        "\uFB01sh",
+        "\uFF21\uFF42\uFF43\uFF11\uFF12\uFF13",
+        "\uFF76\uFF80\uFF76\uFF85",
+        "\u2460\u2461\u2462",
+        "\u338F",
+        "x\u00B2",
+        "\u01C5emal",
+        "\uD835\uDC00\uD835\uDC01",
+        "\uD83D\uDE00 смайл",
+        "москва Moscow Μόσχα",
+        "\u01C4\u0301",
+        "\u0301\u0302",
+        "a\u20DD",
+        "\u0939\u093F\u0902\u0926\u0940",
+        "\u1100\u1161\u11A8",
+        "\u200Bслово\u200B",
+        "слово\u0000",
+        "\t\n",
+        "Кот Учёный",
+    };
+
+    @Test
+    void fastPathInputsAreLeftUnchanged() {
+        for (String input : FAST_PATH) {
+            assertTrue(WordNormalization.isAlreadyNormalized(input), input);
+            assertEquals(baseline(input), input, input);
+            assertEquals(baseline(input), WordNormalization.normalize(input), input);
+        }
+    }
+
+    @Test
+    void slowPathMatchesBaselineChain() {
+        for (String input : SLOW_PATH) {
+            assertEquals(baseline(input), WordNormalization.normalize(input), input);
+            assertEquals(baseline(input), WordNormalization.normalizeSlow(input), input);
+        }
+    }
+
+    @Test
+    void stripMarksMatchesRegex() {
+        for (String input : SLOW_PATH) {
+            assertEquals(input.replaceAll("\\p{M}", ""), WordNormalization.stripMarks(input), input);
+        }
+    }
+
+    @Test
+    void randomMixedScriptInputMatchesBaselineChain() {
+        // Кириллица, латиница, греческий, комбинирующие знаки, совместимые формы, пробелы, суррогатные пары
+        String[] pieces = {
+            "а", "я", "ё", "Ё", "Я", "a", "z", "A", "Z", "ß", "İ", "ı", "Σ", "σ", "ς", "ά",
+            "\u0301", "\u0308", "\u0306", "\u20DD", "\uFB01", "\uFF21", "\uFF76", "\u2460", "\u338F", "\u00B2",
+            " ", "\t", "\u00A0", "\u2009", "-", "1", "\uD835\uDC00", "\uD83D\uDE00",
+        };
+        Random random = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            int length = 1 + random.nextInt(8);
+            StringBuilder input = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                input.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String text = input.toString();
+            String expected = baseline(text);
+            assertEquals(expected, WordNormalization.normalize(text), text);
+            if (WordNormalization.isAlreadyNormalized(text)) {
+                assertEquals(text, expected, text);
+            }
+        }
+    }
+
+    @Test
+    void everyBmpCharacterMatchesBaselineChain() {
+        for (int c = 1; c < 0x10000; c++) {
+            if (Character.isSurrogate((char) c)) {
+                continue;
+            }
+            String text = String.valueOf((char) c);
+            assertEquals(baseline(text), WordNormalization.normalize(text), Integer.toHexString(c));
+            String word = "к" + text + "а";
+            assertEquals(baseline(word), WordNormalization.normalize(word), Integer.toHexString(c));
+        }
+    }
+
+    /**
+     * Прежний heavyUnicodeNormalization.
+     */
+    private static String baseline(String input) {
+        if (input == null || input.isEmpty()) {
+            return input;
+        }
+        String normalized = Normalizer.normalize(input, Normalizer.Form.NFKC);
+        normalized = normalized.replaceAll("\\p{M}", "");
+        normalized = normalized.toLowerCase();
+        normalized = normalized.trim();
+        normalized = Normalizer.normalize(normalized, Normalizer.Form.NFKC);
+        normalized = normalized.toLowerCase();
+        normalized = normalized.trim();
+        return normalized;
+    }
+}
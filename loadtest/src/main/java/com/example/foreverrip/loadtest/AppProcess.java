@@ -0,0 +1,118 @@
+package com.example.foreverrip.loadtest;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одно Spring Boot приложение, запущенное отдельным процессом ({@code java -jar}).
+ * Сервер и клиент лежат в одном пакете и у обоих свой application.yml,
+ * поэтому в одной JVM их не поднять - каждое получает свой процесс, как и в эксплуатации.
+ */
+final class AppProcess implements AutoCloseable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+
+    private final String name;
+    private final int port;
+    private final Process process;
+    private final Path log;
+
+    private AppProcess(String name, int port, Process process, Path log) {
+        this.name = name;
+        this.port = port;
+        this.process = process;
+        this.log = log;
+    }
+
+    /**
+     * Запускает jar на свободном порту и ждет, пока {@code healthPath} не ответит 200.
+     */
+    static AppProcess start(String name, Path jar, List<String> jvmArgs, List<String> appArgs,
+                            String healthPath, Path workDir) throws IOException, InterruptedException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IOException(jar + " not found; build it with: mvn package -pl loadtest -am -DskipTests");
+        }
+        int port = freePort();
+        Path log = workDir.resolve(name + ".log");
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + port);
+        // Журнал каждого запроса на DEBUG/INFO измерял бы скорость консоли, а не сервиса
+        command.add("--logging.level.com.example.foreverrip=WARN");
+        command.add("--logging.level.org.springframework.web=WARN");
+        command.add("--logging.level.reactor.netty.http.client=WARN");
+        command.addAll(appArgs);
+
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        AppProcess app = new AppProcess(name, port, process, log);
+        try {
+            app.awaitHealthy(healthPath);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            app.close();
+            throw e;
+        }
+        System.out.printf("%s started on port %d (log: %s)%n", name, port, log);
+        return app;
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    private void awaitHealthy(String healthPath) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        URI health = URI.create(baseUrl() + healthPath);
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException(name + " exited with code " + process.exitValue() + ", see " + log);
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) health.toURL().openConnection();
+                connection.setConnectTimeout(500);
+                connection.setReadTimeout(2000);
+                if (connection.getResponseCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // еще не слушает порт
+            }
+            Thread.sleep(250);
+        }
+        throw new IOException(name + " did not become healthy within " + STARTUP_TIMEOUT + ", see " + log);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            socket.setReuseAddress(true);
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.foreverrip.loadtest;
+
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.PrematureCloseException;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Генератор нагрузки на неблокирующем HTTP-клиенте Reactor Netty.
+ * <ul>
+ *     <li>open - запросы уходят по расписанию с постоянной частотой, независимо от ответов;
+ *     задержка считается от запланированного момента отправки, поэтому очередь
+ *     перед сервисом видна в хвостах (без coordinated omission);</li>
+ *     <li>closed - N пользователей, каждый отправляет следующий запрос сразу после ответа
+ *     на предыдущий; задержка считается от фактической отправки.</li>
+ * </ul>
+ * В итог ступени попадают только запросы, отправленные после прогрева. Запросы, которые open-модель
+ * не отправила из-за лимита в полете, считаются отдельно от ошибок: это перегруз генератора, а не ответ сервиса.
+ */
+final class LoadGenerator implements AutoCloseable {
+
+    private final LoadTestOptions options;
+    private final WordDistribution hits;
+    private final WordDistribution misses;
+    private final ConnectionProvider connections;
+    private final HttpClient http;
+
+    LoadGenerator(String baseUrl, WordDistribution hits, WordDistribution misses, LoadTestOptions options) {
+        this.options = options;
+        this.hits = hits;
+        this.misses = misses;
+        int maxConnections = Math.max(options.maxInFlight,
+            options.concurrency.stream().mapToInt(Integer::intValue).max().orElse(1));
+        this.connections = ConnectionProvider.builder("loadtest")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(-1)
+            .pendingAcquireTimeout(options.timeout)
+            .build();
+        this.http = HttpClient.create(connections)
+            .baseUrl(baseUrl)
+            .responseTimeout(options.timeout);
+    }
+
+    StepResult runOpen(int rate) {
+        Step step = new Step("open " + rate + "/s");
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long start = System.nanoTime();
+        step.begin(start);
+        Thread progress = step.startProgress();
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * interval;
+            if (scheduled >= step.measureEnd) {
+                break;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.get() >= options.maxInFlight) {
+                // Генератор не должен сам стать узким местом: запрос, который некуда отправить, пропускается
+                step.unsent(scheduled);
+                continue;
+            }
+            inFlight.incrementAndGet();
+            send(step, scheduled)
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .subscribe();
+        }
+
+        long drainDeadline = System.nanoTime() + options.timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        progress.interrupt();
+        return step.result(rate);
+    }
+
+    StepResult runClosed(int users) {
+        Step step = new Step("closed " + users + " users");
+        step.begin(System.nanoTime());
+        Thread progress = step.startProgress();
+
+        Flux.range(0, users)
+            .flatMap(user -> Mono.defer(() -> send(step, System.nanoTime()))
+                .repeat(() -> System.nanoTime() < step.measureEnd), users)
+            .blockLast();
+
+        progress.interrupt();
+        return step.result(users);
+    }
+
+    private Mono<Void> send(Step step, long startNanos) {
+        String word = options.missRatio > 0 && ThreadLocalRandom.current().nextDouble() < options.missRatio
+            ? misses.next()
+            : hits.next();
+        return http.get()
+            .uri(options.path + word)
+            .responseSingle((response, body) -> body.asString().then(Mono.just(response.status().code())))
+            .doOnNext(status -> {
+                if (status >= 200 && status < 300) {
+                    step.success(startNanos);
+                } else {
+                    step.error(startNanos, "HTTP " + status);
+                }
+            })
+            .onErrorResume(e -> {
+                step.error(startNanos, describe(e));
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    private static String describe(Throwable e) {
+        if (e instanceof ReadTimeoutException || e instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof ConnectException || e instanceof ConnectTimeoutException) {
+            return "connect failed";
+        }
+        if (e instanceof PrematureCloseException) {
+            return "connection closed";
+        }
+        return e.getClass().getSimpleName();
+    }
+
+    @Override
+    public void close() {
+        connections.dispose();
+    }
+
+    /**
+     * Счетчики одной ступени: итог (только после прогрева) и посекундный прогресс (все запросы).
+     */
+    private final class Step {
+
+        private final String name;
+        private final Recorder total = new Recorder(3);
+        private final Recorder interval = new Recorder(3);
+        private final LongAdder successes = new LongAdder();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final LongAdder unsent = new LongAdder();
+        private final LongAdder intervalErrors = new LongAdder();
+        private final LongAdder intervalUnsent = new LongAdder();
+        private volatile long start;
+        private volatile long measureStart;
+        private volatile long measureEnd;
+
+        Step(String name) {
+            this.name = name;
+        }
+
+        void begin(long startNanos) {
+            start = startNanos;
+            measureStart = startNanos + options.warmup.toNanos();
+            measureEnd = measureStart + options.duration.toNanos();
+            System.out.printf("%n== %s: warmup %ds, measure %ds%n", name,
+                options.warmup.toSeconds(), options.duration.toSeconds());
+        }
+
+        void success(long startNanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            interval.recordValue(micros);
+            if (startNanos >= measureStart) {
+                total.recordValue(micros);
+                successes.increment();
+            }
+        }
+
+        void error(long startNanos, String kind) {
+            intervalErrors.increment();
+            if (startNanos >= measureStart) {
+                errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+            }
+        }
+
+        void unsent(long scheduledNanos) {
+            intervalUnsent.increment();
+            if (scheduledNanos >= measureStart) {
+                unsent.increment();
+            }
+        }
+
+        Thread startProgress() {
+            Thread thread = new Thread(() -> {
+                Histogram recycled = null;
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(1000);
+                        recycled = interval.getIntervalHistogram(recycled);
+                        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+                        System.out.printf("  %4ds %-8s %8d ok/s  p50 %8.2f ms  p99 %8.2f ms  errors %d  unsent %d%n",
+                            second, System.nanoTime() < measureStart ? "warmup" : "measure",
+                            recycled.getTotalCount(), recycled.getValueAtPercentile(50) / 1000.0,
+                            recycled.getValueAtPercentile(99) / 1000.0, intervalErrors.sumThenReset(),
+                            intervalUnsent.sumThenReset());
+                    }
+                } catch (InterruptedException e) {
+                    // ступень закончилась
+                }
+            }, "loadtest-progress");
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+
+        StepResult result(int load) {
+            Map<String, Long> errorCounts = new TreeMap<>();
+            errors.forEach((kind, count) -> errorCounts.put(kind, count.sum()));
+            return new StepResult(name, load, options.duration, total.getIntervalHistogram(),
+                successes.sum(), errorCounts, unsent.sum());
+        }
+    }
+
+    /**
+     * Итог ступени: {@code errors} - ответы не 2xx и сбои отправленных запросов,
+     * {@code unsent} - запросы, не отправленные из-за лимита в полете.
+     */
+    record StepResult(String name, int load, Duration duration, Histogram latencyMicros,
+                      long successes, Map<String, Long> errors, long unsent) {
+
+        long errorCount() {
+            return errors.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        /**
+         * Успешные ответы в секунду; ошибки и неотправленные запросы сюда не входят.
+         */
+        double goodput() {
+            return successes / (duration.toNanos() / 1e9);
+        }
+
+        double percentileMillis(double percentile) {
+            return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
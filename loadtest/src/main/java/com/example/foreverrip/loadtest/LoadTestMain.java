@@ -0,0 +1,173 @@
+package com.example.foreverrip.loadtest;
+
+import com.example.foreverrip.loadtest.LoadGenerator.StepResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Нагрузочный тест всей цепочки ClientController -> TranslationClientService -> WebClient ->
+ * TranslationController. Запускает сервер и клиент отдельными процессами на свободных портах,
+ * прогоняет ступени нагрузки и печатает p50/p99/p99.9 и ошибки по каждой ступени.
+ * Полные распределения задержек сохраняются в work-dir в формате .hgrm (HdrHistogram).
+ * <pre>
+ * mvn package -pl loadtest -am -DskipTests
+ * java -jar loadtest/target/loadtest.jar --model=open --rate=1000,2000,4000,8000
+ * </pre>
+ */
+public final class LoadTestMain {
+
+    private static final String LETTERS = "абвгдежзиклмнопрстуфхцчшщыьэюя";
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Files.createDirectories(options.workDir);
+
+        Path dictionary = options.dictionary != null
+            ? options.dictionary
+            : generateDictionary(options.dictionarySize, options.workDir.resolve("dictionary.txt"));
+        List<String> keys = readKeys(dictionary);
+        Collections.shuffle(keys, new Random(42));
+        List<String> missing = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            missing.add(key + "ъ");
+        }
+        WordDistribution hits = WordDistribution.of(options.distribution, encode(keys), options.zipfExponent);
+        WordDistribution misses = WordDistribution.of("uniform", encode(missing), 0);
+        System.out.printf("Dictionary %s: %d words, %s distribution, %.0f%% misses%n",
+            dictionary, keys.size(), options.distribution, options.missRatio * 100);
+
+        List<AppProcess> apps = new ArrayList<>();
+        Thread cleanup = new Thread(() -> apps.forEach(AppProcess::close), "loadtest-cleanup");
+        Runtime.getRuntime().addShutdownHook(cleanup);
+
+        String target = options.target;
+        if (target == null) {
+            List<String> serverArgs = new ArrayList<>();
+            serverArgs.add("--translation.dictionary.location=" + dictionary.toAbsolutePath());
+            // Снимок по умолчанию выключен, поэтому каждый прогон начинается с холодного кэша;
+            // включается через --server-args
+            serverArgs.addAll(options.serverArgs);
+            AppProcess server = AppProcess.start("server", options.apps.resolve("server.jar"),
+                options.jvmArgs, serverArgs, "/api/translate/health", options.workDir);
+            apps.add(server);
+
+            List<String> clientArgs = new ArrayList<>();
+            clientArgs.add("--translation.client.http.base-url=" + server.baseUrl());
+            clientArgs.addAll(options.clientArgs);
+            AppProcess client = AppProcess.start("client", options.apps.resolve("client.jar"),
+                options.jvmArgs, clientArgs, "/actuator/health", options.workDir);
+            apps.add(client);
+            target = client.baseUrl();
+        }
+
+        List<StepResult> results = new ArrayList<>();
+        try (LoadGenerator generator = new LoadGenerator(target, hits, misses, options)) {
+            List<Integer> loads = options.model == LoadTestOptions.Model.OPEN ? options.rates : options.concurrency;
+            for (int load : loads) {
+                StepResult result = options.model == LoadTestOptions.Model.OPEN
+                    ? generator.runOpen(load)
+                    : generator.runClosed(load);
+                results.add(result);
+                printStep(result);
+                saveHistogram(result, options.workDir);
+            }
+        } finally {
+            apps.forEach(AppProcess::close);
+            Runtime.getRuntime().removeShutdownHook(cleanup);
+        }
+        printSummary(results, options.model);
+    }
+
+    private static void printStep(StepResult result) {
+        System.out.printf("-- %s: %d ok, %d errors, %d unsent, %.1f ok/s%n",
+            result.name(), result.successes(), result.errorCount(), result.unsent(), result.goodput());
+        System.out.printf("   latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+            result.percentileMillis(50), result.percentileMillis(90), result.percentileMillis(99),
+            result.percentileMillis(99.9), result.latencyMicros().getMaxValue() / 1000.0);
+        result.errors().forEach((kind, count) -> System.out.printf("   error %s: %d%n", kind, count));
+    }
+
+    private static void printSummary(List<StepResult> results, LoadTestOptions.Model model) {
+        System.out.printf("%n%-10s %10s %10s %10s %10s %10s %10s %10s%n",
+            model == LoadTestOptions.Model.OPEN ? "rate/s" : "users",
+            "ok/s", "errors", "unsent", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (StepResult result : results) {
+            System.out.printf("%-10d %10.1f %10d %10d %10.2f %10.2f %10.2f %10.2f%n",
+                result.load(), result.goodput(), result.errorCount(), result.unsent(),
+                result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(99.9),
+                result.latencyMicros().getMaxValue() / 1000.0);
+        }
+    }
+
+    private static void saveHistogram(StepResult result, Path workDir) throws IOException {
+        Path file = workDir.resolve(result.name().replaceAll("[^a-zA-Z0-9]+", "-") + ".hgrm");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            result.latencyMicros().outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static List<String> encode(List<String> words) {
+        List<String> encoded = new ArrayList<>(words.size());
+        for (String word : words) {
+            encoded.add(URLEncoder.encode(word, StandardCharsets.UTF_8).replace("+", "%20"));
+        }
+        return encoded;
+    }
+
+    private static List<String> readKeys(Path dictionary) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (String line : Files.readAllLines(dictionary, StandardCharsets.UTF_8)) {
+            int separator = line.indexOf('=');
+            if (separator > 0 && !line.startsWith("#")) {
+                keys.add(line.substring(0, separator).trim());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Однословные ключи из кириллицы; сгенерированный словарь одинаков при одинаковом размере.
+     */
+    private static Path generateDictionary(int size, Path target) throws IOException {
+        Random random = new Random(size);
+        Set<String> keys = new LinkedHashSet<>(size * 2);
+        while (keys.size() < size) {
+            int length = 3 + random.nextInt(8);
+            StringBuilder word = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+            keys.add(word.toString());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            int i = 0;
+            for (String key : keys) {
+                writer.write(key + "=word" + i++);
+                writer.newLine();
+            }
+        }
+        return target;
+    }
+}
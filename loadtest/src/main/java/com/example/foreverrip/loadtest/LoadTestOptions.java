@@ -0,0 +1,134 @@
+package com.example.foreverrip.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста в виде {@code --name=value}.
+ * Списочные параметры ({@code --rate}, {@code --concurrency}) задают ступени:
+ * тест прогоняется на каждой по очереди, что удобно для поиска точки насыщения.
+ */
+final class LoadTestOptions {
+
+    enum Model { OPEN, CLOSED }
+
+    static final String USAGE = """
+        Usage: java -jar loadtest.jar [--name=value ...]
+
+          --model=open|closed          open: постоянная частота запросов, closed: N пользователей подряд (open)
+          --rate=500,1000,2000         запросов в секунду для open, по ступени на значение (1000)
+          --concurrency=1,16,64        число пользователей для closed, по ступени на значение (16)
+          --duration=30s               длительность замера каждой ступени (30s)
+          --warmup=10s                 прогрев перед каждой ступенью, в отчет не входит (10s)
+          --distribution=uniform|zipf  распределение запрашиваемых слов (zipf)
+          --zipf-exponent=1.0          показатель степени для zipf (1.0)
+          --miss-ratio=0.0             доля слов, которых нет в словаре (0.0)
+          --dictionary=path            словарь для сервера; по умолчанию генерируется
+          --dictionary-size=100000     размер генерируемого словаря (100000)
+          --path=/api/client/translate/ путь на клиенте, к которому дописывается слово
+          --timeout=5s                 таймаут одного запроса (5s)
+          --max-in-flight=10000        для open: сверх этого запрос не отправляется (колонка unsent)
+          --apps=loadtest/target/apps  каталог с server.jar и client.jar
+          --target=http://host:port    не запускать приложения, а нагружать уже работающий клиент
+          --server-args="..."          дополнительные аргументы сервера (через пробел)
+          --client-args="..."          дополнительные аргументы клиента (через пробел)
+          --jvm-args="..."             аргументы JVM для обоих приложений
+          --work-dir=target/loadtest   каталог для логов и сгенерированного словаря
+        """;
+
+    Model model = Model.OPEN;
+    List<Integer> rates = List.of(1000);
+    List<Integer> concurrency = List.of(16);
+    Duration duration = Duration.ofSeconds(30);
+    Duration warmup = Duration.ofSeconds(10);
+    String distribution = "zipf";
+    double zipfExponent = 1.0;
+    double missRatio = 0.0;
+    Path dictionary;
+    int dictionarySize = 100_000;
+    String path = "/api/client/translate/";
+    Duration timeout = Duration.ofSeconds(5);
+    int maxInFlight = 10_000;
+    Path apps = Path.of("loadtest", "target", "apps");
+    String target;
+    List<String> serverArgs = List.of();
+    List<String> clientArgs = List.of();
+    List<String> jvmArgs = List.of();
+    Path workDir = Path.of("target", "loadtest");
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                throw new IllegalArgumentException(USAGE);
+            }
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg + "\n" + USAGE);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "model" -> options.model = Model.valueOf(value.toUpperCase());
+                case "rate" -> options.rates = integers(value);
+                case "concurrency" -> options.concurrency = integers(value);
+                case "duration" -> options.duration = duration(value);
+                case "warmup" -> options.warmup = duration(value);
+                case "distribution" -> options.distribution = value;
+                case "zipf-exponent" -> options.zipfExponent = Double.parseDouble(value);
+                case "miss-ratio" -> options.missRatio = Double.parseDouble(value);
+                case "dictionary" -> options.dictionary = Path.of(value);
+                case "dictionary-size" -> options.dictionarySize = Integer.parseInt(value);
+                case "path" -> options.path = value;
+                case "timeout" -> options.timeout = duration(value);
+                case "max-in-flight" -> options.maxInFlight = Integer.parseInt(value);
+                case "apps" -> options.apps = Path.of(value);
+                case "target" -> options.target = value;
+                case "server-args" -> options.serverArgs = words(value);
+                case "client-args" -> options.clientArgs = words(value);
+                case "jvm-args" -> options.jvmArgs = words(value);
+                case "work-dir" -> options.workDir = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option --" + entry.getKey() + "\n" + USAGE);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 500ms, 30s, 2m; число без суффикса - секунды.
+     */
+    static Duration duration(String value) {
+        String v = value.trim().toLowerCase();
+        if (v.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        }
+        if (v.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        if (v.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(v));
+    }
+
+    private static List<Integer> integers(String value) {
+        List<Integer> result = new ArrayList<>();
+        for (String part : value.split(",")) {
+            result.add(Integer.parseInt(part.trim()));
+        }
+        return List.copyOf(result);
+    }
+
+    private static List<String> words(String value) {
+        return Arrays.stream(value.trim().split("\\s+")).filter(s -> !s.isEmpty()).toList();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.foreverrip.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Выбор следующего запрашиваемого слова. Для Zipf слово с рангом k выбирается
+ * с вероятностью ~ 1/k^s; ранги назначаются в порядке списка, поэтому список
+ * стоит перемешать заранее. Потокобезопасен.
+ */
+abstract class WordDistribution {
+
+    protected final String[] words;
+
+    private WordDistribution(List<String> words) {
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("No words to request");
+        }
+        this.words = words.toArray(String[]::new);
+    }
+
+    abstract String next();
+
+    static WordDistribution of(String type, List<String> words, double zipfExponent) {
+        return switch (type.toLowerCase()) {
+            case "uniform" -> new Uniform(words);
+            case "zipf" -> new Zipf(words, zipfExponent);
+            default -> throw new IllegalArgumentException("Unknown distribution: " + type);
+        };
+    }
+
+    private static final class Uniform extends WordDistribution {
+
+        Uniform(List<String> words) {
+            super(words);
+        }
+
+        @Override
+        String next() {
+            return words[ThreadLocalRandom.current().nextInt(words.length)];
+        }
+    }
+
+    private static final class Zipf extends WordDistribution {
+
+        /** Накопленная вероятность рангов 0..i. */
+        private final double[] cumulative;
+
+        Zipf(List<String> words, double exponent) {
+            super(words);
+            this.cumulative = new double[this.words.length];
+            double sum = 0;
+            for (int rank = 0; rank < cumulative.length; rank++) {
+                sum += 1.0 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < cumulative.length; rank++) {
+                cumulative[rank] /= sum;
+            }
+        }
+
+        @Override
+        String next() {
+            int rank = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+            if (rank < 0) {
+                rank = -rank - 1;
+            }
+            return words[Math.min(rank, words.length - 1)];
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.foreverrip.config;
+
+import org.springframework.context.annotation.Conditional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Бин создается только в заданном режиме {@code translation.execution.mode}. Значение разбирается
+ * так же, как в {@link ExecutionProperties}: {@code virtual-threads}, {@code VIRTUAL_THREADS}
+ * и {@code virtual_threads} - один режим, а не строки, из которых подходит только одна.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Conditional(OnExecutionModeCondition.class)
+public @interface ConditionalOnExecutionMode {
+
+    ExecutionProperties.Mode value();
+}
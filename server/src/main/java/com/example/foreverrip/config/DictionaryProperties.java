@@ -0,0 +1,58 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Настройки источника словаря (префикс {@code translation.dictionary}).
+ * Если {@code location} не задан, словарь читается из classpath один раз при старте.
+ */
+@ConfigurationProperties(prefix = "translation.dictionary")
+public class DictionaryProperties {
+
+    /** Внешний файл словаря; при наличии имеет приоритет над classpath-ресурсом. */
+    private Path location;
+
+    /** Словарь из classpath, используемый когда внешний файл не задан. */
+    private String classpathResource = "dictionary.txt";
+
+    /** Следить ли за изменениями внешнего файла и перестраивать индекс. */
+    private boolean watch = true;
+
+    /** Пауза после последнего события файловой системы перед перестройкой индекса. */
+    private Duration reloadDebounce = Duration.ofMillis(250);
+
+    public Path getLocation() {
+        return location;
+    }
+
+    public void setLocation(Path location) {
+        this.location = location;
+    }
+
+    public String getClasspathResource() {
+        return classpathResource;
+    }
+
+    public void setClasspathResource(String classpathResource) {
+        this.classpathResource = classpathResource;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public Duration getReloadDebounce() {
+        return reloadDebounce;
+    }
+
+    public void setReloadDebounce(Duration reloadDebounce) {
+        this.reloadDebounce = reloadDebounce;
+    }
+}
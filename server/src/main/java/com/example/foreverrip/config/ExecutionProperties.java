@@ -0,0 +1,160 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки выполнения переводов (префикс {@code translation.execution}).
+ * Подбираются под конкретную машину: CPU-работа идет в отдельном пуле размером с число ядер,
+ * а все, что сверх лимита одновременных задач, сразу отклоняется с 503 вместо роста задержки.
+ */
+@ConfigurationProperties(prefix = "translation.execution")
+public class ExecutionProperties {
+
+    /**
+     * Как выполняются запросы перевода.
+     */
+    public enum Mode {
+        /** Конвейер Reactor: промахи кэша считаются в CPU-пуле фиксированного размера. */
+        REACTIVE,
+        /** Обычный блокирующий код, каждый запрос - в своем виртуальном потоке (Java 21). */
+        VIRTUAL_THREADS
+    }
+
+    /** Режим выполнения; одинаковые нагрузочные прогоны в обоих режимах позволяют выбрать лучший. */
+    private Mode mode = Mode.REACTIVE;
+
+    /** Потоков CPU-пула в режиме REACTIVE; по умолчанию - число доступных ядер. */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Сколько задач (запросов и пакетов) может одновременно выполняться или ждать в очереди;
+     * при {@code limit.adaptive} - верхняя граница адаптивного лимита.
+     */
+    private int maxPending = 1024;
+
+    /** Сколько слов пакета читается наперед и ждет в очереди CPU-пула. */
+    private int batchPrefetch = 256;
+
+    /** Значение заголовка Retry-After в ответе 503. */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    private final Limit limit = new Limit();
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    public int getBatchPrefetch() {
+        return batchPrefetch;
+    }
+
+    public void setBatchPrefetch(int batchPrefetch) {
+        this.batchPrefetch = batchPrefetch;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * Адаптивный лимит одновременных задач: по времени выполнения задач лимит снижается,
+     * как только оно растет относительно обычного или превышает {@code latency-target},
+     * и медленно растет, пока задержка в норме.
+     */
+    public static class Limit {
+
+        /** false - постоянный лимит {@code max-pending}, как без адаптации. */
+        private boolean adaptive = true;
+
+        private int initialLimit = 64;
+
+        private int minLimit = 4;
+
+        /** Время задачи (с ожиданием в очереди), выше которого лимит снижается в любом случае. */
+        private Duration latencyTarget = Duration.ofMillis(50);
+
+        /** Во сколько раз текущая задержка может превысить долгую среднюю, не снижая лимит. */
+        private double tolerance = 2.0;
+
+        /** Доля нового значения при пересчете лимита: меньше - плавнее и медленнее. */
+        private double smoothing = 0.2;
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public Duration getLatencyTarget() {
+            return latencyTarget;
+        }
+
+        public void setLatencyTarget(Duration latencyTarget) {
+            this.latencyTarget = latencyTarget;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public void setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Поиск с опечатками, включаемый запросом {@code ?fuzzy=1} (префикс {@code translation.fuzzy}).
+ */
+@ConfigurationProperties(prefix = "translation.fuzzy")
+public class FuzzyProperties {
+
+    /** Сколько правок (вставка, удаление, замена, перестановка соседних) допускается в слове. */
+    private int maxDistance = 2;
+
+    /** Слова не длиннее этого исправляются не больше чем одной правкой: две правки делают из них почти любое слово. */
+    private int shortWordLength = 4;
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public void setMaxDistance(int maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    public int getShortWordLength() {
+        return shortWordLength;
+    }
+
+    public void setShortWordLength(int shortWordLength) {
+        this.shortWordLength = shortWordLength;
+    }
+}
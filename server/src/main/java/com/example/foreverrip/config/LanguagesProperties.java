@@ -0,0 +1,130 @@
+package com.example.foreverrip.config;
+
+import com.example.foreverrip.text.Script;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пары языков (префикс {@code translation.languages}) для {@code /api/translate/{from}/{to}/{word}}.
+ * Пара основного словаря ({@code translation.dictionary}) - {@code default-from}-{@code default-to};
+ * словари остальных пар загружаются при первом запросе к паре, а в памяти остаются только
+ * недавно использованные - в пределах {@code max-resident-pairs} и {@code max-resident-entries}.
+ */
+@ConfigurationProperties(prefix = "translation.languages")
+public class LanguagesProperties {
+
+    private String defaultFrom = "ru";
+    private String defaultTo = "en";
+
+    /** Словари остальных пар: текстовые или скомпилированные файлы. */
+    private List<Pair> pairs = new ArrayList<>();
+
+    /** Сколько пар, не считая основной, держать в памяти одновременно. */
+    private int maxResidentPairs = 8;
+
+    /** Сколько записей всех загруженных пар (кроме основной) держать в памяти одновременно. */
+    private long maxResidentEntries = 2_000_000;
+
+    /** Потоки загрузки словарей пар. */
+    private int loaderThreads = 2;
+
+    /** Письменность языка, если она не та, что по умолчанию ({@link Script#forLanguage}), например {@code sr: LATIN}. */
+    private Map<String, Script> scripts = new HashMap<>();
+
+    public String getDefaultFrom() {
+        return defaultFrom;
+    }
+
+    public void setDefaultFrom(String defaultFrom) {
+        this.defaultFrom = defaultFrom;
+    }
+
+    public String getDefaultTo() {
+        return defaultTo;
+    }
+
+    public void setDefaultTo(String defaultTo) {
+        this.defaultTo = defaultTo;
+    }
+
+    public List<Pair> getPairs() {
+        return pairs;
+    }
+
+    public void setPairs(List<Pair> pairs) {
+        this.pairs = pairs;
+    }
+
+    public int getMaxResidentPairs() {
+        return maxResidentPairs;
+    }
+
+    public void setMaxResidentPairs(int maxResidentPairs) {
+        this.maxResidentPairs = maxResidentPairs;
+    }
+
+    public long getMaxResidentEntries() {
+        return maxResidentEntries;
+    }
+
+    public void setMaxResidentEntries(long maxResidentEntries) {
+        this.maxResidentEntries = maxResidentEntries;
+    }
+
+    public int getLoaderThreads() {
+        return loaderThreads;
+    }
+
+    public void setLoaderThreads(int loaderThreads) {
+        this.loaderThreads = loaderThreads;
+    }
+
+    public Map<String, Script> getScripts() {
+        return scripts;
+    }
+
+    public void setScripts(Map<String, Script> scripts) {
+        this.scripts = scripts;
+    }
+
+    public static class Pair {
+
+        /** Код исходного языка (ISO 639-1), например {@code de}. */
+        private String from;
+
+        /** Код языка перевода. */
+        private String to;
+
+        /** Файл словаря в формате {@code слово=перевод} или скомпилированный. */
+        private Path location;
+
+        public String getFrom() {
+            return from;
+        }
+
+        public void setFrom(String from) {
+            this.from = from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public void setTo(String to) {
+            this.to = to;
+        }
+
+        public Path getLocation() {
+            return location;
+        }
+
+        public void setLocation(Path location) {
+            this.location = location;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки нормализации входящих слов (префикс {@code translation.normalization}).
+ */
+@ConfigurationProperties(prefix = "translation.normalization")
+public class NormalizationProperties {
+
+    /** Сколько последних "тяжелых" входов (не прошедших быструю проверку) хранить в кэше; 0 - без кэша. */
+    private long cacheSize = 10_000;
+
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+}
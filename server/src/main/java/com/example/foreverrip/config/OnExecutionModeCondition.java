@@ -0,0 +1,28 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Условие {@link ConditionalOnExecutionMode}: режим привязывается {@link Binder} с нестрогим
+ * разбором enum, как сами {@link ExecutionProperties}, и без значения равен {@link ExecutionProperties.Mode#REACTIVE}.
+ */
+class OnExecutionModeCondition extends SpringBootCondition {
+
+    private static final String PROPERTY = "translation.execution.mode";
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        ExecutionProperties.Mode required = (ExecutionProperties.Mode) metadata
+            .getAnnotationAttributes(ConditionalOnExecutionMode.class.getName()).get("value");
+        ExecutionProperties.Mode mode = Binder.get(context.getEnvironment())
+            .bind(PROPERTY, ExecutionProperties.Mode.class)
+            .orElse(ExecutionProperties.Mode.REACTIVE);
+        return mode == required
+            ? ConditionOutcome.match(PROPERTY + " is " + mode)
+            : ConditionOutcome.noMatch(PROPERTY + " is " + mode + ", not " + required);
+    }
+}
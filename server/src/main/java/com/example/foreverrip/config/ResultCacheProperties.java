@@ -0,0 +1,45 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша готовых переводов (префикс {@code translation.result-cache}).
+ * Вытеснение - Window TinyLFU из Caffeine: частые слова держатся дольше редких.
+ */
+@ConfigurationProperties(prefix = "translation.result-cache")
+public class ResultCacheProperties {
+
+    private boolean enabled = true;
+
+    /** Максимальное число слов в кэше. */
+    private long maximumSize = 10_000;
+
+    /** Время жизни записи после вычисления. */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public void setExpireAfterWrite(Duration expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+}
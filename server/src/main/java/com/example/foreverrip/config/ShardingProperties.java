@@ -0,0 +1,50 @@
+package com.example.foreverrip.config;
+
+import com.example.foreverrip.sharding.ShardRing;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шардирование словаря между несколькими серверами (префикс {@code translation.sharding}).
+ * Все узлы и клиент должны получить одинаковые {@code nodes} и {@code virtual-nodes}:
+ * по ним строится одно и то же кольцо {@link ShardRing}. Пустой список - шардирования нет,
+ * узел загружает весь словарь.
+ */
+@ConfigurationProperties(prefix = "translation.sharding")
+public class ShardingProperties {
+
+    /** Имена всех узлов кольца. */
+    private List<String> nodes = new ArrayList<>();
+
+    /** Имя этого узла, одно из {@code nodes}. */
+    private String node;
+
+    /** Точек на кольце у каждого узла. */
+    private int virtualNodes = ShardRing.DEFAULT_VIRTUAL_NODES;
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<String> nodes) {
+        this.nodes = nodes;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+}
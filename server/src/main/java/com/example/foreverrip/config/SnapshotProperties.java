@@ -0,0 +1,48 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Снимок для быстрого старта (префикс {@code translation.snapshot}): нормализованный словарь
+ * в скомпилированном формате и самые горячие слова кэша результатов.
+ * Если {@code directory} не задан, снимок не пишется и не читается.
+ */
+@ConfigurationProperties(prefix = "translation.snapshot")
+public class SnapshotProperties {
+
+    /** Каталог снимка; должен переживать перезапуск (локальный диск узла). */
+    private Path directory;
+
+    /** Сколько самых горячих слов кэша результатов сохранять и прогревать при старте. */
+    private int hotEntries = 1000;
+
+    /** Как часто сохранять горячие слова кроме остановки; 0 - только при остановке. */
+    private Duration saveInterval = Duration.ofMinutes(5);
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public int getHotEntries() {
+        return hotEntries;
+    }
+
+    public void setHotEntries(int hotEntries) {
+        this.hotEntries = hotEntries;
+    }
+
+    public Duration getSaveInterval() {
+        return saveInterval;
+    }
+
+    public void setSaveInterval(Duration saveInterval) {
+        this.saveInterval = saveInterval;
+    }
+}
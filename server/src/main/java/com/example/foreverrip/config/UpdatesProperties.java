@@ -0,0 +1,61 @@
+package com.example.foreverrip.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Изменения словаря через API (префикс {@code translation.updates}): журнал изменений
+ * и его слияние со словарем. Если {@code directory} не задан, словарь меняется только файлом.
+ */
+@ConfigurationProperties(prefix = "translation.updates")
+public class UpdatesProperties {
+
+    /** Каталог журнала изменений; должен переживать перезапуск (локальный диск узла). */
+    private Path directory;
+
+    /**
+     * Сбрасывать каждую запись журнала на диск до ответа (fsync); false - быстрее,
+     * но при сбое ОС последние изменения могут потеряться.
+     */
+    private boolean sync = true;
+
+    /** После стольких изменений они сливаются со словарем в фоне. */
+    private int compactThreshold = 10_000;
+
+    /** Как часто сливать накопившиеся изменения, даже если их меньше порога. */
+    private Duration compactInterval = Duration.ofMinutes(10);
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    public int getCompactThreshold() {
+        return compactThreshold;
+    }
+
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    public Duration getCompactInterval() {
+        return compactInterval;
+    }
+
+    public void setCompactInterval(Duration compactInterval) {
+        this.compactInterval = compactInterval;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.foreverrip.controller;
+
+import com.example.foreverrip.config.ConditionalOnExecutionMode;
+import com.example.foreverrip.config.ExecutionProperties;
+import com.example.foreverrip.dictionary.ShardMembership;
+import com.example.foreverrip.service.LanguagePairTranslationService;
+import com.example.foreverrip.service.Translation;
+import com.example.foreverrip.service.TranslationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.example.foreverrip.controller.TranslationController.TEXT_PLAIN_UTF8;
+import static com.example.foreverrip.controller.TranslationController.matchHeaders;
+
+/**
+ * Те же запросы, что {@link TranslationController}, обычным блокирующим кодом для режима
+ * {@code translation.execution.mode=virtual-threads}: методы возвращают готовые значения,
+ * и WebFlux вызывает их в виртуальном потоке на запрос ({@link VirtualThreadsConfiguration}),
+ * а не в потоке Netty. Ответы и ошибки - байт в байт как в реактивном режиме.
+ */
+@RestController
+@RequestMapping("/api/translate")
+@ConditionalOnExecutionMode(ExecutionProperties.Mode.VIRTUAL_THREADS)
+public class BlockingTranslationController {
+    
+    private static final Logger log = LoggerFactory.getLogger(BlockingTranslationController.class);
+    private final TranslationService translationService;
+    private final LanguagePairTranslationService pairTranslationService;
+    private final boolean sharded;
+    
+    public BlockingTranslationController(TranslationService translationService,
+                                         LanguagePairTranslationService pairTranslationService,
+                                         ShardMembership shard) {
+        this.translationService = translationService;
+        this.pairTranslationService = pairTranslationService;
+        this.sharded = shard.isSharded();
+    }
+    
+    @GetMapping("/{russianWord}")
+    public ResponseEntity<DataBuffer> translate(@PathVariable String russianWord,
+                                                @RequestParam(defaultValue = "false") boolean fuzzy,
+                                                ServerHttpResponse response) {
+        return respond(() -> translationService.translateBlocking(russianWord, fuzzy), sharded, russianWord,
+            response.bufferFactory());
+    }
+    
+    @GetMapping("/{from}/{to}/{word}")
+    public ResponseEntity<DataBuffer> translatePair(@PathVariable String from, @PathVariable String to,
+                                                    @PathVariable String word,
+                                                    @RequestParam(defaultValue = "false") boolean fuzzy,
+                                                    ServerHttpResponse response) {
+        return respond(() -> pairTranslationService.translateBlocking(from, to, word, fuzzy),
+            sharded && pairTranslationService.isDefault(from, to), word, response.bufferFactory());
+    }
+    
+    private static ResponseEntity<DataBuffer> respond(Supplier<Translation> translate, boolean shardHeaders,
+                                                      String word, DataBufferFactory bufferFactory) {
+        Translation translation;
+        try {
+            translation = translate.get();
+        } catch (ResponseStatusException e) {
+            // 503 при перегрузке отдается как есть (с Retry-After)
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("Error translating word: {}", word, e);
+            return ResponseEntity
+                .badRequest()
+                .contentType(TEXT_PLAIN_UTF8)
+                .body(bufferFactory.wrap(("Error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8)));
+        }
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().contentType(TEXT_PLAIN_UTF8);
+        if (shardHeaders) {
+            matchHeaders(ok, translation);
+        }
+        return ok.body(translation.encode(bufferFactory));
+    }
+    
+    @GetMapping("/batch")
+    public List<String> translateBatch(@RequestParam List<String> words) {
+        log.debug("Received batch translation request for {} words", words.size());
+        return translationService.translateBatchBlocking(words);
+    }
+}
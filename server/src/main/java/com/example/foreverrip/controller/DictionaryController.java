@@ -0,0 +1,60 @@
+package com.example.foreverrip.controller;
+
+import com.example.foreverrip.dictionary.DictionaryUpdate;
+import com.example.foreverrip.service.DictionaryUpdateService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * Изменение словаря без правки файла: {@code PUT /api/dictionary/{word}} с переводом в теле
+ * (text/plain) - 201, если слово добавлено, 200, если перевод изменен; {@code DELETE} - 204
+ * или 404, если слова нет. В ответе - нормализованные ключ и перевод в формате словаря.
+ * На шарде слово принимает только узел-владелец, остальные отвечают 421.
+ * <p>
+ * API выключен, пока не задан {@code translation.updates.directory}: до тех пор любой запрос - 403.
+ * Доступ к включенному API не ограничивается - его надо закрыть на уровне сети или прокси.
+ */
+@RestController
+@RequestMapping("/api/dictionary")
+public class DictionaryController {
+
+    private final DictionaryUpdateService updateService;
+
+    public DictionaryController(DictionaryUpdateService updateService) {
+        this.updateService = updateService;
+    }
+
+    @PutMapping(value = "/{word}", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public Mono<ResponseEntity<String>> put(@PathVariable String word, @RequestBody String translation) {
+        return updateService.put(word, translation).map(DictionaryController::response);
+    }
+
+    @DeleteMapping("/{word}")
+    public Mono<ResponseEntity<String>> delete(@PathVariable String word) {
+        return updateService.delete(word).map(DictionaryController::response);
+    }
+
+    private static ResponseEntity<String> response(DictionaryUpdate update) {
+        HttpStatusCode status = switch (update.outcome()) {
+            case CREATED -> HttpStatus.CREATED;
+            case UPDATED, UNCHANGED -> HttpStatus.OK;
+            case DELETED -> HttpStatus.NO_CONTENT;
+            case NOT_FOUND -> HttpStatus.NOT_FOUND;
+            // 421 Misdirected Request
+            case NOT_OWNED -> HttpStatusCode.valueOf(421);
+        };
+        if (status.equals(HttpStatus.NO_CONTENT)) {
+            return ResponseEntity.noContent().build();
+        }
+        String body = switch (update.outcome()) {
+            case NOT_FOUND -> "Word not found: " + update.key();
+            case NOT_OWNED -> "Word belongs to another shard: " + update.key();
+            default -> update.key() + "=" + update.value();
+        };
+        return ResponseEntity.status(status).contentType(TranslationController.TEXT_PLAIN_UTF8).body(body);
+    }
+}
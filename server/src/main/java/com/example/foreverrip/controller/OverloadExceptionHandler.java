@@ -0,0 +1,21 @@
+package com.example.foreverrip.controller;
+
+import com.example.foreverrip.service.TranslationOverloadedException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Отказ по перегрузке - короткий ответ 503 с Retry-After
+ * (стандартный обработчик ошибок Spring Boot заголовки исключения не переносит).
+ */
+@RestControllerAdvice
+public class OverloadExceptionHandler {
+
+    @ExceptionHandler(TranslationOverloadedException.class)
+    public ResponseEntity<String> overloaded(TranslationOverloadedException e) {
+        return ResponseEntity.status(e.getStatusCode())
+            .headers(e.getHeaders())
+            .body(e.getReason());
+    }
+}
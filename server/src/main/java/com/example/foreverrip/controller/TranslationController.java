@@ -1,53 +1,109 @@
 package com.example.foreverrip.controller;
 
+import com.example.foreverrip.config.ConditionalOnExecutionMode;
+import com.example.foreverrip.config.ExecutionProperties;
+import com.example.foreverrip.dictionary.ShardMembership;
+import com.example.foreverrip.service.LanguagePairTranslationService;
+import com.example.foreverrip.service.Translation;
 import com.example.foreverrip.service.TranslationService;
+import com.example.foreverrip.sharding.MatchKind;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+/**
+ * Перевод слова и GET-пакета в режиме {@code translation.execution.mode=reactive} (по умолчанию):
+ * конвейер Reactor, промахи кэша считаются в CPU-пуле. В режиме виртуальных потоков те же
+ * пути обслуживает {@link BlockingTranslationController}, потоковые - {@link TranslationStreamController}.
+ * {@code /{from}/{to}/{word}} переводит в любой настроенной паре языков.
+ */
 @RestController
 @RequestMapping("/api/translate")
+@ConditionalOnExecutionMode(ExecutionProperties.Mode.REACTIVE)
 public class TranslationController {
     
     private static final Logger log = LoggerFactory.getLogger(TranslationController.class);
+    static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
     private final TranslationService translationService;
+    private final LanguagePairTranslationService pairTranslationService;
+    private final boolean sharded;
     
-    public TranslationController(TranslationService translationService) {
+    public TranslationController(TranslationService translationService,
+                                 LanguagePairTranslationService pairTranslationService, ShardMembership shard) {
         this.translationService = translationService;
+        this.pairTranslationService = pairTranslationService;
+        this.sharded = shard.isSharded();
     }
     
+    /**
+     * Ответ пишется байтами в буфер из пула Netty: префикс, перевод из индекса и суффикс
+     * копируются в него напрямую, без сборки строки ответа.
+     * На шарде в заголовках {@link MatchKind#HEADER} и {@link MatchKind#RANK_HEADER} - как найден перевод.
+     * {@code ?fuzzy=1} включает поиск ключа с опечаткой, если точного ключа нет.
+     */
     @GetMapping("/{russianWord}")
-    public Mono<ResponseEntity<String>> translate(@PathVariable String russianWord) {
-        log.info("🔍 Received translation request for word: {}", russianWord);
-        log.info("⏱️  Starting translation at: {}", System.currentTimeMillis());
-        
-        return translationService.translate(russianWord)
+    public Mono<ResponseEntity<DataBuffer>> translate(@PathVariable String russianWord,
+                                                      @RequestParam(defaultValue = "false") boolean fuzzy,
+                                                      ServerHttpResponse response) {
+        DataBufferFactory bufferFactory = response.bufferFactory();
+        // Время запроса и стадий - в метриках translation.request / translation.stage
+        return respond(translationService.translate(russianWord, fuzzy), sharded, russianWord, bufferFactory);
+    }
+    
+    /**
+     * Перевод в паре языков, например {@code /api/translate/de/en/haus}; основная пара
+     * ({@code /ru/en/...}) отвечает так же, как {@code /api/translate/{russianWord}}.
+     */
+    @GetMapping("/{from}/{to}/{word}")
+    public Mono<ResponseEntity<DataBuffer>> translatePair(@PathVariable String from, @PathVariable String to,
+                                                          @PathVariable String word,
+                                                          @RequestParam(defaultValue = "false") boolean fuzzy,
+                                                          ServerHttpResponse response) {
+        return Mono.defer(() -> respond(pairTranslationService.translate(from, to, word, fuzzy),
+            sharded && pairTranslationService.isDefault(from, to), word, response.bufferFactory()));
+    }
+    
+    private static Mono<ResponseEntity<DataBuffer>> respond(Mono<Translation> translated, boolean shardHeaders,
+                                                            String word, DataBufferFactory bufferFactory) {
+        return translated
             .map(translation -> {
-                log.info("✅ Translation successful: {} -> {}", russianWord, translation);
-                log.info("⏱️  Translation completed at: {}", System.currentTimeMillis());
-                return ResponseEntity.ok(translation);
+                ResponseEntity.BodyBuilder ok = ResponseEntity.ok().contentType(TEXT_PLAIN_UTF8);
+                if (shardHeaders) {
+                    matchHeaders(ok, translation);
+                }
+                return ok.body(translation.encode(bufferFactory));
             })
-            .onErrorResume(e -> {
-                log.error("❌ Error translating word: {}", russianWord, e);
+            // 503 при перегрузке отдается как есть (с Retry-After), остальные ошибки - 400
+            .onErrorResume(e -> !(e instanceof ResponseStatusException), e -> {
+                log.error("Error translating word: {}", word, e);
                 return Mono.just(ResponseEntity
                     .badRequest()
-                    .body("Error: " + e.getMessage()));
+                    .contentType(TEXT_PLAIN_UTF8)
+                    .body(bufferFactory.wrap(("Error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8))));
             });
     }
     
+    static void matchHeaders(ResponseEntity.BodyBuilder response, Translation translation) {
+        response.header(MatchKind.HEADER, translation.match().name());
+        if (translation.isFound()) {
+            response.header(MatchKind.RANK_HEADER, Integer.toString(translation.rank()));
+        }
+    }
+    
     @GetMapping("/batch")
     public Flux<String> translateBatch(@RequestParam List<String> words) {
-        log.info("📦 Received batch translation request for {} words", words.size());
+        log.debug("Received batch translation request for {} words", words.size());
         return translationService.translateBatch(words);
     }
-    
-    @GetMapping("/health")
-    public Mono<ResponseEntity<String>> health() {
-        return Mono.just(ResponseEntity.ok("Server is running"));
-    }
 }
\ No newline at end of file
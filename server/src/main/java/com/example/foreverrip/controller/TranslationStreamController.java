@@ -0,0 +1,72 @@
+package com.example.foreverrip.controller;
+
+import com.example.foreverrip.service.BatchTranslation;
+import com.example.foreverrip.service.TextTranslationService;
+import com.example.foreverrip.service.TranslationService;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Потоковые запросы - тело читается, а ответ пишется по частям - в любом режиме выполнения:
+ * в режиме виртуальных потоков элементы потока обрабатываются в виртуальных потоках
+ * вместо CPU-пула (см. {@link com.example.foreverrip.service.TranslationExecutor}).
+ */
+@RestController
+@RequestMapping("/api/translate")
+public class TranslationStreamController {
+    
+    private final TranslationService translationService;
+    private final TextTranslationService textTranslationService;
+    
+    public TranslationStreamController(TranslationService translationService,
+                                       TextTranslationService textTranslationService) {
+        this.translationService = translationService;
+        this.textTranslationService = textTranslationService;
+    }
+    
+    /**
+     * Потоковый пакетный перевод. Тело - JSON-массив слов или NDJSON (по слову в строке,
+     * строкой JSON или объектом {"word": ...}); ответ - NDJSON {word, translation}
+     * в порядке входа, отдается по мере готовности.
+     */
+    @PostMapping(value = "/batch",
+        consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+        produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchTranslation> translateBatchStream(@RequestBody Flux<JsonNode> words) {
+        return translationService.translateStream(words.map(TranslationStreamController::wordOf));
+    }
+    
+    private static String wordOf(JsonNode node) {
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        JsonNode word = node.get("word");
+        if (word != null && word.isTextual()) {
+            return word.textValue();
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+            "Batch items must be strings or {\"word\": ...} objects, got: " + node.getNodeType());
+    }
+    
+    /**
+     * Перевод текста: тело - текст в UTF-8 любого размера, ответ - тот же текст, в котором
+     * фразы словаря (самая длинная с каждого места) заменены переводами. Тело читается,
+     * а ответ пишется потоком, целиком текст в памяти не держится.
+     */
+    @PostMapping(value = "/text", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
+    public Flux<String> translateText(@RequestBody Flux<DataBuffer> body) {
+        return textTranslationService.translate(body);
+    }
+    
+    @GetMapping("/health")
+    public Mono<ResponseEntity<String>> health() {
+        return Mono.just(ResponseEntity.ok("Server is running"));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.foreverrip.controller;
+
+import com.example.foreverrip.config.ConditionalOnExecutionMode;
+import com.example.foreverrip.config.ExecutionProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Режим {@code translation.execution.mode=virtual-threads}: методы контроллеров, которые
+ * возвращают не Mono/Flux ({@link BlockingTranslationController}), WebFlux вызывает
+ * в новом виртуальном потоке, поэтому блокирующий код не занимает потоки Netty.
+ */
+@Configuration
+@ConditionalOnExecutionMode(ExecutionProperties.Mode.VIRTUAL_THREADS)
+public class VirtualThreadsConfiguration implements WebFluxConfigurer {
+
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        configurer.setExecutor(new VirtualThreadTaskExecutor("translation-request-"));
+    }
+}
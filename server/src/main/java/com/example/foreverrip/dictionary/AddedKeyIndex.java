@@ -0,0 +1,101 @@
+package com.example.foreverrip.dictionary;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс ключей, добавленных через API поверх базового индекса ({@link DeltaDictionaryIndex}):
+ * слова ключей, все их 1-3-символьные n-граммы и длины. Ключ записи не меняется, поэтому запись
+ * индексируется один раз, когда получает номер; удаление проверяет сам поиск. Списки - неизменяемые
+ * массивы по возрастанию номера, подменяемые целиком: читатели не берут блокировок.
+ * Добавленных ключей немного (до слияния), поэтому здесь хранятся и списки коротких n-грамм,
+ * которые базовые индексы ради памяти не держат.
+ */
+final class AddedKeyIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final ConcurrentHashMap<String, int[]> tokens = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, int[]> grams = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, int[]> lengths = new ConcurrentHashMap<>();
+
+    void add(int entry, String key) {
+        int length = key.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && DictionaryMatcher.isWhitespace(key.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !DictionaryMatcher.isWhitespace(key.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                tokens.compute(key.substring(start, end), (token, list) -> insert(list, entry));
+            }
+            start = end;
+        }
+        for (int i = 0; i < length; i++) {
+            for (int n = 1; n <= 3 && i + n <= length; n++) {
+                grams.compute(DictionaryMatcher.gram(key, i, n), (gram, list) -> insert(list, entry));
+            }
+        }
+        lengths.compute(length, (l, list) -> insert(list, entry));
+    }
+
+    /**
+     * Записи, в ключе которых может быть слово отдельным словом; для фразы - лишь кандидаты.
+     */
+    int[] tokenCandidates(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (DictionaryMatcher.isWhitespace(word.charAt(i))) {
+                return substringCandidates(word);
+            }
+        }
+        return tokens.getOrDefault(word, NONE);
+    }
+
+    /**
+     * Записи, ключ которых может содержать слово: для 1-3 символов - точно, дальше - кандидаты
+     * по самой редкой триграмме.
+     */
+    int[] substringCandidates(String word) {
+        if (word.length() <= 3) {
+            return grams.getOrDefault(DictionaryMatcher.gram(word, 0, word.length()), NONE);
+        }
+        int[] best = null;
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            int[] list = grams.get(DictionaryMatcher.gram(word, i, 3));
+            if (list == null) {
+                return NONE;
+            }
+            if (best == null || list.length < best.length) {
+                best = list;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Записи с ключом длины {@code length} (в char).
+     */
+    int[] withLength(int length) {
+        return lengths.getOrDefault(length, NONE);
+    }
+
+    private static int[] insert(int[] list, int entry) {
+        if (list == null) {
+            return new int[] {entry};
+        }
+        int at = Arrays.binarySearch(list, entry);
+        if (at >= 0) {
+            return list;
+        }
+        at = -at - 1;
+        int[] next = new int[list.length + 1];
+        System.arraycopy(list, 0, next, 0, at);
+        next[at] = entry;
+        System.arraycopy(list, at, next, at + 1, list.length - at);
+        return next;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.text.Script;
+import com.example.foreverrip.text.WordNormalization;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Раскладка скомпилированного словаря (.ripd). Все числа - big-endian int/long,
+ * все смещения строк - от начала секции строк, все строки - нормализованный UTF-8.
+ * <pre>
+ * header    128 байт: magic, formatVersion, entryCount, tokenCount, gramCount, -, sourceChecksum,
+ *                     смещения секций entries, tokens, grams, postings, strings,
+ *                     trie и reversedTrie с числом узлов в каждом, -, отпечаток нормализации (long, 0 - неизвестен),
+ *                     письменности ключей и переводов (имена {@link Script}, ASCII по 16 байт, нули - неизвестна;
+ *                     с версии 4)
+ * entries   entryCount x (keyOffset, keyLength, valueOffset, valueLength, rank)
+ *           отсортированы по байтам ключа; rank - номер записи в исходном файле
+ * tokens    tokenCount x (offset, length, entry) - слова многословных ключей,
+ *           отсортированы по байтам; entry - первая по rank многословная запись с этим словом
+ * grams     gramCount x (long gram, postingsStart, postingsCount), отсортированы по gram;
+ *           для 1-2 символьных n-грамм список состоит из одной последней по rank записи
+ *           (до версии 3 - первой)
+ * postings  номера записей (индексы в entries) по возрастанию rank
+ * trie      записи {@link FuzzyTrie} по ключам (int firstChild, symbol, entry), узлы плюс ограничитель;
+ *           symbol - code point, entry - номер записи в entries; с версии 2
+ * reversedTrie то же по ключам, перевернутым по code point (поиск с опечатками с конца слова)
+ * strings   байты ключей и переводов
+ * </pre>
+ * Файлы версии 1 читаются без деревьев: поиск с опечатками по ним ничего не находит.
+ * В файлах версий 1 и 2 подстрока из 1-2 символов находит первую запись, а не последнюю,
+ * как прежний перебор; такие файлы стоит перекомпилировать. В файлах до версии 4 не записаны письменности,
+ * поэтому словарь пары языков не проверяется на совпадение с ними.
+ * Формат рассчитан на файл до 2 ГиБ (одно отображение в память).
+ */
+final class CompiledDictionaryFormat {
+
+    static final int MAGIC = 0x52495044; // "RIPD"
+    static final int FORMAT_VERSION = 4;
+    static final int FORMAT_VERSION_WITHOUT_FUZZY = 1;
+
+    static final int HEADER_SIZE = 128;
+
+    static final int H_MAGIC = 0;
+    static final int H_FORMAT_VERSION = 4;
+    static final int H_ENTRY_COUNT = 8;
+    static final int H_TOKEN_COUNT = 12;
+    static final int H_GRAM_COUNT = 16;
+    static final int H_SOURCE_CHECKSUM = 24;
+    static final int H_ENTRIES = 32;
+    static final int H_TOKENS = 36;
+    static final int H_GRAMS = 40;
+    static final int H_POSTINGS = 44;
+    static final int H_STRINGS = 48;
+    static final int H_TRIE = 52;
+    static final int H_TRIE_NODES = 56;
+    static final int H_REVERSED_TRIE = 60;
+    static final int H_REVERSED_TRIE_NODES = 64;
+    static final int H_NORMALIZATION = 72;
+    static final int H_FROM_SCRIPT = 80;
+    static final int H_TO_SCRIPT = 96;
+    static final int SCRIPT_NAME_SIZE = 16;
+
+    static final int ENTRY_SIZE = 20;
+    static final int E_KEY_OFFSET = 0;
+    static final int E_KEY_LENGTH = 4;
+    static final int E_VALUE_OFFSET = 8;
+    static final int E_VALUE_LENGTH = 12;
+    static final int E_RANK = 16;
+
+    static final int TOKEN_SIZE = 12;
+    static final int T_OFFSET = 0;
+    static final int T_LENGTH = 4;
+    static final int T_ENTRY = 8;
+
+    static final int GRAM_SIZE = 16;
+    static final int G_GRAM = 0;
+    static final int G_START = 8;
+    static final int G_COUNT = 12;
+
+    private CompiledDictionaryFormat() {
+    }
+
+    /**
+     * Отпечаток всего, от чего зависят нормализованные строки файла: версии формата, версии правил
+     * {@link WordNormalization#RULES_VERSION}, таблиц Unicode рантайма (NFKC и toLowerCase берутся из JDK)
+     * и письменностей ключей и переводов. Снимок с другим отпечатком пересобирается.
+     */
+    static long normalizationFingerprint(Script keys, Script values) {
+        CRC32 crc = new CRC32();
+        crc.update(("format=" + FORMAT_VERSION + ";rules=" + WordNormalization.RULES_VERSION
+            + ";unicode=" + Runtime.version().feature() + ";keys=" + keys + ";values=" + values)
+            .getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * Имя письменности для заголовка; null - нули (неизвестна).
+     */
+    static byte[] scriptName(Script script) {
+        byte[] name = new byte[SCRIPT_NAME_SIZE];
+        if (script != null) {
+            byte[] bytes = script.name().getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(bytes, 0, name, 0, bytes.length);
+        }
+        return name;
+    }
+
+    /**
+     * Письменность из заголовка по смещению {@code at}; null - не записана или незнакома этой версии.
+     */
+    static Script script(ByteBuffer data, int at) {
+        byte[] name = new byte[SCRIPT_NAME_SIZE];
+        data.get(at, name);
+        int length = 0;
+        while (length < name.length && name[length] != 0) {
+            length++;
+        }
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(Arrays.copyOf(name, length), StandardCharsets.US_ASCII);
+        for (Script script : Script.values()) {
+            if (script.name().equals(value)) {
+                return script;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.text.Script;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.example.foreverrip.dictionary.CompiledDictionaryFormat.*;
+
+/**
+ * Записывает нормализованные записи словаря в формат {@link CompiledDictionaryFormat}.
+ * Файл пишется во временный и атомарно подменяет целевой, поэтому сервер, следящий
+ * за файлом, никогда не видит его наполовину записанным.
+ */
+public final class CompiledDictionaryWriter {
+
+    private CompiledDictionaryWriter() {
+    }
+
+    /**
+     * Запись без письменностей и отпечатка нормализации (0).
+     *
+     * @param entries        нормализованные записи в порядке исходного файла
+     * @param sourceChecksum контрольная сумма исходного текста (CRC32), сохраняется в заголовке
+     */
+    public static void write(LinkedHashMap<String, String> entries, long sourceChecksum, Path target)
+            throws IOException {
+        write(entries, null, sourceChecksum, 0, null, null, target);
+    }
+
+    /**
+     * @param entries        нормализованные записи в порядке исходного файла
+     * @param sourceChecksum контрольная сумма исходного текста (CRC32), сохраняется в заголовке
+     * @param from           письменность, по которой нормализованы ключи
+     * @param to             письменность, по которой нормализованы переводы
+     */
+    public static void write(LinkedHashMap<String, String> entries, long sourceChecksum, Script from, Script to,
+                             Path target) throws IOException {
+        write(entries, null, sourceChecksum, normalizationFingerprint(from, to), from, to, target);
+    }
+
+    /**
+     * Запись с заданными рангами и заголовком - для слияния изменений, где ранги и заголовок
+     * базового словаря сохраняются.
+     *
+     * @param ranks         ранги записей в порядке {@code entries}, строго возрастающие; null - порядковый номер
+     * @param normalization {@link CompiledDictionaryFormat#normalizationFingerprint отпечаток нормализации} записей
+     * @param from          письменность ключей, null - неизвестна
+     * @param to            письменность переводов, null - неизвестна
+     */
+    static void write(LinkedHashMap<String, String> entries, int[] ranks, long sourceChecksum, long normalization,
+                      Script from, Script to, Path target) throws IOException {
+        int count = entries.size();
+        String[] keyStrings = new String[count];
+        byte[][] keys = new byte[count][];
+        byte[][] values = new byte[count][];
+        int rank = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            keyStrings[rank] = entry.getKey();
+            keys[rank] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            values[rank] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            rank++;
+        }
+
+        // Порядок записей в файле - по байтам ключа, чтобы искать точный ключ бинарным поиском
+        int[] byRank = sortedOrder(count, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+        int[] slotOfRank = new int[count];
+        for (int slot = 0; slot < count; slot++) {
+            slotOfRank[byRank[slot]] = slot;
+        }
+
+        int[] keyOffset = new int[count];
+        int[] valueOffset = new int[count];
+        long stringsLength = 0;
+        for (int slot = 0; slot < count; slot++) {
+            int r = byRank[slot];
+            keyOffset[slot] = checkedInt(stringsLength);
+            stringsLength += keys[r].length;
+            valueOffset[slot] = checkedInt(stringsLength);
+            stringsLength += values[r].length;
+        }
+
+        List<int[]> tokens = collectTokens(keys, slotOfRank, keyOffset);
+        byte[][] tokenBytes = new byte[tokens.size()][];
+        for (int i = 0; i < tokens.size(); i++) {
+            int[] token = tokens.get(i);
+            int r = byRank[token[2]];
+            int start = token[0] - keyOffset[token[2]];
+            tokenBytes[i] = Arrays.copyOfRange(keys[r], start, start + token[1]);
+        }
+        int[] tokenOrder = sortedOrder(tokens.size(), (a, b) -> Arrays.compareUnsigned(tokenBytes[a], tokenBytes[b]));
+
+        // Префиксные деревья ключей и перевернутых ключей для поиска с опечатками
+        String[] slotKeys = new String[count];
+        byte[][] reversedKeys = new byte[count][];
+        int[] slots = new int[count];
+        for (int slot = 0; slot < count; slot++) {
+            slotKeys[slot] = keyStrings[byRank[slot]];
+            reversedKeys[slot] = new StringBuilder(slotKeys[slot]).reverse().toString().getBytes(StandardCharsets.UTF_8);
+            slots[slot] = slot;
+        }
+        int[] trie = FuzzyTrie.build(slots, new CodePointKeys(slotKeys, false));
+        int[] reversedOrder = sortedOrder(count, (a, b) -> Arrays.compareUnsigned(reversedKeys[a], reversedKeys[b]));
+        int[] reversedTrie = FuzzyTrie.build(reversedOrder, new CodePointKeys(slotKeys, true));
+
+        Map<Long, IntList> grams = collectGrams(keyStrings, slotOfRank);
+        long[] gramKeys = grams.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        long postingsCount = 0;
+        for (IntList list : grams.values()) {
+            postingsCount += list.size;
+        }
+
+        int entriesAt = HEADER_SIZE;
+        int tokensAt = checkedInt(entriesAt + (long) count * ENTRY_SIZE);
+        int gramsAt = checkedInt(tokensAt + (long) tokens.size() * TOKEN_SIZE);
+        int postingsAt = checkedInt(gramsAt + (long) gramKeys.length * GRAM_SIZE);
+        int trieAt = checkedInt(postingsAt + postingsCount * Integer.BYTES);
+        int reversedTrieAt = checkedInt(trieAt + (long) trie.length * Integer.BYTES);
+        int stringsAt = checkedInt(reversedTrieAt + (long) reversedTrie.length * Integer.BYTES);
+        checkedInt(stringsAt + stringsLength);
+
+        Path parent = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(count);
+                out.writeInt(tokens.size());
+                out.writeInt(gramKeys.length);
+                out.writeInt(0);
+                out.writeLong(sourceChecksum);
+                out.writeInt(entriesAt);
+                out.writeInt(tokensAt);
+                out.writeInt(gramsAt);
+                out.writeInt(postingsAt);
+                out.writeInt(stringsAt);
+                out.writeInt(trieAt);
+                out.writeInt(trie.length / FuzzyTrie.RECORD_INTS - 1);
+                out.writeInt(reversedTrieAt);
+                out.writeInt(reversedTrie.length / FuzzyTrie.RECORD_INTS - 1);
+                out.writeInt(0);
+                out.writeLong(normalization);
+                out.write(scriptName(from));
+                out.write(scriptName(to));
+                out.write(new byte[HEADER_SIZE - (H_TO_SCRIPT + SCRIPT_NAME_SIZE)]);
+
+                for (int slot = 0; slot < count; slot++) {
+                    int r = byRank[slot];
+                    out.writeInt(keyOffset[slot]);
+                    out.writeInt(keys[r].length);
+                    out.writeInt(valueOffset[slot]);
+                    out.writeInt(values[r].length);
+                    out.writeInt(ranks != null ? ranks[r] : r);
+                }
+
+                for (int i : tokenOrder) {
+                    int[] token = tokens.get(i);
+                    out.writeInt(token[0]);
+                    out.writeInt(token[1]);
+                    out.writeInt(token[2]);
+                }
+
+                int postingsStart = 0;
+                for (long gram : gramKeys) {
+                    IntList list = grams.get(gram);
+                    out.writeLong(gram);
+                    out.writeInt(postingsStart);
+                    out.writeInt(list.size);
+                    postingsStart += list.size;
+                }
+                for (long gram : gramKeys) {
+                    IntList list = grams.get(gram);
+                    for (int i = 0; i < list.size; i++) {
+                        out.writeInt(list.items[i]);
+                    }
+                }
+
+                for (int value : trie) {
+                    out.writeInt(value);
+                }
+                for (int value : reversedTrie) {
+                    out.writeInt(value);
+                }
+
+                for (int slot = 0; slot < count; slot++) {
+                    int r = byRank[slot];
+                    out.write(keys[r]);
+                    out.write(values[r]);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Слова многословных ключей: (смещение в секции строк, длина, запись с наименьшим rank).
+     * Однословные ключи не нужны - такое слово уже найдено бы точным поиском.
+     */
+    private static List<int[]> collectTokens(byte[][] keys, int[] slotOfRank, int[] keyOffset) {
+        List<int[]> tokens = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int r = 0; r < keys.length; r++) {
+            byte[] key = keys[r];
+            if (!containsWhitespace(key)) {
+                continue;
+            }
+            int slot = slotOfRank[r];
+            int start = 0;
+            while (start < key.length) {
+                while (start < key.length && isWhitespace(key[start])) {
+                    start++;
+                }
+                int end = start;
+                while (end < key.length && !isWhitespace(key[end])) {
+                    end++;
+                }
+                if (end > start && seen.add(new String(key, start, end - start, StandardCharsets.UTF_8))) {
+                    tokens.add(new int[] {keyOffset[slot] + start, end - start, slot});
+                }
+                start = end;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Те же n-граммы, что строит {@link DictionaryMatcher}, но со ссылками на позиции записей в файле.
+     */
+    private static Map<Long, IntList> collectGrams(String[] keys, int[] slotOfRank) {
+        Map<Long, IntList> grams = new HashMap<>();
+        for (int r = 0; r < keys.length; r++) {
+            String key = keys[r];
+            int slot = slotOfRank[r];
+            for (int i = 0; i < key.length(); i++) {
+                grams.computeIfAbsent(DictionaryMatcher.gram(key, i, 1), g -> new IntList()).setOnly(slot);
+                if (i + 2 <= key.length()) {
+                    grams.computeIfAbsent(DictionaryMatcher.gram(key, i, 2), g -> new IntList()).setOnly(slot);
+                }
+                if (i + 3 <= key.length()) {
+                    grams.computeIfAbsent(DictionaryMatcher.gram(key, i, 3), g -> new IntList()).addIfLast(slot);
+                }
+            }
+        }
+        return grams;
+    }
+
+    private static boolean containsWhitespace(byte[] key) {
+        for (byte b : key) {
+            if (isWhitespace(b)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Пробельные символы {@code \s} - ASCII, а в UTF-8 байты многобайтовых символов всегда >= 0x80.
+     */
+    static boolean isWhitespace(byte b) {
+        return b >= 0 && DictionaryMatcher.isWhitespace((char) b);
+    }
+
+    private static int[] sortedOrder(int size, Comparator<Integer> comparator) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, comparator);
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    private static int checkedInt(long value) {
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Compiled dictionary would exceed 2 GiB");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Ключи по номеру записи в файле для построения {@link FuzzyTrie}: символ - code point,
+     * как при чтении UTF-8 в {@link MappedDictionaryIndex}, смещение - в char.
+     * Порядок code point совпадает с порядком байт UTF-8, по которому отсортированы записи.
+     */
+    private static final class CodePointKeys implements FuzzyMatcher.Keys {
+
+        private final String[] keys;
+        private final boolean reversed;
+
+        CodePointKeys(String[] keys, boolean reversed) {
+            this.keys = keys;
+            this.reversed = reversed;
+        }
+
+        @Override
+        public int symbolAt(int entry, int offset) {
+            String key = keys[entry];
+            if (offset >= key.length()) {
+                return FuzzyMatcher.END;
+            }
+            return reversed ? key.codePointBefore(key.length() - offset) : key.codePointAt(offset);
+        }
+
+        @Override
+        public int width(int symbol) {
+            return Character.charCount(symbol);
+        }
+
+        @Override
+        public int[] symbols(String word) {
+            return word.codePoints().toArray();
+        }
+
+        @Override
+        public int rank(int entry) {
+            return entry;
+        }
+    }
+
+    private static final class IntList {
+        private int[] items = new int[1];
+        private int size;
+
+        /** Записи идут по возрастанию rank, поэтому остается последняя. */
+        void setOnly(int value) {
+            items[0] = value;
+            size = 1;
+        }
+
+        void addIfLast(int value) {
+            if (size > 0 && items[size - 1] == value) {
+                return;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+    }
+}
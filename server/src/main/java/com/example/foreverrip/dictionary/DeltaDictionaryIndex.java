@@ -0,0 +1,439 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.dictionary.DictionaryDelta.Change;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Словарь с изменениями через API: неизменяемый базовый индекс плюс слои {@link DictionaryDelta}
+ * (верхний принимает изменения, нижние ждут слияния со словарем). В отличие от остальных
+ * реализаций, этот индекс меняется на месте: изменение видно сразу, в том числе запросам,
+ * которые уже взяли снимок, - каждый поиск видит ключ либо до изменения, либо после.
+ * <p>
+ * Записи базового индекса сохраняют свои номера, добавленные ключи получают номера после них,
+ * а rank - после всех ключей базового индекса (как если бы их дописали в конец файла).
+ * Точный ключ ищется сначала в слоях, затем в базовом индексе. Добавленные ключи ищутся по своему
+ * {@link AddedKeyIndex индексу} (слова, n-граммы, длины для опечаток). Если лучшая запись базового
+ * индекса удалена, следующая ищется по его же спискам кандидатов начиная с места удаленной,
+ * а опечатки - тем же обходом дерева без удаленных записей; словарь целиком не перебирается.
+ */
+final class DeltaDictionaryIndex implements DictionaryIndex {
+
+    /** Сколько номеров записей всего хранят запомненные списки коротких слов (4 байта каждый). */
+    private static final long SHORT_WORDS_WEIGHT = 1 << 22;
+
+    private final DictionaryIndex base;
+    private final int baseSize;
+    /** rank первого добавленного ключа: после всех записей базового индекса. */
+    private final int addedRank;
+    private final AtomicInteger added = new AtomicInteger();
+    private final AddedKeyIndex addedKeys = new AddedKeyIndex();
+    /** Записи базового индекса с коротким словом, по возрастанию rank ({@link #shortWordEntries}). */
+    private final Cache<String, int[]> shortWords = Caffeine.newBuilder()
+        .maximumWeight(SHORT_WORDS_WEIGHT)
+        .weigher((String word, int[] entries) -> entries.length + 1)
+        .build();
+    private final long version;
+    /** Общий счетчик изменений {@link DictionaryUpdates}. */
+    private final AtomicLong sequence;
+    /** Слои от нового к старому. */
+    private volatile DictionaryDelta[] layers;
+
+    DeltaDictionaryIndex(DictionaryIndex base, long version, AtomicLong sequence, DictionaryDelta top) {
+        this.base = base;
+        this.baseSize = base.size();
+        int maxRank = -1;
+        for (int e = 0; e < baseSize; e++) {
+            maxRank = Math.max(maxRank, base.rank(e));
+        }
+        this.addedRank = maxRank + 1;
+        this.version = version;
+        this.sequence = sequence;
+        this.layers = new DictionaryDelta[] {top};
+    }
+
+    DictionaryIndex base() {
+        return base;
+    }
+
+    DictionaryDelta top() {
+        return layers[0];
+    }
+
+    DictionaryDelta[] layers() {
+        return layers;
+    }
+
+    /**
+     * Новый верхний слой; прежние слои остаются видны до слияния.
+     */
+    void push(DictionaryDelta layer) {
+        DictionaryDelta[] current = layers;
+        DictionaryDelta[] next = new DictionaryDelta[current.length + 1];
+        next[0] = layer;
+        System.arraycopy(current, 0, next, 1, current.length);
+        layers = next;
+    }
+
+    /**
+     * Номер для нового ключа; ключ сразу попадает в индекс добавленных, но виден поиску
+     * только после публикации изменения.
+     */
+    int allocate(String key) {
+        int entry = baseSize + added.getAndIncrement();
+        addedKeys.add(entry, key);
+        return entry;
+    }
+
+    /**
+     * Последнее изменение ключа во всех слоях, либо null.
+     */
+    Change change(String key) {
+        for (DictionaryDelta layer : layers) {
+            Change change = layer.get(key);
+            if (change != null) {
+                return change;
+            }
+        }
+        return null;
+    }
+
+    private Change change(int entry) {
+        for (DictionaryDelta layer : layers) {
+            Change change = layer.get(entry);
+            if (change != null) {
+                return change;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasChanges() {
+        for (DictionaryDelta layer : layers) {
+            if (!layer.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int exactEntry(String normalizedWord) {
+        Change change = change(normalizedWord);
+        if (change != null) {
+            return change.isDeleted() ? NOT_FOUND : change.entry;
+        }
+        return base.exactEntry(normalizedWord);
+    }
+
+    @Override
+    public int tokenEntry(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.isEmpty()) {
+            return NOT_FOUND;
+        }
+        int entry = base.tokenEntry(normalizedWord);
+        if (!hasChanges()) {
+            return entry;
+        }
+        if (entry != NOT_FOUND && !isLive(entry)) {
+            entry = nextInBase(normalizedWord, Match.TOKEN, entry);
+        }
+        // Добавленные ключи стоят после всех ключей базового индекса
+        return entry != NOT_FOUND ? entry : firstAdded(normalizedWord, Match.TOKEN);
+    }
+
+    @Override
+    public int substringEntry(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.isEmpty()) {
+            return NOT_FOUND;
+        }
+        if (!hasChanges()) {
+            return base.substringEntry(normalizedWord);
+        }
+        // Из подстрок побеждает позже стоящая запись, а добавленные ключи стоят после всех ключей базового индекса
+        int entry = firstAdded(normalizedWord, Match.SUBSTRING);
+        if (entry != NOT_FOUND) {
+            return entry;
+        }
+        entry = base.substringEntry(normalizedWord);
+        if (entry != NOT_FOUND && !isLive(entry)) {
+            entry = nextInBase(normalizedWord, Match.SUBSTRING, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public int fuzzyEntry(String normalizedWord, int maxDistance) {
+        if (normalizedWord == null || normalizedWord.isEmpty() || maxDistance < 0) {
+            return NOT_FOUND;
+        }
+        int entry = base.fuzzyEntry(normalizedWord, maxDistance);
+        if (!hasChanges()) {
+            return entry;
+        }
+        if (entry != NOT_FOUND && !isLive(entry)) {
+            entry = base.fuzzyEntry(normalizedWord, maxDistance, this::isLive);
+        }
+        int distance = entry != NOT_FOUND
+            ? FuzzyMatcher.distance(normalizedWord, base.key(entry), maxDistance)
+            : maxDistance + 1;
+        return closestAdded(normalizedWord, maxDistance, entry, distance);
+    }
+
+    /**
+     * Следующая за удаленной {@code dead} живая запись базового индекса, подходящая под {@code match}:
+     * для слова внутри ключа - дальше по rank, для подстроки - ближе к началу. Раньше {@code dead}
+     * (позже - для подстроки) подходящих записей нет, поэтому список кандидатов просматривается
+     * от ее места, а не с начала: обычно это несколько записей, а не весь словарь.
+     */
+    private int nextInBase(String word, Match match, int dead) {
+        IntBuffer candidates = base.candidateEntries(word);
+        if (candidates == null) {
+            candidates = IntBuffer.wrap(shortWordEntries(word, match));
+        }
+        int from = position(candidates, base.rank(dead));
+        if (match == Match.TOKEN) {
+            for (int i = from; i < candidates.limit(); i++) {
+                int e = candidates.get(i);
+                if (isLive(e) && match.distance(word, base.key(e), 0) == 0) {
+                    return e;
+                }
+            }
+        } else {
+            for (int i = from - 1; i >= 0; i--) {
+                int e = candidates.get(i);
+                if (isLive(e) && match.distance(word, base.key(e), 0) == 0) {
+                    return e;
+                }
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Первое место в списке по возрастанию rank, где rank не меньше {@code rank}.
+     */
+    private int position(IntBuffer candidates, int rank) {
+        int low = 0;
+        int high = candidates.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (base.rank(candidates.get(mid)) < rank) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Для слов из 1-2 символов списков в базовом индексе нет: все подходящие записи собираются
+     * одним проходом при первом таком поиске и запоминаются до слияния. Проход нужен, только если
+     * лучшая запись слова удалена, то есть лишь для коротких n-грамм удаленных ключей.
+     */
+    private int[] shortWordEntries(String word, Match match) {
+        return shortWords.get(match.ordinal() + ":" + word, k -> {
+            long[] found = new long[16];
+            int count = 0;
+            for (int e = 0; e < baseSize; e++) {
+                if (match.distance(word, base.key(e), 0) == 0) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = (long) base.rank(e) << 32 | e;
+                }
+            }
+            Arrays.sort(found, 0, count);
+            int[] entries = new int[count];
+            for (int i = 0; i < count; i++) {
+                entries[i] = (int) found[i];
+            }
+            return entries;
+        });
+    }
+
+    /**
+     * Лучший живой добавленный ключ для слова внутри ключа (первый) или подстроки (последний).
+     */
+    private int firstAdded(String word, Match match) {
+        if (added.get() == 0) {
+            return NOT_FOUND;
+        }
+        if (match == Match.TOKEN) {
+            for (int e : addedKeys.tokenCandidates(word)) {
+                if (isLive(e) && match.distance(word, key(e), 0) == 0) {
+                    return e;
+                }
+            }
+            return NOT_FOUND;
+        }
+        int[] candidates = addedKeys.substringCandidates(word);
+        for (int i = candidates.length - 1; i >= 0; i--) {
+            int e = candidates[i];
+            if (isLive(e) && match.distance(word, key(e), 0) == 0) {
+                return e;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Лучшая из записи {@code best} (на расстоянии {@code bestDistance}) и добавленных ключей
+     * подходящей длины; без записи {@code bestDistance} - {@code maxDistance + 1}, как у неподходящего ключа.
+     */
+    private int closestAdded(String word, int maxDistance, int best, int bestDistance) {
+        if (added.get() == 0) {
+            return best;
+        }
+        for (int length = Math.max(1, word.length() - maxDistance); length <= word.length() + maxDistance; length++) {
+            for (int e : addedKeys.withLength(length)) {
+                if (!isLive(e)) {
+                    continue;
+                }
+                int distance = FuzzyMatcher.distance(word, key(e), maxDistance);
+                if (distance < bestDistance || distance == bestDistance && distance <= maxDistance
+                        && best != NOT_FOUND && rank(e) < rank(best)) {
+                    best = e;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public boolean isLive(int entry) {
+        Change change = change(entry);
+        return change != null ? !change.isDeleted() : entry < baseSize;
+    }
+
+    @Override
+    public boolean shadowedElsewhere(int entry) {
+        return entry < baseSize && base.shadowedElsewhere(entry);
+    }
+
+    @Override
+    public int rank(int entry) {
+        return entry < baseSize ? base.rank(entry) : addedRank + (entry - baseSize);
+    }
+
+    @Override
+    public String key(int entry) {
+        if (entry < baseSize) {
+            return base.key(entry);
+        }
+        Change change = change(entry);
+        return change != null ? change.key : null;
+    }
+
+    @Override
+    public String value(int entry) {
+        if (entry == NOT_FOUND) {
+            return null;
+        }
+        Change change = change(entry);
+        if (change != null) {
+            return change.value;
+        }
+        return entry < baseSize ? base.value(entry) : null;
+    }
+
+    /**
+     * Запись, удаленную уже после того, как запрос ее нашел, запрос еще дочитывает
+     * по базовому индексу (или пустой, если ключ был добавлен).
+     */
+    @Override
+    public ByteBuffer encodedValue(int entry) {
+        Change change = change(entry);
+        if (change != null && !change.isDeleted()) {
+            return ByteBuffer.wrap(change.encodedValue);
+        }
+        return entry < baseSize ? base.encodedValue(entry) : ByteBuffer.allocate(0);
+    }
+
+    @Override
+    public long changeStamp() {
+        return sequence.get();
+    }
+
+    /**
+     * Ответ устарел, если после {@code stamp} изменилась его запись, а для ответа не по точному
+     * ключу - и если с тех пор ключи добавлялись или удалялись (мог появиться лучший кандидат).
+     */
+    @Override
+    public boolean unchangedSince(long stamp, int entry, boolean exact) {
+        for (DictionaryDelta layer : layers) {
+            if (!exact && layer.structural() > stamp) {
+                return false;
+            }
+        }
+        if (entry != NOT_FOUND) {
+            Change change = change(entry);
+            return change == null || change.sequence <= stamp;
+        }
+        return true;
+    }
+
+    /**
+     * Записи с пропусками: удаленные ключи сохраняют номера до слияния.
+     */
+    @Override
+    public int size() {
+        return baseSize + added.get();
+    }
+
+    @Override
+    public String source() {
+        return base.source();
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public Instant builtAt() {
+        return base.builtAt();
+    }
+
+    @Override
+    public Duration buildTime() {
+        return base.buildTime();
+    }
+
+    /**
+     * Проверка ключа при переборе: 0 - подходит, больше {@code maxDistance} - нет.
+     */
+    private enum Match {
+        TOKEN {
+            @Override
+            int distance(String word, String key, int maxDistance) {
+                return DictionaryMatcher.hasTokenOccurrence(key, word) ? 0 : maxDistance + 1;
+            }
+        },
+        SUBSTRING {
+            @Override
+            int distance(String word, String key, int maxDistance) {
+                return key.contains(word) ? 0 : maxDistance + 1;
+            }
+        },
+        FUZZY {
+            @Override
+            int distance(String word, String key, int maxDistance) {
+                return FuzzyMatcher.distance(word, key, maxDistance);
+            }
+        };
+
+        abstract int distance(String word, String key, int maxDistance);
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.foreverrip.dictionary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений словаря (write-ahead): изменение дописывается в конец файла до того,
+ * как его увидят запросы, поэтому после перезапуска словарь восстанавливается повтором журнала.
+ * <p>
+ * Файлы в каталоге {@code translation.updates.directory}:
+ * <ul>
+ *     <li>{@value #LOG} - текущий журнал, только дописывается;</li>
+ *     <li>{@value #FROZEN} - журнал, который сейчас сливается со словарем ({@link #rotate});</li>
+ *     <li>{@value #COMPACTED} - все уже слитые изменения, по одной записи на ключ;</li>
+ *     <li>{@code merged-N.ripd} - скомпилированный словарь со слитыми изменениями ({@link #nextMerged}),
+ *     если словарь скомпилирован.</li>
+ * </ul>
+ * Запись: {@code int} длина тела, {@code int} CRC32 тела, тело - операция (1 - перевод, 0 - удаление),
+ * длина и UTF-8 ключа, для перевода - длина и UTF-8 перевода. Недописанная или поврежденная запись
+ * в конце файла (сбой посреди записи) отбрасывается при чтении.
+ */
+final class DeltaLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DeltaLog.class);
+
+    static final String LOG = "updates.log";
+    static final String FROZEN = "updates.log.frozen";
+    static final String COMPACTED = "updates.compacted";
+    static final String MERGED = "merged-";
+    private static final String MERGED_SUFFIX = ".ripd";
+
+    private static final byte DELETE = 0;
+    private static final byte PUT = 1;
+
+    private final Path directory;
+    private final boolean sync;
+    private FileChannel channel;
+    private long mergedGeneration;
+
+    DeltaLog(Path directory, boolean sync) {
+        this.directory = directory;
+        this.sync = sync;
+    }
+
+    /**
+     * Читает все изменения - слитые, замороженные и текущий журнал - и открывает журнал для дозаписи.
+     *
+     * @return ключ -> перевод (null - ключ удален) в порядке первого изменения ключа
+     */
+    LinkedHashMap<String, String> open() throws IOException {
+        Files.createDirectories(directory);
+        // Слитые словари прошлого запуска не нужны: изменения снова накладываются на файл словаря
+        deleteMerged(false);
+        LinkedHashMap<String, String> changes = new LinkedHashMap<>();
+        read(directory.resolve(COMPACTED), changes);
+        read(directory.resolve(FROZEN), changes);
+        long valid = read(directory.resolve(LOG), changes);
+        channel = FileChannel.open(directory.resolve(LOG), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(valid);
+        channel.position(valid);
+        return changes;
+    }
+
+    /**
+     * Дописывает изменение ({@code value} null - удаление); при {@code sync} - с fsync.
+     */
+    void append(String key, String value) throws IOException {
+        ByteBuffer record = encode(key, value);
+        synchronized (this) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Замораживает текущий журнал перед слиянием и начинает новый. Вызывается, когда
+     * дозаписей нет. Если прошлое слияние не удалось, журнал дописывается к замороженному.
+     */
+    void rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        Path current = directory.resolve(LOG);
+        Path frozen = directory.resolve(FROZEN);
+        try {
+            if (Files.exists(frozen)) {
+                try (OutputStream out = Files.newOutputStream(frozen, StandardOpenOption.APPEND)) {
+                    Files.copy(current, out);
+                }
+                Files.delete(current);
+            } else {
+                Files.move(current, frozen, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            // Если заморозить не удалось, дописываем в прежний журнал
+            channel = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    /**
+     * Атомарно заменяет файл слитых изменений и удаляет замороженный журнал: его изменения уже в {@code folded}.
+     */
+    void writeCompacted(Map<String, String> folded) throws IOException {
+        Path target = directory.resolve(COMPACTED);
+        Path temp = Files.createTempFile(directory, COMPACTED, ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                for (Map.Entry<String, String> change : folded.entrySet()) {
+                    ByteBuffer record = encode(change.getKey(), change.getValue());
+                    out.write(record.array(), 0, record.limit());
+                }
+            }
+            try (FileChannel written = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                written.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Files.deleteIfExists(directory.resolve(FROZEN));
+    }
+
+    /**
+     * Путь для очередного слитого скомпилированного словаря. Номер растет с каждым слиянием:
+     * отображенный в память файл на части ОС нельзя ни подменить, ни удалить, пока он отображен.
+     */
+    Path nextMerged() {
+        return directory.resolve(MERGED + ++mergedGeneration + MERGED_SUFFIX);
+    }
+
+    /**
+     * Удаляет слитые словари, кроме последнего выданного {@link #nextMerged} при {@code keepLast}.
+     * Файл, который ОС не дает удалить (еще отображен), остается до следующего раза.
+     */
+    void deleteMerged(boolean keepLast) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, MERGED + "*" + MERGED_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long generation;
+                try {
+                    generation = Long.parseLong(
+                        name.substring(MERGED.length(), name.length() - MERGED_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                mergedGeneration = Math.max(mergedGeneration, generation);
+                if (keepLast && generation == mergedGeneration) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.debug("{} is still in use, left for later", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Очищает текущий журнал, когда все его изменения уже записаны в {@link #writeCompacted}.
+     */
+    void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private static ByteBuffer encode(String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+        int body = 1 + Integer.BYTES + keyBytes.length + (valueBytes != null ? Integer.BYTES + valueBytes.length : 0);
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + body);
+        record.putInt(body).putInt(0);
+        record.put(valueBytes != null ? PUT : DELETE).putInt(keyBytes.length).put(keyBytes);
+        if (valueBytes != null) {
+            record.putInt(valueBytes.length).put(valueBytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 2 * Integer.BYTES, body);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.flip();
+    }
+
+    /**
+     * Добавляет изменения файла в {@code changes}; возвращает длину целой части файла.
+     */
+    private static long read(Path file, LinkedHashMap<String, String> changes) throws IOException {
+        InputStream stream;
+        try {
+            stream = Files.newInputStream(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        long size = Files.size(file);
+        long valid = 0;
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException end) {
+                    break;
+                }
+                int expected = in.readInt();
+                if (length <= 0 || length > size) {
+                    throw new IOException("Invalid record length " + length);
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != expected) {
+                    throw new IOException("Checksum mismatch");
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                byte operation = buffer.get();
+                String key = string(buffer);
+                changes.put(key, operation == PUT ? string(buffer) : null);
+                valid += 2 * Integer.BYTES + length;
+                records++;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Dictionary update log {} is damaged after {} records ({}), dropping the tail",
+                file, records, e.toString());
+        }
+        return valid;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.service.TextNormalizer;
+import com.example.foreverrip.text.Script;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Сборка текстового словаря {@code русское=english} в {@link CompiledDictionaryFormat}:
+ * <pre>
+ * java -cp server/target/classes:&lt;classpath&gt; com.example.foreverrip.dictionary.DictionaryCompiler dictionary.txt dictionary.ripd
+ * </pre>
+ * Результат указывается в {@code translation.dictionary.location} вместо текстового файла.
+ * По умолчанию словарь собирается как основной (ключи и переводы - {@link Script#CYRILLIC}); словарь
+ * пары языков - с ее письменностями или языками: {@code DictionaryCompiler de-en.txt de-en.ripd LATIN LATIN}
+ * или {@code ... de en}. Письменности записываются в файл, и словарь пары с другими не загружается.
+ */
+public final class DictionaryCompiler {
+
+    private DictionaryCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 4) {
+            System.err.println("Usage: DictionaryCompiler <dictionary.txt> <dictionary.ripd>"
+                + " [<from-script|language> <to-script|language>]");
+            System.exit(2);
+        }
+        Path input = Path.of(args[0]);
+        Path output = Path.of(args[1]);
+        Script from = args.length == 4 ? script(args[2]) : Script.CYRILLIC;
+        Script to = args.length == 4 ? script(args[3]) : Script.CYRILLIC;
+
+        long start = System.nanoTime();
+        int entries = compile(input, output, from, to);
+        System.out.printf("Compiled %d entries from %s to %s for %s -> %s (%d bytes, took %d ms)%n",
+            entries, input, output, from, to, Files.size(output), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Письменность по имени ({@code LATIN}) или по коду языка ({@code de}).
+     */
+    private static Script script(String name) {
+        for (Script script : Script.values()) {
+            if (script.name().equalsIgnoreCase(name)) {
+                return script;
+            }
+        }
+        return Script.forLanguage(name);
+    }
+
+    /**
+     * @return число записей в собранном словаре
+     */
+    public static int compile(Path input, Path output) throws IOException {
+        return compile(input, output, Script.CYRILLIC, Script.CYRILLIC);
+    }
+
+    /**
+     * @param from письменность ключей
+     * @param to   письменность переводов
+     * @return число записей в собранном словаре
+     */
+    public static int compile(Path input, Path output, Script from, Script to) throws IOException {
+        byte[] source = Files.readAllBytes(input);
+        CRC32 checksum = new CRC32();
+        checksum.update(source);
+
+        NormalizationProperties normalization = new NormalizationProperties();
+        DictionaryLoader loader = new DictionaryLoader(new TextNormalizer(normalization, from),
+            new TextNormalizer(normalization, to));
+        LinkedHashMap<String, String> entries = loader.parse(new ByteArrayInputStream(source), input.toString());
+        CompiledDictionaryWriter.write(entries, checksum.getValue(), from, to, output);
+        return entries.size();
+    }
+}
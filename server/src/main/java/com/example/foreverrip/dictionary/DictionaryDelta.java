@@ -0,0 +1,92 @@
+package com.example.foreverrip.dictionary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Слой изменений словаря поверх неизменяемого индекса ({@link DeltaDictionaryIndex}).
+ * Изменения лежат в {@link ConcurrentHashMap}: чтение не берет блокировок, а запись блокирует
+ * только свою корзину таблицы, поэтому читатели никогда не ждут писателей.
+ */
+final class DictionaryDelta {
+
+    private final ConcurrentHashMap<String, Change> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Change> byEntry = new ConcurrentHashMap<>();
+    /** Номер последнего изменения, которое добавило или удалило ключ (а не только сменило перевод). */
+    private final AtomicLong structural = new AtomicLong();
+
+    Change get(String key) {
+        return byKey.get(key);
+    }
+
+    Change get(int entry) {
+        return byEntry.get(entry);
+    }
+
+    /**
+     * Публикует изменение: сначала в таблицах, затем номер - так, что изменение с номером
+     * не больше прочитанного кем-то счетчика этому читателю уже видно.
+     */
+    void put(Change change, boolean changesKeys, AtomicLong sequence) {
+        byKey.put(change.key, change);
+        byEntry.put(change.entry, change);
+        change.sequence = sequence.incrementAndGet();
+        if (changesKeys) {
+            structural.accumulateAndGet(change.sequence, Math::max);
+        }
+    }
+
+    long structural() {
+        return structural.get();
+    }
+
+    int size() {
+        return byKey.size();
+    }
+
+    boolean isEmpty() {
+        return byKey.isEmpty();
+    }
+
+    Iterable<Change> changes() {
+        return byKey.values();
+    }
+
+    /**
+     * Изменения по номеру записи: сначала записи индекса, затем добавленные ключи в порядке добавления.
+     */
+    List<Change> ordered() {
+        List<Change> changes = new ArrayList<>(byKey.values());
+        changes.sort(Comparator.comparingInt(change -> change.entry));
+        return changes;
+    }
+
+    /**
+     * Перевод ключа (null - ключ удален) и его UTF-8 для ответов.
+     */
+    static final class Change {
+
+        final String key;
+        final String value;
+        final byte[] encodedValue;
+        /** Номер записи в {@link DeltaDictionaryIndex}: запись базового индекса или добавленная. */
+        final int entry;
+        /** Порядковый номер изменения; до публикации - больше любого. */
+        volatile long sequence = Long.MAX_VALUE;
+
+        Change(String key, String value, int entry) {
+            this.key = key;
+            this.value = value;
+            this.encodedValue = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+            this.entry = entry;
+        }
+
+        boolean isDeleted() {
+            return value == null;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.DictionaryProperties;
+import com.example.foreverrip.config.SnapshotProperties;
+import com.example.foreverrip.config.UpdatesProperties;
+import com.example.foreverrip.service.TextNormalizer;
+import com.example.foreverrip.text.Script;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Держит текущий {@link DictionaryIndex} и атомарно подменяет его при изменении
+ * внешнего файла словаря. Индекс строится один раз при старте; перестройка идет
+ * в отдельном потоке, а запросы продолжают работать со старым снимком до подмены.
+ * Текстовый словарь при включенном {@link DictionarySnapshot снимке} берется из снимка,
+ * если текст с тех пор не менялся, и только иначе разбирается заново.
+ * <p>
+ * При заданном {@code translation.updates.directory} словарь меняется и через API
+ * ({@link #put}, {@link #delete}): изменения ведет {@link DictionaryUpdates}, он же подменяет
+ * снимок после слияния изменений, а перезагрузка файла накладывает изменения на новый словарь.
+ */
+@Component
+public final class DictionaryHolder implements SmartLifecycle, InfoContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(DictionaryHolder.class);
+
+    private final DictionaryProperties properties;
+    private final DictionaryLoader loader;
+    private final DictionarySnapshot snapshot;
+    private final Script script;
+    private final ShardMembership shard;
+    private final ApplicationEventPublisher events;
+    /** Null - изменения через API выключены. */
+    private final DictionaryUpdates updates;
+
+    private final AtomicReference<DictionaryIndex> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failedReloads = new AtomicLong();
+
+    private volatile WatchService watchService;
+    private volatile Thread watcher;
+
+    public DictionaryHolder(DictionaryProperties properties, SnapshotProperties snapshotProperties,
+                            UpdatesProperties updatesProperties, TextNormalizer normalizer, ShardMembership shard,
+                            ApplicationEventPublisher events, MeterRegistry registry) {
+        this.properties = properties;
+        this.loader = new DictionaryLoader(normalizer);
+        this.snapshot = new DictionarySnapshot(snapshotProperties, normalizer.script());
+        this.script = normalizer.script();
+        this.shard = shard;
+        this.events = events;
+        this.updates = updatesProperties.getDirectory() == null ? null
+            : new DictionaryUpdates(updatesProperties, current, versions::incrementAndGet, this::swapped, registry);
+
+        try {
+            current.set(build(versions.incrementAndGet()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load dictionary from " + describeSource(), e);
+        }
+        if (updates != null) {
+            try {
+                current.set(updates.open(current.get()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read dictionary changes from "
+                    + updatesProperties.getDirectory(), e);
+            }
+        }
+
+        FunctionCounter.builder("translation.dictionary.reloads", reloads, AtomicLong::get)
+            .description("Successful dictionary index swaps after startup")
+            .register(registry);
+        FunctionCounter.builder("translation.dictionary.reload.failures", failedReloads, AtomicLong::get)
+            .description("Dictionary rebuilds that failed and kept the previous index")
+            .register(registry);
+        Gauge.builder("translation.dictionary.entries", current, ref -> ref.get().size())
+            .description("Entries in the active dictionary index")
+            .register(registry);
+        TimeGauge.builder("translation.dictionary.build.time", current, TimeUnit.MILLISECONDS,
+                ref -> ref.get().buildTime().toNanos() / 1_000_000.0)
+            .description("Time it took to build the active dictionary index")
+            .register(registry);
+    }
+
+    /**
+     * Текущий снимок словаря. Вызывающий код должен взять ссылку один раз на запрос.
+     */
+    public DictionaryIndex current() {
+        return current.get();
+    }
+
+    public long reloadCount() {
+        return reloads.get();
+    }
+
+    /**
+     * Перестраивает индекс из источника и подменяет текущий. При ошибке старый индекс остается.
+     */
+    public boolean reload() {
+        DictionaryIndex previous = current.get();
+        try {
+            DictionaryIndex next = build(versions.incrementAndGet());
+            if (updates != null) {
+                // Подменяет снимок сам, вместе с изменениями через API
+                updates.rebase(next);
+            } else {
+                current.set(next);
+                swapped(previous, next);
+            }
+        } catch (IOException | RuntimeException e) {
+            failedReloads.incrementAndGet();
+            log.error("Dictionary reload from {} failed, keeping version {}", describeSource(), previous.version(), e);
+            return false;
+        }
+        reloads.incrementAndGet();
+        return true;
+    }
+
+    private void swapped(DictionaryIndex previous, DictionaryIndex next) {
+        log.info("Dictionary swapped: version {} -> {} ({} entries)", previous.version(), next.version(), next.size());
+        events.publishEvent(new DictionaryReloadedEvent(previous, next));
+    }
+
+    // ============================
+    // Изменения через API
+    // ============================
+
+    public boolean isUpdatable() {
+        return updates != null;
+    }
+
+    /**
+     * Задает перевод слова; ключ и перевод нормализуются так же, как при разборе файла словаря.
+     *
+     * @throws IllegalArgumentException если после нормализации слово или перевод пусты
+     * @throws IllegalStateException    если изменения через API выключены
+     */
+    public DictionaryUpdate put(String word, String translation) throws IOException {
+        String key = normalizeKey(word);
+        String value = loader.normalizeValue(translation);
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Translation is empty");
+        }
+        if (!shard.owns(key)) {
+            return new DictionaryUpdate(key, value, DictionaryUpdate.Outcome.NOT_OWNED);
+        }
+        return updates().put(key, value);
+    }
+
+    /**
+     * Удаляет слово из словаря; {@link DictionaryUpdate.Outcome#NOT_FOUND}, если его нет.
+     */
+    public DictionaryUpdate delete(String word) throws IOException {
+        String key = normalizeKey(word);
+        if (!shard.owns(key)) {
+            return new DictionaryUpdate(key, null, DictionaryUpdate.Outcome.NOT_OWNED);
+        }
+        return updates().delete(key);
+    }
+
+    private String normalizeKey(String word) {
+        String key = loader.normalizeKey(word);
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("Word is empty");
+        }
+        return key;
+    }
+
+    private DictionaryUpdates updates() {
+        if (updates == null) {
+            throw new IllegalStateException("Dictionary changes through the API are disabled");
+        }
+        return updates;
+    }
+
+    private DictionaryIndex build(long version) throws IOException {
+        Path location = properties.getLocation();
+        if (location != null) {
+            if (MappedDictionaryIndex.isCompiled(location)) {
+                MappedDictionaryIndex index = MappedDictionaryIndex.open(location, version);
+                if (!index.checkScripts(script, script)) {
+                    log.warn("{} does not record its scripts, recompile it to have them checked", location);
+                }
+                log.info("Compiled dictionary mapped from {}: {} entries (took {} ms)",
+                    location, index.size(), index.buildTime().toMillis());
+                if (shard.isSharded()) {
+                    // Отображение не занимает кучу; чужие точные ключи сюда не приходят,
+                    // а нечеткие совпадения по всему словарю слияние на клиенте не портят
+                    log.info("Shard {}: compiled dictionary is mapped whole, not filtered", shard.describe());
+                }
+                return index;
+            }
+            return buildText(Files.readAllBytes(location), location.toString(), version);
+        }
+        ClassPathResource resource = new ClassPathResource(properties.getClasspathResource());
+        try (InputStream in = resource.getInputStream()) {
+            return buildText(in.readAllBytes(), "classpath:" + properties.getClasspathResource(), version);
+        }
+    }
+
+    /**
+     * Текстовый словарь: из снимка, если он собран из этого же текста, иначе разбором
+     * с записью нового снимка (целиком, до отбора записей шарда - как скомпилированный файл).
+     */
+    private DictionaryIndex buildText(byte[] text, String source, long version) throws IOException {
+        long start = System.nanoTime();
+        CRC32 checksum = new CRC32();
+        checksum.update(text);
+        MappedDictionaryIndex restored = snapshot.open(checksum.getValue(), version);
+        if (restored != null) {
+            log.info("Dictionary {} restored from snapshot {}: {} entries (took {} ms)",
+                source, restored.source(), restored.size(), (System.nanoTime() - start) / 1_000_000);
+            return restored;
+        }
+        LinkedHashMap<String, String> entries = loader.parse(new ByteArrayInputStream(text), source);
+        snapshot.write(entries, checksum.getValue());
+        return loader.build(entries, source, version, shard, start);
+    }
+
+    private String describeSource() {
+        Path location = properties.getLocation();
+        return location != null ? location.toString() : "classpath:" + properties.getClasspathResource();
+    }
+
+    // ============================
+    // Слежение за внешним файлом
+    // ============================
+
+    @Override
+    public void start() {
+        if (updates != null) {
+            updates.start();
+        }
+        Path location = properties.getLocation();
+        if (location == null || !properties.isWatch()) {
+            return;
+        }
+
+        Path file = location.toAbsolutePath();
+        try {
+            watchService = file.getFileSystem().newWatchService();
+            file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot watch dictionary file " + file, e);
+        }
+
+        watcher = new Thread(() -> watch(file), "dictionary-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching dictionary file {}", file);
+    }
+
+    private void watch(Path file) {
+        long debounceMillis = properties.getReloadDebounce().toMillis();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = drain(key, file);
+
+                // Ждем, пока запись файла закончится (редакторы пишут в несколько приемов)
+                while (changed) {
+                    WatchKey next = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    drain(next, file);
+                }
+
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean drain(WatchKey key, Path file) {
+        boolean changed = key.pollEvents().stream()
+            .anyMatch(event -> file.getFileName().equals(event.context()));
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public void stop() {
+        Thread thread = watcher;
+        WatchService service = watchService;
+        watcher = null;
+        watchService = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                log.debug("Error closing dictionary watch service", e);
+            }
+        }
+        if (updates != null && updates.isRunning()) {
+            try {
+                updates.close();
+            } catch (IOException e) {
+                log.warn("Error closing dictionary change log", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return watcher != null || updates != null && updates.isRunning();
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        DictionaryIndex index = current.get();
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("source", index.source());
+        details.put("version", index.version());
+        details.put("entries", index.size());
+        details.put("builtAt", index.builtAt().toString());
+        details.put("buildTimeMs", index.buildTime().toMillis());
+        details.put("reloads", reloads.get());
+        details.put("failedReloads", failedReloads.get());
+        details.put("shard", shard.describe());
+        if (updates != null) {
+            details.put("pendingChanges", updates.pending());
+            details.put("mergedChanges", updates.folded());
+        }
+        builder.withDetail("dictionary", details);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.foreverrip.dictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.IntPredicate;
+
+/**
+ * Неизменяемый снимок словаря: нормализованное русское слово -> нормализованный перевод.
+ * Строится один раз (при старте или перезагрузке) и безопасно читается из любого потока;
+ * при перезагрузке подменяется целиком, поэтому запрос всегда видит согласованную версию.
+ * <p>
+ * Реализации: {@link InMemoryDictionaryIndex} (текстовый словарь, разобранный в кучу)
+ * и {@link MappedDictionaryIndex} (скомпилированный файл, отображенный в память).
+ * Исключение - {@link DeltaDictionaryIndex}: снимок с изменениями через API поверх одного из них,
+ * который меняется на месте до слияния изменений со словарем.
+ */
+public interface DictionaryIndex {
+
+    /**
+     * Номер записи, которой нет в словаре.
+     */
+    int NOT_FOUND = -1;
+
+    /**
+     * Номер записи с точным (уже нормализованным) ключом, либо {@link #NOT_FOUND}.
+     */
+    int exactEntry(String normalizedWord);
+
+    /**
+     * Номер записи, в ключе которой слово встречается отдельным словом (между пробелами),
+     * либо {@link #NOT_FOUND}. Ключ, равный слову, тоже подходит; из нескольких кандидатов -
+     * раньше стоящая в исходном файле, как в прежнем переборе с lookaround.
+     */
+    int tokenEntry(String normalizedWord);
+
+    /**
+     * Номер записи, в ключе которой слово встречается подстрокой, либо {@link #NOT_FOUND}.
+     * Из нескольких кандидатов - позже стоящая в исходном файле: прежний перебор
+     * не останавливался на подстроке, и побеждала последняя подходящая запись.
+     */
+    int substringEntry(String normalizedWord);
+
+    /**
+     * Номер записи для слова: {@link #tokenEntry слово внутри ключа} (в том числе точный ключ),
+     * затем {@link #substringEntry любое вхождение подстроки}. {@link #NOT_FOUND}, если ничего не нашлось.
+     */
+    default int matchEntry(String normalizedWord) {
+        int entry = tokenEntry(normalizedWord);
+        return entry != NOT_FOUND ? entry : substringEntry(normalizedWord);
+    }
+
+    /**
+     * Номер записи, ключ которой отличается от слова не больше чем на {@code maxDistance} правок
+     * (вставка, удаление, замена символа, перестановка соседних), либо {@link #NOT_FOUND}.
+     * Из нескольких кандидатов - ближайший, при равном расстоянии - раньше стоящий в исходном файле.
+     */
+    int fuzzyEntry(String normalizedWord, int maxDistance);
+
+    /**
+     * {@link #fuzzyEntry} только среди записей, для которых {@code accept} истинно: так слой изменений
+     * находит следующий по близости ключ, когда лучший удален. По умолчанию - перебор всех записей.
+     */
+    default int fuzzyEntry(String normalizedWord, int maxDistance, IntPredicate accept) {
+        if (normalizedWord == null || normalizedWord.isEmpty() || maxDistance < 0) {
+            return NOT_FOUND;
+        }
+        int best = NOT_FOUND;
+        int bestDistance = maxDistance + 1;
+        for (int e = 0; e < size(); e++) {
+            if (!accept.test(e)) {
+                continue;
+            }
+            int distance = FuzzyMatcher.distance(normalizedWord, key(e), maxDistance);
+            if (distance < bestDistance || distance == bestDistance && best != NOT_FOUND && rank(e) < rank(best)) {
+                best = e;
+                bestDistance = distance;
+            }
+        }
+        return bestDistance <= maxDistance ? best : NOT_FOUND;
+    }
+
+    /**
+     * Записи, ключ которых может содержать слово подстрокой, по возрастанию rank: каждая - лишь кандидат,
+     * но ни одна подходящая запись не пропущена. Буфер только для чтения и разделяется с индексом.
+     * null - такого списка нет (слово короче трех символов или индекс без n-грамм).
+     */
+    default IntBuffer candidateEntries(String normalizedWord) {
+        return null;
+    }
+
+    /**
+     * Номер записи для нормализованного слова - тот же, что у {@link #matchEntry}:
+     * точный ключ не обгоняет раньше стоящий ключ, где слово встречается отдельным словом.
+     */
+    default int lookupEntry(String normalizedWord) {
+        return matchEntry(normalizedWord);
+    }
+
+    /**
+     * Встречается ли ключ записи отдельным словом в более раннем ключе, которого нет в этом индексе
+     * (шард загрузил только часть словаря): тогда лучший ответ - та запись на другом узле,
+     * и точный ключ нельзя считать окончательным ответом.
+     */
+    default boolean shadowedElsewhere(int entry) {
+        return false;
+    }
+
+    /**
+     * Номер записи в исходном текстовом словаре (порядок первого появления ключа).
+     * У шарда записи - часть словаря, но rank у них тот же, что в целом словаре,
+     * поэтому "раньше стоящая в файле" сравнима между шардами.
+     */
+    int rank(int entry);
+
+    /**
+     * Нормализованный ключ записи. Записи нумеруются подряд с нуля до {@link #size()}.
+     */
+    String key(int entry);
+
+    /**
+     * Перевод записи строкой, либо null для {@link #NOT_FOUND}.
+     */
+    String value(int entry);
+
+    /**
+     * Перевод записи байтами UTF-8, закодированными один раз при построении индекса.
+     * Буфер разделяется всеми запросами без копирования: вызывающий не должен менять
+     * ни содержимое, ни позицию (для чтения - {@link ByteBuffer#duplicate()} или массив).
+     */
+    ByteBuffer encodedValue(int entry);
+
+    /**
+     * Есть ли запись сейчас: записи, удаленные через API, сохраняют номер до слияния,
+     * но ответов по ним быть не должно.
+     */
+    default boolean isLive(int entry) {
+        return true;
+    }
+
+    /**
+     * Отметка изменений для {@link #unchangedSince}; у неизменяемых снимков всегда 0.
+     */
+    default long changeStamp() {
+        return 0;
+    }
+
+    /**
+     * Верен ли еще ответ, найденный по записи {@code entry} ({@link #NOT_FOUND} - ничего не нашлось)
+     * на момент {@link #changeStamp() отметки} {@code stamp}; {@code exact} - найден по точному ключу.
+     */
+    default boolean unchangedSince(long stamp, int entry, boolean exact) {
+        return true;
+    }
+
+    /**
+     * Перевод по точному (уже нормализованному) ключу, либо null.
+     */
+    default String get(String normalizedWord) {
+        return value(exactEntry(normalizedWord));
+    }
+
+    /**
+     * Перевод по слову внутри ключа или подстроке ({@link #matchEntry}), либо null.
+     */
+    default String match(String normalizedWord) {
+        return value(matchEntry(normalizedWord));
+    }
+
+    /**
+     * Перевод для нормализованного слова ({@link #lookupEntry}), либо null.
+     */
+    default String lookup(String normalizedWord) {
+        return value(lookupEntry(normalizedWord));
+    }
+
+    int size();
+
+    String source();
+
+    long version();
+
+    Instant builtAt();
+
+    Duration buildTime();
+}
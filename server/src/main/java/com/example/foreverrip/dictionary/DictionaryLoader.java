@@ -0,0 +1,211 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.service.TextNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Разбор текстового словаря формата {@code русское=english} в {@link DictionaryIndex}.
+ * Пустые строки и строки, начинающиеся с '#', пропускаются.
+ * Ключи нормализуются по правилам письменности исходного языка, переводы - целевого.
+ */
+public class DictionaryLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(DictionaryLoader.class);
+
+    private final TextNormalizer normalizer;
+    private final TextNormalizer valueNormalizer;
+
+    public DictionaryLoader(TextNormalizer normalizer) {
+        this(normalizer, normalizer);
+    }
+
+    public DictionaryLoader(TextNormalizer keyNormalizer, TextNormalizer valueNormalizer) {
+        this.normalizer = keyNormalizer;
+        this.valueNormalizer = valueNormalizer;
+    }
+
+    public DictionaryIndex load(InputStream in, String source, long version) throws IOException {
+        return load(in, source, version, null);
+    }
+
+    /**
+     * Индекс из записей, которые принадлежат этому узлу ({@code shard} null - из всех).
+     * Словарь разбирается целиком: rank записи - ее номер среди всех ключей файла,
+     * а в индексе остается только своя часть.
+     */
+    public DictionaryIndex load(InputStream in, String source, long version, ShardMembership shard)
+            throws IOException {
+        long start = System.nanoTime();
+        return build(parse(in, source), source, version, shard, start);
+    }
+
+    /**
+     * Индекс из уже разобранных записей; чужие для шарда записи удаляются из {@code entries}.
+     *
+     * @param startNanos момент начала загрузки, от него считается время построения
+     */
+    public DictionaryIndex build(LinkedHashMap<String, String> entries, String source, long version,
+                                 ShardMembership shard, long startNanos) {
+        int[] ranks = null;
+        BitSet shadowed = null;
+        if (shard != null && shard.isSharded()) {
+            int total = entries.size();
+            ranks = new int[total];
+            shadowed = new BitSet();
+            Map<String, DictionaryMatcher.IntList> earlierKeys = new HashMap<>();
+            String[] allKeys = entries.keySet().toArray(new String[0]);
+            int kept = 0;
+            int rank = 0;
+            for (Iterator<String> keys = entries.keySet().iterator(); keys.hasNext(); rank++) {
+                String key = keys.next();
+                Set<String> words = words(key);
+                if (shard.owns(key)) {
+                    if (isShadowed(key, words, earlierKeys, allKeys)) {
+                        shadowed.set(kept);
+                    }
+                    ranks[kept++] = rank;
+                } else {
+                    keys.remove();
+                }
+                for (String word : words) {
+                    earlierKeys.computeIfAbsent(word, w -> new DictionaryMatcher.IntList()).addIfLast(rank);
+                }
+            }
+            ranks = Arrays.copyOf(ranks, kept);
+            log.info("Shard {} keeps {} of {} entries from {}", shard.describe(), kept, total, source);
+        }
+
+        InMemoryDictionaryIndex index = new InMemoryDictionaryIndex(entries, ranks, shadowed, source, version,
+            startNanos);
+        log.info("Dictionary built from {}: {} entries (took {} ms)",
+            source, index.size(), index.buildTime().toMillis());
+        return index;
+    }
+
+    /**
+     * Встречается ли ключ отдельным словом в одном из более ранних ключей всего словаря.
+     * Только загрузчик шарда видит файл целиком, поэтому отметка для
+     * {@link DictionaryIndex#shadowedElsewhere} считается здесь; {@code earlierKeys} - слово ->
+     * rank более ранних ключей с этим словом, проверяются ключи самого редкого слова.
+     */
+    private static boolean isShadowed(String key, Set<String> words,
+                                      Map<String, DictionaryMatcher.IntList> earlierKeys, String[] allKeys) {
+        DictionaryMatcher.IntList candidates = null;
+        for (String word : words) {
+            DictionaryMatcher.IntList list = earlierKeys.get(word);
+            if (list == null) {
+                return false;
+            }
+            if (candidates == null || list.size() < candidates.size()) {
+                candidates = list;
+            }
+        }
+        if (candidates == null) {
+            return false;
+        }
+        if (words.size() == 1 && words.contains(key)) {
+            return true;
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            if (DictionaryMatcher.hasTokenOccurrence(allKeys[candidates.get(i)], key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Слова ключа между пробельными символами {@code \s}.
+     */
+    private static Set<String> words(String key) {
+        Set<String> words = new LinkedHashSet<>();
+        int length = key.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && DictionaryMatcher.isWhitespace(key.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !DictionaryMatcher.isWhitespace(key.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                words.add(key.substring(start, end));
+            }
+            start = end;
+        }
+        return words;
+    }
+
+    /**
+     * Ключ записи в том виде, в каком он хранится в индексе. Так нормализуются и строки файла,
+     * и изменения через API, поэтому одно слово не может дать два разных ключа.
+     */
+    public String normalizeKey(String key) {
+        return normalizeTwice(normalizer, key);
+    }
+
+    /**
+     * Перевод записи в окончательном виде: он уходит в ответ как есть.
+     */
+    public String normalizeValue(String value) {
+        return normalizeTwice(valueNormalizer, value);
+    }
+
+    /**
+     * Нормализация не идемпотентна: toLowerCase может вывести новые комбинирующие знаки
+     * (İ -> i + U+0307), которые убирает только следующий проход. После второго прохода строка
+     * больше не меняется, поэтому хранимые ключ и перевод окончательны.
+     */
+    private static String normalizeTwice(TextNormalizer normalizer, String text) {
+        return normalizer.normalizeUncached(normalizer.normalizeUncached(text));
+    }
+
+    /**
+     * Нормализованные записи в порядке первого появления ключа; при повторе ключа побеждает последний перевод.
+     */
+    public LinkedHashMap<String, String> parse(InputStream in, String source) throws IOException {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        int lineCount = 0;
+        int duplicates = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineCount++;
+
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                int separator = line.indexOf('=');
+                if (separator >= 0) {
+                    String russian = normalizeKey(line.substring(0, separator));
+                    String english = normalizeValue(line.substring(separator + 1));
+
+                    if (entries.put(russian, english) != null) {
+                        duplicates++;
+                    }
+                }
+            }
+        }
+
+        log.info("Parsed {}: {} lines, {} entries, {} duplicate keys", source, lineCount, entries.size(), duplicates);
+        return entries;
+    }
+}
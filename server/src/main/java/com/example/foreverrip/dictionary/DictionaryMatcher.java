@@ -0,0 +1,235 @@
+package com.example.foreverrip.dictionary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Поиск записи словаря без перебора и без regex.
+ * Результат совпадает с прежним перебором записей в порядке файла:
+ * <ol>
+ *     <li>слово как отдельный токен ключа (бывший lookaround {@code (?<=^|\s)word(?=\s|$)}) -
+ *     таблица токенов; ключ, равный слову, - частный случай, поэтому из нескольких кандидатов,
+ *     как и прежде, побеждает раньше стоящий в файле, даже если это не точный ключ;</li>
+ *     <li>вхождение подстроки (бывшие {@code .*word.*} и {@code contains}) - n-граммный индекс;
+ *     прежний цикл не прерывался на подстроке, поэтому побеждает позже стоящая запись.</li>
+ * </ol>
+ * Точный ключ ({@link #exact}) ищется отдельно хеш-таблицей. Слово сравнивается буквально, а не как regex.
+ * Все методы возвращают номер записи (порядок в файле) или -1.
+ */
+final class DictionaryMatcher {
+
+    static final int NOT_FOUND = DictionaryIndex.NOT_FOUND;
+
+    private static final int[] NO_POSTINGS = new int[0];
+
+    private final String[] keys;
+    private final Map<String, Integer> exact;
+    private final Map<String, Integer> tokens;
+    /** Для 1- и 2-символьных n-грамм достаточно последней записи, которая их содержит. */
+    private final Map<Long, Integer> shortGrams;
+    /** Триграмма -> возрастающий список записей, содержащих ее. */
+    private final Map<Long, int[]> trigrams;
+
+    DictionaryMatcher(String[] keys) {
+        this.keys = keys;
+        this.exact = new HashMap<>(capacity(keys.length));
+        this.tokens = new HashMap<>();
+        this.shortGrams = new HashMap<>();
+
+        Map<Long, IntList> postings = new HashMap<>();
+        for (int id = 0; id < keys.length; id++) {
+            String key = keys[id];
+            exact.putIfAbsent(key, id);
+            indexTokens(key, id);
+            indexGrams(key, id, postings);
+        }
+
+        this.trigrams = new HashMap<>(capacity(postings.size()));
+        postings.forEach((gram, list) -> trigrams.put(gram, list.toArray()));
+    }
+
+    /**
+     * Лучший номер записи для нормализованного слова: токен (в том числе точный ключ), затем подстрока.
+     */
+    int find(String word) {
+        if (word == null || word.isEmpty()) {
+            return NOT_FOUND;
+        }
+        int id = token(word);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        return substring(word);
+    }
+
+    int exact(String word) {
+        Integer id = exact.get(word);
+        return id != null ? id : NOT_FOUND;
+    }
+
+    /**
+     * Первая запись, в которой слово стоит целиком между пробельными символами или краями ключа.
+     */
+    int token(String word) {
+        if (!containsWhitespace(word)) {
+            Integer id = tokens.get(word);
+            return id != null ? id : NOT_FOUND;
+        }
+        // Фраза из нескольких слов: кандидаты по n-граммам, затем проверка границ
+        int[] candidates = candidates(word);
+        for (int id : candidates) {
+            if (hasTokenOccurrence(keys[id], word)) {
+                return id;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Последняя запись, ключ которой содержит слово как подстроку.
+     */
+    int substring(String word) {
+        int length = word.length();
+        if (length == 0) {
+            return NOT_FOUND;
+        }
+        if (length < 3) {
+            Integer id = shortGrams.get(gram(word, 0, length));
+            return id != null ? id : NOT_FOUND;
+        }
+        int[] candidates = candidates(word);
+        for (int i = candidates.length - 1; i >= 0; i--) {
+            if (keys[candidates[i]].contains(word)) {
+                return candidates[i];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Самый короткий список записей среди триграмм слова (по возрастанию номера); каждая запись
+     * в нем - лишь кандидат. Для слов короче трех символов списка нет - пустой массив.
+     */
+    int[] candidates(String word) {
+        int[] best = null;
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            int[] list = trigrams.get(gram(word, i, 3));
+            if (list == null) {
+                return NO_POSTINGS;
+            }
+            if (best == null || list.length < best.length) {
+                best = list;
+            }
+        }
+        return best != null ? best : NO_POSTINGS;
+    }
+
+    private void indexTokens(String key, int id) {
+        int length = key.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && isWhitespace(key.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !isWhitespace(key.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                tokens.putIfAbsent(key.substring(start, end), id);
+            }
+            start = end;
+        }
+    }
+
+    private void indexGrams(String key, int id, Map<Long, IntList> postings) {
+        int length = key.length();
+        for (int i = 0; i < length; i++) {
+            shortGrams.put(gram(key, i, 1), id);
+            if (i + 2 <= length) {
+                shortGrams.put(gram(key, i, 2), id);
+            }
+            if (i + 3 <= length) {
+                postings.computeIfAbsent(gram(key, i, 3), g -> new IntList()).addIfLast(id);
+            }
+        }
+    }
+
+    static boolean hasTokenOccurrence(String key, String word) {
+        int from = 0;
+        int at;
+        while ((at = key.indexOf(word, from)) >= 0) {
+            int end = at + word.length();
+            boolean leftBoundary = at == 0 || isWhitespace(key.charAt(at - 1));
+            boolean rightBoundary = end == key.length() || isWhitespace(key.charAt(end));
+            if (leftBoundary && rightBoundary) {
+                return true;
+            }
+            from = at + 1;
+        }
+        return false;
+    }
+
+    private static boolean containsWhitespace(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (isWhitespace(word.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Тот же набор символов, что и {@code \s} в java.util.regex.
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Упаковывает до трех символов UTF-16 в long; длина хранится в старших битах.
+     */
+    static long gram(String s, int from, int length) {
+        long gram = (long) length << 48;
+        for (int i = 0; i < length; i++) {
+            gram |= (long) s.charAt(from + i) << (16 * (length - 1 - i));
+        }
+        return gram;
+    }
+
+    private static int capacity(int expected) {
+        return (int) (expected / 0.75f) + 1;
+    }
+
+    /**
+     * Растущий массив int без упаковки в Integer.
+     */
+    static final class IntList {
+        private int[] items = new int[2];
+        private int size;
+
+        /** Записи добавляются по возрастанию номера, поэтому повтор может быть только последним. */
+        void addIfLast(int value) {
+            if (size > 0 && items[size - 1] == value) {
+                return;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return items[index];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+}
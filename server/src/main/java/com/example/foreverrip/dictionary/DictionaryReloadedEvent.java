@@ -0,0 +1,7 @@
+package com.example.foreverrip.dictionary;
+
+/**
+ * Публикуется после того, как новый индекс словаря подменил предыдущий.
+ */
+public record DictionaryReloadedEvent(DictionaryIndex previous, DictionaryIndex current) {
+}
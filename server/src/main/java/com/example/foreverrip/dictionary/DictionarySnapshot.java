@@ -0,0 +1,89 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.SnapshotProperties;
+import com.example.foreverrip.text.Script;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+
+/**
+ * Снимок текстового словаря для быстрого старта: нормализованные записи, записанные
+ * в {@link CompiledDictionaryFormat} вместе с CRC32 исходного текста и
+ * {@link CompiledDictionaryFormat#normalizationFingerprint отпечатком нормализации}.
+ * <p>
+ * Разбор и NFKC каждой строки - основная цена загрузки текстового словаря. Контрольная
+ * сумма считается одним проходом по байтам, поэтому при неизменном источнике старт
+ * сводится к ее подсчету и отображению снимка в память ({@link MappedDictionaryIndex}).
+ * Снимок, собранный из другого текста, по другим правилам нормализации, в другой версии формата
+ * или поврежденный, просто пересобирается: ошибки снимка никогда не мешают загрузить словарь.
+ */
+final class DictionarySnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(DictionarySnapshot.class);
+
+    static final String FILE_NAME = "dictionary.ripd";
+
+    private final Path file;
+    private final Script script;
+    private final long normalization;
+
+    /**
+     * @param script письменность ключей и переводов словаря
+     */
+    DictionarySnapshot(SnapshotProperties properties, Script script) {
+        this.file = properties.getDirectory() != null ? properties.getDirectory().resolve(FILE_NAME) : null;
+        this.script = script;
+        this.normalization = CompiledDictionaryFormat.normalizationFingerprint(script, script);
+    }
+
+    boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Снимок, собранный из текста с контрольной суммой {@code sourceChecksum} по текущим правилам
+     * нормализации, либо null.
+     */
+    MappedDictionaryIndex open(long sourceChecksum, long version) {
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            MappedDictionaryIndex index = MappedDictionaryIndex.open(file, version);
+            if (index.normalizationFingerprint() != normalization) {
+                log.info("Snapshot {} was built with other normalization rules or format, rebuilding", file);
+            } else if (index.sourceChecksum() != sourceChecksum) {
+                log.info("Snapshot {} was built from another dictionary, rebuilding", file);
+            } else {
+                return index;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Snapshot {} is unreadable, rebuilding", file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Записывает снимок атомарной подменой файла. Ошибка только пишется в журнал.
+     *
+     * @param entries все нормализованные записи источника (до отбора записей шарда)
+     */
+    void write(LinkedHashMap<String, String> entries, long sourceChecksum) {
+        if (file == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            CompiledDictionaryWriter.write(entries, sourceChecksum, script, script, file);
+            log.info("Dictionary snapshot written to {}: {} entries (took {} ms)",
+                file, entries.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write dictionary snapshot {}", file, e);
+        }
+    }
+}
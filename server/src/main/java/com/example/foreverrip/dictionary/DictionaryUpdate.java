@@ -0,0 +1,21 @@
+package com.example.foreverrip.dictionary;
+
+/**
+ * Итог изменения словаря через API: нормализованные ключ и перевод (null - при удалении).
+ */
+public record DictionaryUpdate(String key, String value, Outcome outcome) {
+
+    public enum Outcome {
+        /** Добавлен новый ключ. */
+        CREATED,
+        /** Изменен перевод существующего ключа. */
+        UPDATED,
+        /** Перевод уже такой; журнал не трогается. */
+        UNCHANGED,
+        DELETED,
+        /** Удалять нечего. */
+        NOT_FOUND,
+        /** Ключ принадлежит другому шарду. */
+        NOT_OWNED
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.UpdatesProperties;
+import com.example.foreverrip.dictionary.DictionaryDelta.Change;
+import com.example.foreverrip.dictionary.DictionaryUpdate.Outcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Изменения словаря через API. Изменение сначала дописывается в {@link DeltaLog журнал},
+ * затем публикуется в верхнем слое {@link DeltaDictionaryIndex текущего снимка}: словарь
+ * не копируется, читатели не берут блокировок. Изменения одного ключа упорядочены блокировкой
+ * его полосы (одной из {@value #STRIPES}), писатели разных ключей друг друга не ждут; общую
+ * блокировку писатели берут только на чтение, исключительно ее на мгновение берет заморозка слоя.
+ * <p>
+ * Слияние идет в фоне ({@code dictionary-compactor}) по порогу изменений и по расписанию:
+ * верхний слой замораживается вместе с журналом, новые изменения идут в новый слой,
+ * замороженные сливаются с базовым индексом в новый индекс того же вида (скомпилированный словарь -
+ * в новый файл в каталоге журнала, текстовый - в {@link InMemoryDictionaryIndex}), все слитые изменения
+ * записываются в файл одним снимком, и текущий снимок подменяется новым - вместе с изменениями,
+ * пришедшими за время слияния. Перезагрузка файла словаря ({@link #rebase}) проходит тот же путь:
+ * изменения через API накладываются на новый словарь, а те, что в нем уже есть, забываются.
+ */
+final class DictionaryUpdates implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DictionaryUpdates.class);
+
+    private static final int STRIPES = 64;
+
+    private final UpdatesProperties properties;
+    private final DeltaLog deltaLog;
+    private final AtomicReference<DictionaryIndex> current;
+    private final LongSupplier versions;
+    /** Вызывается после подмены снимка: прежний, новый. */
+    private final BiConsumer<DictionaryIndex, DictionaryIndex> swapped;
+
+    private final Object[] stripes = new Object[STRIPES];
+    private final ReentrantReadWriteLock freeze = new ReentrantReadWriteLock();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+
+    private final Counter puts;
+    private final Counter deletes;
+    private final Counter compactions;
+    private final Counter failedCompactions;
+
+    /** Все уже слитые изменения (они же в {@link DeltaLog#COMPACTED}); подменяется только под монитором. */
+    private volatile LinkedHashMap<String, String> folded;
+    private volatile DeltaDictionaryIndex overlay;
+    private volatile ScheduledExecutorService compactor;
+
+    DictionaryUpdates(UpdatesProperties properties, AtomicReference<DictionaryIndex> current, LongSupplier versions,
+                      BiConsumer<DictionaryIndex, DictionaryIndex> swapped, MeterRegistry registry) {
+        this.properties = properties;
+        this.deltaLog = new DeltaLog(properties.getDirectory(), properties.isSync());
+        this.current = current;
+        this.versions = versions;
+        this.swapped = swapped;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+
+        this.puts = Counter.builder("translation.dictionary.updates")
+            .description("Dictionary changes made through the API")
+            .tag("operation", "put")
+            .register(registry);
+        this.deletes = Counter.builder("translation.dictionary.updates")
+            .description("Dictionary changes made through the API")
+            .tag("operation", "delete")
+            .register(registry);
+        this.compactions = Counter.builder("translation.dictionary.compactions")
+            .description("Merges of API changes into the dictionary index")
+            .register(registry);
+        this.failedCompactions = Counter.builder("translation.dictionary.compaction.failures")
+            .description("Merges that failed and kept the changes in the log")
+            .register(registry);
+        Gauge.builder("translation.dictionary.updates.pending", this, DictionaryUpdates::pending)
+            .description("API changes not yet merged into the dictionary index")
+            .register(registry);
+    }
+
+    /**
+     * Повторяет журнал поверх {@code base} и возвращает снимок, принимающий изменения.
+     */
+    synchronized DictionaryIndex open(DictionaryIndex base) throws IOException {
+        LinkedHashMap<String, String> logged = deltaLog.open();
+        LinkedHashMap<String, String> changes = unapplied(base, logged);
+        DictionaryIndex start = changes.isEmpty() ? base : merge(base, changes);
+        if (!logged.isEmpty()) {
+            deltaLog.writeCompacted(changes);
+            deltaLog.truncate();
+            log.info("Dictionary changes from {} applied: {} keys, {} already in the dictionary",
+                properties.getDirectory(), changes.size(), logged.size() - changes.size());
+        }
+        folded = changes;
+        overlay = new DeltaDictionaryIndex(start, base.version(), sequence, new DictionaryDelta());
+        return overlay;
+    }
+
+    DictionaryUpdate put(String key, String value) throws IOException {
+        DictionaryUpdate update;
+        synchronized (stripe(key)) {
+            freeze.readLock().lock();
+            try {
+                DeltaDictionaryIndex index = overlay;
+                Change previous = index.change(key);
+                int entry = previous != null ? previous.entry : index.base().exactEntry(key);
+                String old = previous != null ? previous.value : index.base().value(entry);
+                if (value.equals(old)) {
+                    return new DictionaryUpdate(key, value, Outcome.UNCHANGED);
+                }
+                deltaLog.append(key, value);
+                // Номер новому ключу - только после записи в журнал, чтобы не оставлять пропусков
+                if (entry == DictionaryIndex.NOT_FOUND) {
+                    entry = index.allocate(key);
+                }
+                index.top().put(new Change(key, value, entry), old == null, sequence);
+                update = new DictionaryUpdate(key, value, old == null ? Outcome.CREATED : Outcome.UPDATED);
+            } finally {
+                freeze.readLock().unlock();
+            }
+        }
+        puts.increment();
+        compactIfFull();
+        return update;
+    }
+
+    DictionaryUpdate delete(String key) throws IOException {
+        synchronized (stripe(key)) {
+            freeze.readLock().lock();
+            try {
+                DeltaDictionaryIndex index = overlay;
+                Change previous = index.change(key);
+                int entry = previous != null ? previous.entry : index.base().exactEntry(key);
+                if (entry == DictionaryIndex.NOT_FOUND || previous != null && previous.isDeleted()) {
+                    return new DictionaryUpdate(key, null, Outcome.NOT_FOUND);
+                }
+                deltaLog.append(key, null);
+                index.top().put(new Change(key, null, entry), true, sequence);
+            } finally {
+                freeze.readLock().unlock();
+            }
+        }
+        deletes.increment();
+        compactIfFull();
+        return new DictionaryUpdate(key, null, Outcome.DELETED);
+    }
+
+    private Object stripe(String key) {
+        return stripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    private void compactIfFull() {
+        ScheduledExecutorService executor = compactor;
+        if (executor != null && overlay.top().size() >= properties.getCompactThreshold()
+                && compactionQueued.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::compactQuietly);
+            } catch (RejectedExecutionException e) {
+                compactionQueued.set(false);
+            }
+        }
+    }
+
+    private void compactQuietly() {
+        compactionQueued.set(false);
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            failedCompactions.increment();
+            log.error("Merging dictionary changes failed, {} changes stay in the log", pending(), e);
+        }
+    }
+
+    /**
+     * Сливает накопившиеся изменения с базовым индексом и подменяет текущий снимок.
+     */
+    synchronized void compact() throws IOException {
+        DeltaDictionaryIndex previous = overlay;
+        if (previous.layers().length == 1 && previous.top().isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        LinkedHashMap<String, String> changes = collect(freeze(previous));
+        LinkedHashMap<String, String> nextFolded = new LinkedHashMap<>(folded);
+        nextFolded.putAll(changes);
+        DictionaryIndex merged = merge(previous.base(), changes);
+        deltaLog.writeCompacted(nextFolded);
+        folded = nextFolded;
+        DeltaDictionaryIndex next = swap(previous, merged);
+        deltaLog.deleteMerged(merged instanceof MappedDictionaryIndex);
+        compactions.increment();
+        log.info("Merged {} dictionary changes: {} entries, {} changes pending (took {} ms)",
+            changes.size(), merged.size(), next.top().size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Подменяет словарь новым {@code base} (перезагрузка файла) со всеми изменениями через API.
+     */
+    synchronized DictionaryIndex rebase(DictionaryIndex base) throws IOException {
+        DeltaDictionaryIndex previous = overlay;
+        LinkedHashMap<String, String> changes = new LinkedHashMap<>(folded);
+        changes.putAll(collect(freeze(previous)));
+        LinkedHashMap<String, String> nextFolded = unapplied(base, changes);
+        DictionaryIndex merged = nextFolded.isEmpty() ? base : merge(base, nextFolded);
+        deltaLog.writeCompacted(nextFolded);
+        folded = nextFolded;
+        DeltaDictionaryIndex next = swap(previous, merged);
+        deltaLog.deleteMerged(merged != base && merged instanceof MappedDictionaryIndex);
+        if (nextFolded.size() < changes.size()) {
+            log.info("{} dictionary changes are already in {} and are no longer kept",
+                changes.size() - nextFolded.size(), base.source());
+        }
+        return next;
+    }
+
+    /**
+     * Изменения, которых в {@code base} еще нет: перевод, совпадающий с переводом в словаре,
+     * и удаление ключа, которого в словаре нет, больше не нужны - их уже содержит файл словаря.
+     */
+    private static LinkedHashMap<String, String> unapplied(DictionaryIndex base, Map<String, String> changes) {
+        LinkedHashMap<String, String> unapplied = new LinkedHashMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            int entry = base.exactEntry(change.getKey());
+            boolean applied = change.getValue() == null
+                ? entry == DictionaryIndex.NOT_FOUND
+                : change.getValue().equals(base.value(entry));
+            if (!applied) {
+                unapplied.put(change.getKey(), change.getValue());
+            }
+        }
+        return unapplied;
+    }
+
+    /**
+     * Замораживает слои снимка вместе с журналом; новые изменения пойдут в новый верхний слой.
+     *
+     * @return замороженные слои, от нового к старому
+     */
+    private DictionaryDelta[] freeze(DeltaDictionaryIndex index) throws IOException {
+        freeze.writeLock().lock();
+        try {
+            DictionaryDelta[] layers = index.layers();
+            deltaLog.rotate();
+            index.push(new DictionaryDelta());
+            return layers;
+        } finally {
+            freeze.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Изменения слоев по ключу, последнее изменение побеждает; порядок - первого изменения ключа.
+     */
+    private static LinkedHashMap<String, String> collect(DictionaryDelta[] layers) {
+        LinkedHashMap<String, String> changes = new LinkedHashMap<>();
+        for (int i = layers.length - 1; i >= 0; i--) {
+            for (Change change : layers[i].ordered()) {
+                changes.put(change.key, change.value);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Новый снимок поверх {@code merged}; изменения, пришедшие за время слияния, переносятся в него.
+     */
+    private DeltaDictionaryIndex swap(DeltaDictionaryIndex previous, DictionaryIndex merged) {
+        DeltaDictionaryIndex next;
+        freeze.writeLock().lock();
+        try {
+            next = new DeltaDictionaryIndex(merged, versions.getAsLong(), sequence, new DictionaryDelta());
+            for (Change change : previous.top().ordered()) {
+                int entry = merged.exactEntry(change.key);
+                if (change.isDeleted() && entry == DictionaryIndex.NOT_FOUND) {
+                    continue;
+                }
+                boolean created = entry == DictionaryIndex.NOT_FOUND;
+                next.top().put(new Change(change.key, change.value, created ? next.allocate(change.key) : entry),
+                    created || change.isDeleted(), sequence);
+            }
+            overlay = next;
+            current.set(next);
+        } finally {
+            freeze.writeLock().unlock();
+        }
+        swapped.accept(previous, next);
+        return next;
+    }
+
+    /**
+     * Индекс из записей {@code base} (в порядке rank) с изменениями {@code changes} (null - удаление);
+     * добавленные ключи встают после всех записей {@code base}. Скомпилированный словарь остается
+     * вне кучи: слияние записывается новым файлом и отображается в память.
+     */
+    private DictionaryIndex merge(DictionaryIndex base, Map<String, String> changes) throws IOException {
+        long start = System.nanoTime();
+        int size = base.size();
+        long[] order = new long[size];
+        for (int e = 0; e < size; e++) {
+            order[e] = (long) base.rank(e) << 32 | e;
+        }
+        Arrays.sort(order);
+
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>((int) ((size + changes.size()) / 0.75f) + 1);
+        int[] ranks = new int[size + changes.size()];
+        BitSet shadowed = new BitSet();
+        int count = 0;
+        for (long packed : order) {
+            int e = (int) packed;
+            String key = base.key(e);
+            String value = changes.containsKey(key) ? changes.get(key) : base.value(e);
+            if (value != null) {
+                entries.put(key, value);
+                shadowed.set(count, base.shadowedElsewhere(e));
+                ranks[count++] = (int) (packed >>> 32);
+            }
+        }
+        int rank = size == 0 ? 0 : (int) (order[size - 1] >>> 32) + 1;
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (change.getValue() != null && base.exactEntry(change.getKey()) == DictionaryIndex.NOT_FOUND) {
+                entries.put(change.getKey(), change.getValue());
+                ranks[count++] = rank++;
+            }
+        }
+        // Версия снимка - у DeltaDictionaryIndex поверх этого индекса
+        if (base instanceof MappedDictionaryIndex mapped) {
+            Path file = deltaLog.nextMerged();
+            CompiledDictionaryWriter.write(entries, Arrays.copyOf(ranks, count), mapped.sourceChecksum(),
+                mapped.normalizationFingerprint(), mapped.fromScript(), mapped.toScript(), file);
+            return MappedDictionaryIndex.open(file, base.source(), base.version());
+        }
+        return new InMemoryDictionaryIndex(entries, Arrays.copyOf(ranks, count), shadowed, base.source(),
+            base.version(), start);
+    }
+
+    int pending() {
+        DeltaDictionaryIndex index = overlay;
+        if (index == null) {
+            return 0;
+        }
+        int pending = 0;
+        for (DictionaryDelta layer : index.layers()) {
+            pending += layer.size();
+        }
+        return pending;
+    }
+
+    int folded() {
+        return folded.size();
+    }
+
+    void start() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "dictionary-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getCompactInterval().toMillis();
+        if (interval > 0) {
+            executor.scheduleWithFixedDelay(this::compactQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        compactor = executor;
+        log.info("Accepting dictionary changes, log in {}", properties.getDirectory().toAbsolutePath());
+    }
+
+    boolean isRunning() {
+        return compactor != null;
+    }
+
+    /**
+     * Останавливает слияние и закрывает журнал: изменения после этого не принимаются.
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService executor = compactor;
+        compactor = null;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        freeze.writeLock().lock();
+        try {
+            deltaLog.close();
+        } finally {
+            freeze.writeLock().unlock();
+        }
+    }
+}
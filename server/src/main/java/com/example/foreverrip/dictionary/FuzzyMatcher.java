@@ -0,0 +1,309 @@
+package com.example.foreverrip.dictionary;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Поиск ключа по слову с опечаткой: ближайший ключ на расстоянии Дамерау-Левенштейна
+ * (вставка, удаление, замена символа, перестановка двух соседних) не больше заданного.
+ * <p>
+ * Обход {@link FuzzyTrie} строит по строке таблицы расстояний на каждый символ префикса
+ * (то же, что автомат Левенштейна) и отбрасывает поддерево, как только минимум строки превысил
+ * допустимое расстояние. Строка ребенка зависит только от его символа, поэтому если отбрасывается
+ * строка для символа не из слова, дальше проверяются только дети с символами слова.
+ * <p>
+ * При двух и более правках верхние уровни дерева пришлось бы обходить почти целиком, поэтому
+ * слово делится пополам: если ключ не дальше d правок, то одна из половин слова совпадает
+ * с соответствующей частью ключа не хуже чем с ceil(d/2) правками. Первый обход идет по дереву
+ * ключей и требует этого от первой половины, второй - по дереву перевернутых ключей и требует
+ * от второй. В обоих случаях уже на первых символах остаются только близкие к слову префиксы.
+ * <p>
+ * Из ключей на одном расстоянии побеждает раньше стоящий в исходном словаре.
+ */
+final class FuzzyMatcher {
+
+    static final int NOT_FOUND = DictionaryIndex.NOT_FOUND;
+
+    /**
+     * Символ за концом ключа; меньше любого символа, как короткий ключ раньше своих продолжений.
+     */
+    static final int END = -1;
+
+    /**
+     * Символ, которого нет ни в одном слове: строка таблицы для любого символа не из слова.
+     */
+    private static final int NO_SYMBOL = Integer.MIN_VALUE;
+
+    /**
+     * Ключи словаря по номеру записи. Символ - единица, в которой ключи отсортированы
+     * (char для строк, code point для UTF-8), смещение - в единицах хранения ключа.
+     * Перевернутые ключи читаются с конца, смещение тогда отсчитывается от конца ключа.
+     */
+    interface Keys {
+
+        /**
+         * Символ ключа записи {@code entry} по смещению {@code offset}, либо {@link #END}.
+         */
+        int symbolAt(int entry, int offset);
+
+        /**
+         * Сколько единиц смещения символ занимает в ключе.
+         */
+        int width(int symbol);
+
+        /**
+         * Искомое слово в тех же символах, что и ключи, в прямом порядке.
+         */
+        int[] symbols(String word);
+
+        int rank(int entry);
+    }
+
+    private final FuzzyTrie trie;
+    private final Keys keys;
+    private final FuzzyTrie reversedTrie;
+    private final Keys reversedKeys;
+
+    /**
+     * @param reversedTrie дерево перевернутых ключей; null - только прямой обход
+     */
+    FuzzyMatcher(FuzzyTrie trie, Keys keys, FuzzyTrie reversedTrie, Keys reversedKeys) {
+        this.trie = trie;
+        this.keys = keys;
+        this.reversedTrie = reversedTrie;
+        this.reversedKeys = reversedKeys;
+    }
+
+    /**
+     * Номер записи с ближайшим ключом не дальше {@code maxDistance} правок, либо {@link #NOT_FOUND}.
+     */
+    int find(String word, int maxDistance) {
+        return find(word, maxDistance, null);
+    }
+
+    /**
+     * То же среди записей, для которых {@code accept} истинно (null - среди всех): записи, удаленные
+     * поверх индекса, пропускаются, и обход находит следующий по близости ключ.
+     */
+    int find(String word, int maxDistance, IntPredicate accept) {
+        if (word == null || word.isEmpty() || maxDistance < 0) {
+            return NOT_FOUND;
+        }
+        int[] symbols = keys.symbols(word);
+        Best best = new Best(maxDistance, keys, accept);
+        if (reversedTrie == null || maxDistance < 2) {
+            new Walk(trie, keys, symbols, symbols.length, maxDistance, best).run();
+        } else {
+            int half = (maxDistance + 1) / 2;
+            int split = symbols.length / 2;
+            new Walk(trie, keys, symbols, split, half, best).run();
+            new Walk(reversedTrie, reversedKeys, reverse(symbols), symbols.length - split, half, best).run();
+        }
+        return best.entry;
+    }
+
+    /**
+     * То же расстояние, что ищет {@link #find}, между двумя строками напрямую (по char);
+     * {@code maxDistance + 1}, если оно больше {@code maxDistance}. Для проверки немногих ключей без дерева.
+     */
+    static int distance(String word, String key, int maxDistance) {
+        if (Math.abs(word.length() - key.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[][] rows = new int[3][word.length() + 1];
+        for (int j = 0; j <= word.length(); j++) {
+            rows[0][j] = j;
+        }
+        for (int i = 1; i <= key.length(); i++) {
+            int[] row = rows[i % 3];
+            int[] previous = rows[(i - 1) % 3];
+            char symbol = key.charAt(i - 1);
+            row[0] = i;
+            int min = i;
+            for (int j = 1; j <= word.length(); j++) {
+                int distance = Math.min(previous[j] + 1, row[j - 1] + 1);
+                distance = Math.min(distance, previous[j - 1] + (word.charAt(j - 1) == symbol ? 0 : 1));
+                if (i > 1 && j > 1 && symbol == word.charAt(j - 2) && key.charAt(i - 2) == word.charAt(j - 1)) {
+                    distance = Math.min(distance, rows[(i - 2) % 3][j - 2] + 1);
+                }
+                row[j] = distance;
+                min = Math.min(min, distance);
+            }
+            if (min > maxDistance) {
+                return maxDistance + 1;
+            }
+        }
+        return Math.min(rows[key.length() % 3][word.length()], maxDistance + 1);
+    }
+
+    private static int[] reverse(int[] symbols) {
+        int[] reversed = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            reversed[i] = symbols[symbols.length - 1 - i];
+        }
+        return reversed;
+    }
+
+    /**
+     * Лучший найденный ключ, общий для обоих обходов.
+     */
+    private static final class Best {
+
+        private final Keys keys;
+        private final IntPredicate accept;
+        /** Худшее расстояние, которое еще интересно: maxDistance, затем лучшее найденное. */
+        private int bound;
+        private int entry = NOT_FOUND;
+        private int rank;
+
+        Best(int maxDistance, Keys keys, IntPredicate accept) {
+            this.bound = maxDistance;
+            this.keys = keys;
+            this.accept = accept;
+        }
+
+        void accept(int entry, int distance) {
+            if (distance > bound || accept != null && !accept.test(entry)) {
+                return;
+            }
+            int rank = keys.rank(entry);
+            if (this.entry == NOT_FOUND || distance < bound || rank < this.rank) {
+                this.bound = distance;
+                this.entry = entry;
+                this.rank = rank;
+            }
+        }
+    }
+
+    /**
+     * Один обход дерева ключей, в котором первые {@code split} символов слова должны совпасть
+     * с префиксом ключа не хуже чем с {@code splitDistance} правками.
+     */
+    private static final class Walk {
+
+        private final FuzzyTrie trie;
+        private final Keys keys;
+        private final int[] word;
+        /** Различные символы слова по возрастанию. */
+        private final int[] wordSymbols;
+        private final int split;
+        private final int splitDistance;
+        private final Best best;
+        /** rows[depth][j] - расстояние между префиксом ключа длины depth и первыми j символами слова. */
+        private final int[][] rows;
+        /** path[depth] - символ префикса на глубине depth (для перестановок). */
+        private final int[] path;
+        /** Минимум последней заполненной строки: по всем столбцам и по столбцам до split. */
+        private int rowMin;
+        private int splitMin;
+
+        Walk(FuzzyTrie trie, Keys keys, int[] word, int split, int splitDistance, Best best) {
+            this.trie = trie;
+            this.keys = keys;
+            this.word = word;
+            this.wordSymbols = Arrays.stream(word).distinct().sorted().toArray();
+            this.split = split;
+            this.splitDistance = splitDistance;
+            this.best = best;
+            // Ключ длиннее слова больше чем на bound символов не подходит
+            int maxDepth = word.length + best.bound;
+            this.rows = new int[maxDepth + 1][word.length + 1];
+            this.path = new int[maxDepth + 1];
+            for (int j = 0; j <= word.length; j++) {
+                rows[0][j] = j;
+            }
+        }
+
+        void run() {
+            visit(0, 0, 0, split <= splitDistance);
+        }
+
+        /**
+         * Узел дерева с префиксом из {@code depth} символов, который занимает {@code offset} единиц;
+         * {@code reached} - условие на первые split символов слова уже выполнено на этом пути.
+         */
+        private void visit(int node, int depth, int offset, boolean reached) {
+            int entry = trie.entry(node);
+            if (FuzzyTrie.isTail(entry)) {
+                visitTail(FuzzyTrie.tailEntry(entry), depth, offset, reached);
+                return;
+            }
+            if (entry != FuzzyTrie.NO_ENTRY) {
+                best.accept(entry, rows[depth][word.length]);
+            }
+            int child = trie.firstChild(node);
+            int end = trie.firstChild(node + 1);
+            if (depth + 1 == rows.length || child == end) {
+                return;
+            }
+            fill(depth + 1, NO_SYMBOL);
+            boolean any = viable(reached);
+            for (; child < end; child++) {
+                int symbol = trie.symbol(child);
+                if (any || Arrays.binarySearch(wordSymbols, symbol) >= 0) {
+                    fill(depth + 1, symbol);
+                    boolean childReached = reached || rows[depth + 1][split] <= splitDistance;
+                    if (viable(childReached)) {
+                        visit(child, depth + 1, offset + keys.width(symbol), childReached);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Ниже узла единственный ключ: таблица продолжается по его символам без ветвления.
+         */
+        private void visitTail(int entry, int depth, int offset, boolean reached) {
+            while (true) {
+                int symbol = keys.symbolAt(entry, offset);
+                if (symbol == END) {
+                    best.accept(entry, rows[depth][word.length]);
+                    return;
+                }
+                if (depth + 1 == rows.length) {
+                    return;
+                }
+                fill(++depth, symbol);
+                reached = reached || rows[depth][split] <= splitDistance;
+                if (!viable(reached)) {
+                    return;
+                }
+                offset += keys.width(symbol);
+            }
+        }
+
+        /**
+         * Может ли поддерево с последней заполненной строкой дать ключ: расстояние в нем не меньше
+         * минимума строки (равные лучшему еще нужны ради rank), и половина слова еще достижима.
+         */
+        private boolean viable(boolean reached) {
+            return rowMin <= best.bound && (reached || splitMin <= splitDistance);
+        }
+
+        /**
+         * Строка таблицы для префикса, продолженного символом {@code symbol}.
+         */
+        private void fill(int depth, int symbol) {
+            int[] previous = rows[depth - 1];
+            int[] row = rows[depth];
+            path[depth] = symbol;
+            row[0] = depth;
+            int min = depth;
+            int minToSplit = depth;
+            for (int j = 1; j <= word.length; j++) {
+                int distance = Math.min(previous[j] + 1, row[j - 1] + 1);
+                distance = Math.min(distance, previous[j - 1] + (word[j - 1] == symbol ? 0 : 1));
+                if (depth > 1 && j > 1 && symbol == word[j - 2] && path[depth - 1] == word[j - 1]) {
+                    distance = Math.min(distance, rows[depth - 2][j - 2] + 1);
+                }
+                row[j] = distance;
+                min = Math.min(min, distance);
+                if (j == split) {
+                    minToSplit = min;
+                }
+            }
+            rowMin = min;
+            splitMin = minToSplit;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.foreverrip.dictionary;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Префиксное дерево ключей для {@link FuzzyMatcher}, уложенное в плоский массив int.
+ * Узлы идут в порядке обхода в ширину, поэтому дети узла - непрерывный отрезок записей,
+ * и перебор детей читает память подряд. Запись узла - три int:
+ * <ul>
+ *     <li>номер первого ребенка; дети узла i - записи [firstChild(i), firstChild(i + 1));</li>
+ *     <li>символ на ребре в узел;</li>
+ *     <li>запись словаря: номер ключа, который кончается в узле, {@link #NO_ENTRY},
+ *     либо {@code -(entry + 2)} - "хвост": ниже узла только один ключ, и дальше его символы
+ *     читаются из самого ключа, а не из цепочки узлов.</li>
+ * </ul>
+ * Хвосты делают дерево не больше двух узлов на ключ. После последнего узла - запись-ограничитель
+ * с firstChild, равным числу узлов. Один и тот же массив лежит в куче ({@link InMemoryDictionaryIndex})
+ * или в секции скомпилированного файла ({@link MappedDictionaryIndex}).
+ */
+final class FuzzyTrie {
+
+    static final int RECORD_INTS = 3;
+    static final int NO_ENTRY = -1;
+
+    private static final int R_FIRST_CHILD = 0;
+    private static final int R_SYMBOL = 1;
+    private static final int R_ENTRY = 2;
+
+    private final IntBuffer records;
+
+    FuzzyTrie(IntBuffer records) {
+        this.records = records;
+    }
+
+    int firstChild(int node) {
+        return records.get(node * RECORD_INTS + R_FIRST_CHILD);
+    }
+
+    int symbol(int node) {
+        return records.get(node * RECORD_INTS + R_SYMBOL);
+    }
+
+    int entry(int node) {
+        return records.get(node * RECORD_INTS + R_ENTRY);
+    }
+
+    static boolean isTail(int entry) {
+        return entry < NO_ENTRY;
+    }
+
+    static int tailEntry(int entry) {
+        return -(entry + 2);
+    }
+
+    /**
+     * Строит записи дерева по ключам, отсортированным в порядке символов {@code keys}.
+     * Ключи должны быть уникальны и непусты; узел с общим префиксом - отрезок этого порядка.
+     *
+     * @param sorted номера записей словаря в порядке сортировки ключей
+     */
+    static int[] build(int[] sorted, FuzzyMatcher.Keys keys) {
+        Builder builder = new Builder(sorted, keys);
+        builder.add(0, sorted.length, 0, 0);
+        for (int node = 0; node < builder.count; node++) {
+            builder.expand(node);
+        }
+        return builder.finish();
+    }
+
+    private static final class Builder {
+
+        private final int[] sorted;
+        private final FuzzyMatcher.Keys keys;
+        private int[] records;
+        /** Отрезок порядка и смещение символа для каждого узла, пока он не раскрыт. */
+        private int[] ranges;
+        private int count;
+
+        Builder(int[] sorted, FuzzyMatcher.Keys keys) {
+            this.sorted = sorted;
+            this.keys = keys;
+            int capacity = Math.max(16, sorted.length * 2);
+            this.records = new int[capacity * RECORD_INTS];
+            this.ranges = new int[capacity * 3];
+        }
+
+        void add(int low, int high, int offset, int symbol) {
+            if ((count + 2) * RECORD_INTS > records.length) {
+                records = Arrays.copyOf(records, records.length * 2);
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            int entry = low < high ? sorted[low] : NO_ENTRY;
+            boolean ends = entry != NO_ENTRY && keys.symbolAt(entry, offset) == FuzzyMatcher.END;
+            int at = count * RECORD_INTS;
+            records[at + R_SYMBOL] = symbol;
+            if (high - low == 1 && !ends) {
+                records[at + R_ENTRY] = -(entry + 2);
+                high = low;
+            } else {
+                records[at + R_ENTRY] = ends ? entry : NO_ENTRY;
+                if (ends) {
+                    low++;
+                }
+            }
+            ranges[count * 3] = low;
+            ranges[count * 3 + 1] = high;
+            ranges[count * 3 + 2] = offset;
+            count++;
+        }
+
+        /**
+         * Добавляет детей узла в конец очереди; при обходе в ширину они и есть его отрезок записей.
+         */
+        void expand(int node) {
+            records[node * RECORD_INTS + R_FIRST_CHILD] = count;
+            int position = ranges[node * 3];
+            int high = ranges[node * 3 + 1];
+            int offset = ranges[node * 3 + 2];
+            while (position < high) {
+                int symbol = keys.symbolAt(sorted[position], offset);
+                int end = position + 1;
+                while (end < high && keys.symbolAt(sorted[end], offset) == symbol) {
+                    end++;
+                }
+                add(position, end, offset + keys.width(symbol), symbol);
+                position = end;
+            }
+        }
+
+        int[] finish() {
+            records[count * RECORD_INTS + R_FIRST_CHILD] = count;
+            return Arrays.copyOf(records, (count + 1) * RECORD_INTS);
+        }
+    }
+}
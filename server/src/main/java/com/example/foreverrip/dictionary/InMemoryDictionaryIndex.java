@@ -0,0 +1,237 @@
+package com.example.foreverrip.dictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Словарь, целиком разобранный в память: строки ключей и переводов плюс {@link DictionaryMatcher}
+ * и {@link FuzzyTrie} по ключам, отсортированным как строки (прямо и перевернутыми).
+ * Переводы сразу кодируются в UTF-8 для ответов, которые пишутся байтами.
+ * Строится из текстового файла при старте или перезагрузке.
+ */
+public final class InMemoryDictionaryIndex implements DictionaryIndex {
+
+    private final String[] keys;
+    private final String[] values;
+    private final byte[][] encodedValues;
+    /** Номера записей в целом словаре, если загружена только часть (шард); иначе null. */
+    private final int[] ranks;
+    /** Записи шарда, ключ которых встречается отдельным словом в более раннем чужом ключе; иначе null. */
+    private final BitSet shadowed;
+    private final DictionaryMatcher matcher;
+    private final FuzzyMatcher fuzzyMatcher;
+    private final String source;
+    private final long version;
+    private final Instant builtAt;
+    private final Duration buildTime;
+
+    InMemoryDictionaryIndex(LinkedHashMap<String, String> entries, int[] ranks, String source, long version,
+                            long startNanos) {
+        this(entries, ranks, null, source, version, startNanos);
+    }
+
+    /**
+     * @param ranks      номера записей в целом словаре, если {@code entries} - его часть; иначе null
+     * @param shadowed   записи, для которых {@link #shadowedElsewhere} истинно, либо null
+     * @param startNanos момент начала разбора источника; время построения считается до конца конструктора
+     */
+    InMemoryDictionaryIndex(LinkedHashMap<String, String> entries, int[] ranks, BitSet shadowed, String source,
+                            long version, long startNanos) {
+        this.keys = new String[entries.size()];
+        this.values = new String[entries.size()];
+        this.encodedValues = new byte[entries.size()][];
+        int id = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            keys[id] = entry.getKey();
+            values[id] = entry.getValue();
+            encodedValues[id] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            id++;
+        }
+        this.ranks = ranks;
+        this.shadowed = shadowed;
+        this.matcher = new DictionaryMatcher(keys);
+        StringKeys forward = new StringKeys(false);
+        StringKeys reversed = new StringKeys(true);
+        this.fuzzyMatcher = new FuzzyMatcher(
+            new FuzzyTrie(IntBuffer.wrap(FuzzyTrie.build(sortedOrder(false), forward))), forward,
+            new FuzzyTrie(IntBuffer.wrap(FuzzyTrie.build(sortedOrder(true), reversed))), reversed);
+        this.source = source;
+        this.version = version;
+        this.builtAt = Instant.now();
+        this.buildTime = Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public int exactEntry(String normalizedWord) {
+        return matcher.exact(normalizedWord);
+    }
+
+    @Override
+    public int tokenEntry(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.isEmpty()) {
+            return NOT_FOUND;
+        }
+        return matcher.token(normalizedWord);
+    }
+
+    @Override
+    public int substringEntry(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.isEmpty()) {
+            return NOT_FOUND;
+        }
+        return matcher.substring(normalizedWord);
+    }
+
+    @Override
+    public int fuzzyEntry(String normalizedWord, int maxDistance) {
+        return fuzzyMatcher.find(normalizedWord, maxDistance);
+    }
+
+    @Override
+    public int fuzzyEntry(String normalizedWord, int maxDistance, IntPredicate accept) {
+        return fuzzyMatcher.find(normalizedWord, maxDistance, accept);
+    }
+
+    /**
+     * Список триграммы из {@link DictionaryMatcher}: записи идут в порядке файла, то есть по возрастанию rank.
+     */
+    @Override
+    public IntBuffer candidateEntries(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.length() < 3) {
+            return null;
+        }
+        return IntBuffer.wrap(matcher.candidates(normalizedWord)).asReadOnlyBuffer();
+    }
+
+    @Override
+    public int lookupEntry(String normalizedWord) {
+        return matcher.find(normalizedWord);
+    }
+
+    @Override
+    public boolean shadowedElsewhere(int entry) {
+        return shadowed != null && shadowed.get(entry);
+    }
+
+    @Override
+    public int rank(int entry) {
+        return ranks != null ? ranks[entry] : entry;
+    }
+
+    @Override
+    public String key(int entry) {
+        return keys[entry];
+    }
+
+    @Override
+    public String value(int entry) {
+        return entry == NOT_FOUND ? null : values[entry];
+    }
+
+    /**
+     * Обертка над массивом без копирования: {@link ByteBuffer#hasArray()} позволяет писать
+     * перевод в ответ напрямую из массива.
+     */
+    @Override
+    public ByteBuffer encodedValue(int entry) {
+        return ByteBuffer.wrap(encodedValues[entry]);
+    }
+
+    /**
+     * Номера записей в порядке сортировки ключей (или перевернутых ключей). Ключи уникальны,
+     * поэтому номер по отсортированной копии находится точным поиском, без сортировки упакованных Integer.
+     */
+    private int[] sortedOrder(boolean reversed) {
+        String[] sorted = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = reversed ? reverse(keys[i]) : keys[i];
+        }
+        Arrays.parallelSort(sorted);
+        int[] order = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            order[i] = matcher.exact(reversed ? reverse(sorted[i]) : sorted[i]);
+        }
+        return order;
+    }
+
+    /**
+     * Переворот по char, а не по code point: так же {@link StringKeys} читает ключ с конца.
+     */
+    private static String reverse(String key) {
+        char[] chars = new char[key.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = key.charAt(chars.length - 1 - i);
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public Instant builtAt() {
+        return builtAt;
+    }
+
+    @Override
+    public Duration buildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Ключи как строки, в порядке {@link String#compareTo}: символ - char, смещение - индекс в строке
+     * (для перевернутых - от конца строки).
+     */
+    private final class StringKeys implements FuzzyMatcher.Keys {
+
+        private final boolean reversed;
+
+        StringKeys(boolean reversed) {
+            this.reversed = reversed;
+        }
+
+        @Override
+        public int symbolAt(int entry, int offset) {
+            String key = keys[entry];
+            if (offset >= key.length()) {
+                return FuzzyMatcher.END;
+            }
+            return key.charAt(reversed ? key.length() - 1 - offset : offset);
+        }
+
+        @Override
+        public int width(int symbol) {
+            return 1;
+        }
+
+        @Override
+        public int[] symbols(String word) {
+            return word.chars().toArray();
+        }
+
+        @Override
+        public int rank(int entry) {
+            return InMemoryDictionaryIndex.this.rank(entry);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.foreverrip.dictionary;
+
+import java.util.Locale;
+
+/**
+ * Пара языков по кодам ISO 639 в нижнем регистре, например {@code de-en}.
+ */
+public record LanguagePair(String from, String to) {
+
+    public LanguagePair {
+        from = code(from);
+        to = code(to);
+    }
+
+    private static String code(String language) {
+        if (language == null || language.length() < 2 || language.length() > 8) {
+            throw new IllegalArgumentException("Invalid language code: " + language);
+        }
+        String code = language.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < 'a' || c > 'z') {
+                throw new IllegalArgumentException("Invalid language code: " + language);
+            }
+        }
+        return code;
+    }
+
+    @Override
+    public String toString() {
+        return from + "-" + to;
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.LanguagesProperties;
+import com.example.foreverrip.service.ScriptNormalizers;
+import com.example.foreverrip.service.TextNormalizer;
+import com.example.foreverrip.text.Script;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Словари пар языков, кроме основной (ее держит {@link DictionaryHolder}). Пар может быть
+ * настроено сколько угодно: словарь пары загружается при первом запросе к ней, в отдельном пуле
+ * ({@code dictionary-pair-loader-N}), а одновременные запросы ждут одну загрузку.
+ * <p>
+ * В памяти остаются только недавно использованные пары: после каждой загрузки, пока
+ * загруженных пар больше {@code max-resident-pairs} или записей в них больше
+ * {@code max-resident-entries}, выгружается дольше всех не использованная (LRU).
+ * Время использования пишется без блокировок и не чаще раза в {@link #TOUCH_NANOS},
+ * чтобы горячая пара не гоняла строку кэша процессора между ядрами. Выгруженный индекс
+ * дорабатывают уже начатые запросы, следующий запрос загрузит словарь заново.
+ * <p>
+ * Ключи и запросы нормализуются по правилам письменности исходного языка, переводы -
+ * целевого ({@link ScriptNormalizers}).
+ */
+@Component
+public final class LanguagePairDictionaries implements InfoContributor, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LanguagePairDictionaries.class);
+
+    private static final long TOUCH_NANOS = 1_000_000;
+
+    private final LanguagePair defaultPair;
+    private final Map<LanguagePair, Path> sources = new HashMap<>();
+    private final Map<String, Script> scripts;
+    private final ScriptNormalizers normalizers;
+    private final ApplicationEventPublisher events;
+    private final int maxResidentPairs;
+    private final long maxResidentEntries;
+
+    private final ConcurrentHashMap<LanguagePair, Resident> resident = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final ExecutorService loader;
+
+    private final Counter loads;
+    private final Counter failedLoads;
+    private final Counter evictions;
+
+    public LanguagePairDictionaries(LanguagesProperties properties, ScriptNormalizers normalizers,
+                                    ApplicationEventPublisher events, MeterRegistry registry) {
+        this.defaultPair = new LanguagePair(properties.getDefaultFrom(), properties.getDefaultTo());
+        this.scripts = properties.getScripts();
+        this.normalizers = normalizers;
+        this.events = events;
+        this.maxResidentPairs = Math.max(1, properties.getMaxResidentPairs());
+        this.maxResidentEntries = properties.getMaxResidentEntries();
+        for (LanguagesProperties.Pair configured : properties.getPairs()) {
+            LanguagePair pair = new LanguagePair(configured.getFrom(), configured.getTo());
+            if (configured.getLocation() == null) {
+                throw new IllegalArgumentException("translation.languages.pairs: no location for " + pair);
+            }
+            if (pair.equals(defaultPair)) {
+                throw new IllegalArgumentException("translation.languages.pairs: " + pair
+                    + " is the default pair, its dictionary is translation.dictionary");
+            }
+            if (sources.put(pair, configured.getLocation()) != null) {
+                throw new IllegalArgumentException("translation.languages.pairs: " + pair + " is configured twice");
+            }
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(Math.max(1, properties.getLoaderThreads()), task -> {
+            Thread thread = new Thread(task, "dictionary-pair-loader-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.loads = Counter.builder("translation.languages.loads")
+            .description("Language pair dictionaries loaded on demand")
+            .register(registry);
+        this.failedLoads = Counter.builder("translation.languages.load.failures")
+            .description("Language pair dictionaries that failed to load")
+            .register(registry);
+        this.evictions = Counter.builder("translation.languages.evictions")
+            .description("Language pair dictionaries unloaded to stay within the resident limits")
+            .register(registry);
+        Gauge.builder("translation.languages.resident", this, dictionaries -> dictionaries.residentPairs())
+            .description("Language pair dictionaries in memory, not counting the default pair")
+            .register(registry);
+        Gauge.builder("translation.languages.resident.entries", this, dictionaries -> dictionaries.residentEntries())
+            .description("Entries in the language pair dictionaries in memory")
+            .register(registry);
+        if (!sources.isEmpty()) {
+            log.info("{} language pairs configured besides {}, up to {} resident", sources.size(), defaultPair,
+                maxResidentPairs);
+        }
+    }
+
+    /**
+     * Пара основного словаря {@link DictionaryHolder}.
+     */
+    public LanguagePair defaultPair() {
+        return defaultPair;
+    }
+
+    public boolean isConfigured(LanguagePair pair) {
+        return sources.containsKey(pair);
+    }
+
+    /**
+     * Нормализатор запросов к паре - по письменности исходного языка.
+     */
+    public TextNormalizer normalizer(LanguagePair pair) {
+        return normalizers.forScript(script(pair.from()));
+    }
+
+    private Script script(String language) {
+        Script script = scripts.get(language);
+        return script != null ? script : Script.forLanguage(language);
+    }
+
+    /**
+     * Индекс пары: готовый, если пара в памяти, иначе загружаемый. Ошибка загрузки -
+     * {@link UncheckedIOException}; следующий запрос попробует загрузить словарь снова.
+     *
+     * @throws IllegalArgumentException если пара не настроена
+     */
+    public CompletableFuture<DictionaryIndex> index(LanguagePair pair) {
+        Path source = sources.get(pair);
+        if (source == null) {
+            throw new IllegalArgumentException("Language pair " + pair + " is not configured");
+        }
+        Resident existing = resident.get(pair);
+        if (existing == null) {
+            Resident created = new Resident();
+            existing = resident.putIfAbsent(pair, created);
+            if (existing == null) {
+                loader.execute(() -> load(pair, source, created));
+                return created.index;
+            }
+        }
+        existing.touch();
+        return existing.index;
+    }
+
+    private void load(LanguagePair pair, Path source, Resident target) {
+        DictionaryIndex index;
+        try {
+            index = build(pair, source, versions.incrementAndGet());
+        } catch (IOException | RuntimeException e) {
+            failedLoads.increment();
+            log.error("Language pair {} dictionary failed to load from {}", pair, source, e);
+            // Сначала из таблицы, чтобы следующий запрос начал новую загрузку, а не получил эту ошибку
+            resident.remove(pair, target);
+            target.index.completeExceptionally(e instanceof IOException io
+                ? new UncheckedIOException("Dictionary for " + pair + " could not be loaded", io)
+                : e);
+            return;
+        }
+        loads.increment();
+        target.index.complete(index);
+        trim(pair);
+    }
+
+    private DictionaryIndex build(LanguagePair pair, Path source, long version) throws IOException {
+        long start = System.nanoTime();
+        DictionaryIndex index;
+        if (MappedDictionaryIndex.isCompiled(source)) {
+            MappedDictionaryIndex mapped = MappedDictionaryIndex.open(source, version);
+            // Файл, собранный с другими письменностями, отвергается: иначе часть слов молча не находится
+            if (!mapped.checkScripts(script(pair.from()), script(pair.to()))) {
+                log.warn("Language pair {} dictionary {} does not record its scripts, recompile it with {} {}",
+                    pair, source, script(pair.from()), script(pair.to()));
+            }
+            index = mapped;
+        } else {
+            DictionaryLoader loader = new DictionaryLoader(normalizers.forScript(script(pair.from())),
+                normalizers.forScript(script(pair.to())));
+            try (InputStream in = Files.newInputStream(source)) {
+                index = loader.load(in, source.toString(), version);
+            }
+        }
+        log.info("Language pair {} loaded from {}: {} entries (took {} ms)",
+            pair, source, index.size(), (System.nanoTime() - start) / 1_000_000);
+        return index;
+    }
+
+    /**
+     * Выгружает дольше всех не использованные пары, пока загруженные не уложатся в пределы;
+     * только что загруженную {@code loaded} не трогает, даже если она одна их превышает.
+     */
+    private synchronized void trim(LanguagePair loaded) {
+        while (true) {
+            int pairs = 0;
+            long entries = 0;
+            LanguagePair victim = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<LanguagePair, Resident> candidate : resident.entrySet()) {
+                DictionaryIndex index = candidate.getValue().loaded();
+                if (index == null) {
+                    continue;
+                }
+                pairs++;
+                entries += index.size();
+                long lastUsed = candidate.getValue().lastUsed;
+                if (!candidate.getKey().equals(loaded) && (victim == null || lastUsed - oldest < 0)) {
+                    victim = candidate.getKey();
+                    oldest = lastUsed;
+                }
+            }
+            if (pairs <= maxResidentPairs && entries <= maxResidentEntries) {
+                return;
+            }
+            if (victim == null) {
+                log.warn("Language pair {} alone exceeds translation.languages.max-resident-entries ({} > {})",
+                    loaded, entries, maxResidentEntries);
+                return;
+            }
+            DictionaryIndex evicted = resident.remove(victim).loaded();
+            evictions.increment();
+            log.info("Language pair {} unloaded: least recently used of {} resident pairs ({} entries)",
+                victim, pairs, entries);
+            events.publishEvent(new LanguagePairEvictedEvent(victim, evicted));
+        }
+    }
+
+    int residentPairs() {
+        int pairs = 0;
+        for (Resident candidate : resident.values()) {
+            if (candidate.loaded() != null) {
+                pairs++;
+            }
+        }
+        return pairs;
+    }
+
+    long residentEntries() {
+        long entries = 0;
+        for (Resident candidate : resident.values()) {
+            DictionaryIndex index = candidate.loaded();
+            if (index != null) {
+                entries += index.size();
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("default", defaultPair.toString());
+        details.put("configured", sources.size());
+        Map<String, Integer> loaded = new TreeMap<>();
+        resident.forEach((pair, candidate) -> {
+            DictionaryIndex index = candidate.loaded();
+            if (index != null) {
+                loaded.put(pair.toString(), index.size());
+            }
+        });
+        details.put("resident", loaded);
+        builder.withDetail("languages", details);
+    }
+
+    @Override
+    public void destroy() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * Словарь пары в памяти (или в загрузке) и время последнего использования.
+     */
+    private static final class Resident {
+
+        final CompletableFuture<DictionaryIndex> index = new CompletableFuture<>();
+        volatile long lastUsed = System.nanoTime();
+
+        void touch() {
+            long now = System.nanoTime();
+            if (now - lastUsed > TOUCH_NANOS) {
+                lastUsed = now;
+            }
+        }
+
+        /**
+         * Загруженный индекс, либо null, пока загрузка идет.
+         */
+        DictionaryIndex loaded() {
+            return index.isDone() && !index.isCompletedExceptionally() ? index.join() : null;
+        }
+    }
+}
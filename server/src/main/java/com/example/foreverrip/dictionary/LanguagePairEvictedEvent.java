@@ -0,0 +1,7 @@
+package com.example.foreverrip.dictionary;
+
+/**
+ * Публикуется после того, как словарь пары языков выгружен из памяти.
+ */
+public record LanguagePairEvictedEvent(LanguagePair pair, DictionaryIndex index) {
+}
@@ -0,0 +1,553 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.text.Script;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.IntPredicate;
+
+import static com.example.foreverrip.dictionary.CompiledDictionaryFormat.*;
+
+/**
+ * Скомпилированный словарь ({@link CompiledDictionaryWriter}), отображенный в память.
+ * Открытие не разбирает записи, а поиск читает байты прямо из отображения,
+ * поэтому время старта и занятая куча не зависят от размера словаря:
+ * <ul>
+ *     <li>точный ключ - бинарный поиск по записям, отсортированным по байтам ключа;</li>
+ *     <li>слово внутри ключа - бинарный поиск по таблице слов многословных ключей
+ *     и точный ключ, из них - меньший rank;</li>
+ *     <li>подстрока - списки записей по n-граммам, как в {@link DictionaryMatcher};</li>
+ *     <li>ключ с опечаткой - {@link FuzzyMatcher} по префиксным деревьям из файла, символ - code point,
+ *     хвосты ключей декодируются из UTF-8 на месте.</li>
+ * </ul>
+ * Сравнения идут по UTF-8 без декодирования: вхождение подстроки в UTF-8 равносильно
+ * вхождению в исходную строку, а пробельные символы - однобайтовые.
+ */
+public final class MappedDictionaryIndex implements DictionaryIndex {
+
+    private final ByteBuffer data;
+    private final int entryCount;
+    private final int tokenCount;
+    private final int gramCount;
+    private final long sourceChecksum;
+    private final int entriesAt;
+    private final int tokensAt;
+    private final int gramsAt;
+    private final int postingsAt;
+    private final int stringsAt;
+    private final FuzzyMatcher fuzzyMatcher;
+
+    private final String source;
+    private final long version;
+    private final Instant builtAt;
+    private final Duration buildTime;
+
+    private MappedDictionaryIndex(ByteBuffer data, String source, long version, long startNanos) {
+        if (data.capacity() < HEADER_SIZE || data.getInt(H_MAGIC) != MAGIC) {
+            throw new IllegalArgumentException(source + " is not a compiled dictionary");
+        }
+        int formatVersion = data.getInt(H_FORMAT_VERSION);
+        if (formatVersion < FORMAT_VERSION_WITHOUT_FUZZY || formatVersion > FORMAT_VERSION) {
+            throw new IllegalArgumentException(source + " has unsupported format version "
+                + data.getInt(H_FORMAT_VERSION));
+        }
+        this.data = data;
+        this.entryCount = data.getInt(H_ENTRY_COUNT);
+        this.tokenCount = data.getInt(H_TOKEN_COUNT);
+        this.gramCount = data.getInt(H_GRAM_COUNT);
+        this.sourceChecksum = data.getLong(H_SOURCE_CHECKSUM);
+        this.entriesAt = data.getInt(H_ENTRIES);
+        this.tokensAt = data.getInt(H_TOKENS);
+        this.gramsAt = data.getInt(H_GRAMS);
+        this.postingsAt = data.getInt(H_POSTINGS);
+        this.stringsAt = data.getInt(H_STRINGS);
+        if (!isComplete(formatVersion)) {
+            throw new IllegalArgumentException(source + " is truncated or corrupt");
+        }
+        this.fuzzyMatcher = formatVersion == FORMAT_VERSION_WITHOUT_FUZZY ? null : new FuzzyMatcher(
+            trie(H_TRIE, H_TRIE_NODES), new EntryKeys(false),
+            trie(H_REVERSED_TRIE, H_REVERSED_TRIE_NODES), new EntryKeys(true));
+        this.source = source;
+        this.version = version;
+        this.builtAt = Instant.now();
+        this.buildTime = Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Все секции заголовка лежат внутри файла, а строки кончаются ровно в конце файла:
+     * секция строк пишется последней, и ее последние байты - перевод последней записи.
+     * Обрезанный или испорченный файл отвергается при открытии, а не исключением посреди поиска.
+     */
+    private boolean isComplete(int formatVersion) {
+        long size = data.capacity();
+        if (entryCount < 0 || tokenCount < 0 || gramCount < 0
+                || !fits(entriesAt, (long) entryCount * ENTRY_SIZE, size)
+                || !fits(tokensAt, (long) tokenCount * TOKEN_SIZE, size)
+                || !fits(gramsAt, (long) gramCount * GRAM_SIZE, size)
+                || !fits(postingsAt, 0, size)
+                || !fits(stringsAt, 0, size)) {
+            return false;
+        }
+        if (formatVersion != FORMAT_VERSION_WITHOUT_FUZZY
+                && !(fits(data.getInt(H_TRIE), trieBytes(H_TRIE_NODES), size)
+                    && fits(data.getInt(H_REVERSED_TRIE), trieBytes(H_REVERSED_TRIE_NODES), size))) {
+            return false;
+        }
+        long stringsEnd = stringsAt;
+        if (entryCount > 0) {
+            int last = entriesAt + (entryCount - 1) * ENTRY_SIZE;
+            stringsEnd += (long) data.getInt(last + E_VALUE_OFFSET) + data.getInt(last + E_VALUE_LENGTH);
+        }
+        return stringsEnd == size;
+    }
+
+    private long trieBytes(int nodesField) {
+        return (data.getInt(nodesField) + 1L) * FuzzyTrie.RECORD_INTS * Integer.BYTES;
+    }
+
+    private static boolean fits(int at, long length, long size) {
+        return at >= HEADER_SIZE && length >= 0 && at + length <= size;
+    }
+
+    /**
+     * Записи дерева из секции файла без копирования: узлы плюс запись-ограничитель.
+     */
+    private FuzzyTrie trie(int sectionField, int nodesField) {
+        int records = (data.getInt(nodesField) + 1) * FuzzyTrie.RECORD_INTS;
+        return new FuzzyTrie(data.slice(data.getInt(sectionField), records * Integer.BYTES).asIntBuffer());
+    }
+
+    /**
+     * Отображает файл в память. Файл потом можно атомарно подменить: отображение
+     * продолжает ссылаться на старое содержимое, пока индекс используется.
+     */
+    public static MappedDictionaryIndex open(Path file, long version) throws IOException {
+        return open(file, file.toString(), version);
+    }
+
+    /**
+     * Отображает файл, собранный не из {@code source} напрямую (слияние изменений через API).
+     */
+    static MappedDictionaryIndex open(Path file, String source, long version) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GiB");
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedDictionaryIndex(data, source, version, start);
+        }
+    }
+
+    /**
+     * Является ли файл скомпилированным словарем (по сигнатуре в начале).
+     */
+    public static boolean isCompiled(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // читаем первые 4 байта
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * CRC32 текстового словаря, из которого собран файл.
+     */
+    public long sourceChecksum() {
+        return sourceChecksum;
+    }
+
+    /**
+     * Письменность, по которой нормализованы ключи; null - файл до версии 4 или записан без нее.
+     */
+    public Script fromScript() {
+        return script(data, H_FROM_SCRIPT);
+    }
+
+    /**
+     * Письменность, по которой нормализованы переводы; null - файл до версии 4 или записан без нее.
+     */
+    public Script toScript() {
+        return script(data, H_TO_SCRIPT);
+    }
+
+    /**
+     * Проверяет, что файл собран с письменностями {@code from} и {@code to}: ключи, нормализованные
+     * по другой письменности, запросы молча не находят.
+     *
+     * @return false - письменности в файле не записаны, проверить нечем
+     * @throws IOException файл собран с другими письменностями
+     */
+    boolean checkScripts(Script from, Script to) throws IOException {
+        Script fileFrom = fromScript();
+        Script fileTo = toScript();
+        if (fileFrom == null || fileTo == null) {
+            return false;
+        }
+        if (fileFrom != from || fileTo != to) {
+            throw new IOException(source + " is compiled for " + fileFrom + " -> " + fileTo
+                + " but " + from + " -> " + to + " is needed, recompile it with DictionaryCompiler <dictionary.txt> "
+                + source + " " + from + " " + to);
+        }
+        return true;
+    }
+
+    /**
+     * Отпечаток нормализации записей; 0 - файл записан без него.
+     */
+    public long normalizationFingerprint() {
+        return data.getLong(H_NORMALIZATION);
+    }
+
+    @Override
+    public int exactEntry(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.isEmpty()) {
+            return NOT_FOUND;
+        }
+        return exact(normalizedWord.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int tokenEntry(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.isEmpty()) {
+            return NOT_FOUND;
+        }
+        return token(normalizedWord, normalizedWord.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int substringEntry(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.isEmpty()) {
+            return NOT_FOUND;
+        }
+        return substring(normalizedWord, normalizedWord.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int matchEntry(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.isEmpty()) {
+            return NOT_FOUND;
+        }
+        byte[] word = normalizedWord.getBytes(StandardCharsets.UTF_8);
+        int entry = token(normalizedWord, word);
+        return entry != NOT_FOUND ? entry : substring(normalizedWord, word);
+    }
+
+    /**
+     * В файлах первой версии деревьев нет, и поиск с опечатками ничего не находит.
+     */
+    @Override
+    public int fuzzyEntry(String normalizedWord, int maxDistance) {
+        return fuzzyMatcher != null ? fuzzyMatcher.find(normalizedWord, maxDistance) : NOT_FOUND;
+    }
+
+    @Override
+    public int fuzzyEntry(String normalizedWord, int maxDistance, IntPredicate accept) {
+        return fuzzyMatcher != null ? fuzzyMatcher.find(normalizedWord, maxDistance, accept) : NOT_FOUND;
+    }
+
+    /**
+     * Срез секции postings без копирования: списки в файле уже по возрастанию rank.
+     */
+    @Override
+    public IntBuffer candidateEntries(String normalizedWord) {
+        if (normalizedWord == null || normalizedWord.length() < 3) {
+            return null;
+        }
+        long postings = candidates(normalizedWord);
+        return data.slice(postingsAt + (int) (postings >>> 32) * Integer.BYTES, (int) postings * Integer.BYTES)
+            .asIntBuffer().asReadOnlyBuffer();
+    }
+
+
+    private int exact(byte[] word) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int at = entriesAt + mid * ENTRY_SIZE;
+            int cmp = compare(stringsAt + data.getInt(at + E_KEY_OFFSET), data.getInt(at + E_KEY_LENGTH), word);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Таблица слов хранит только многословные ключи, поэтому однословный ключ, равный слову,
+     * сравнивается с ней по rank.
+     */
+    private int token(String normalizedWord, byte[] word) {
+        if (containsWhitespace(word)) {
+            long postings = candidates(normalizedWord);
+            int start = (int) (postings >>> 32);
+            int count = (int) postings;
+            for (int i = 0; i < count; i++) {
+                int entry = posting(start + i);
+                if (hasTokenOccurrence(entry, word)) {
+                    return entry;
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        int low = 0;
+        int high = tokenCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int at = tokensAt + mid * TOKEN_SIZE;
+            int cmp = compare(stringsAt + data.getInt(at + T_OFFSET), data.getInt(at + T_LENGTH), word);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                int entry = data.getInt(at + T_ENTRY);
+                int exact = exact(word);
+                return exact != NOT_FOUND && rank(exact) < rank(entry) ? exact : entry;
+            }
+        }
+        return exact(word);
+    }
+
+    private int substring(String normalizedWord, byte[] word) {
+        if (normalizedWord.length() < 3) {
+            long postings = postings(DictionaryMatcher.gram(normalizedWord, 0, normalizedWord.length()));
+            return (int) postings > 0 ? posting((int) (postings >>> 32)) : NOT_FOUND;
+        }
+        long postings = candidates(normalizedWord);
+        int start = (int) (postings >>> 32);
+        int count = (int) postings;
+        for (int i = count - 1; i >= 0; i--) {
+            int entry = posting(start + i);
+            int at = entriesAt + entry * ENTRY_SIZE;
+            if (indexOf(stringsAt + data.getInt(at + E_KEY_OFFSET), data.getInt(at + E_KEY_LENGTH), word, 0) >= 0) {
+                return entry;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Самый короткий список записей среди триграмм слова, упакованный как (start << 32 | count).
+     */
+    private long candidates(String word) {
+        long best = -1;
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            long postings = postings(DictionaryMatcher.gram(word, i, 3));
+            if ((int) postings == 0) {
+                return 0;
+            }
+            if (best == -1 || (int) postings < (int) best) {
+                best = postings;
+            }
+        }
+        return best == -1 ? 0 : best;
+    }
+
+    private long postings(long gram) {
+        int low = 0;
+        int high = gramCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int at = gramsAt + mid * GRAM_SIZE;
+            long current = data.getLong(at + G_GRAM);
+            if (current < gram) {
+                low = mid + 1;
+            } else if (current > gram) {
+                high = mid - 1;
+            } else {
+                return ((long) data.getInt(at + G_START) << 32) | data.getInt(at + G_COUNT);
+            }
+        }
+        return 0;
+    }
+
+    private int posting(int index) {
+        return data.getInt(postingsAt + index * Integer.BYTES);
+    }
+
+    private boolean hasTokenOccurrence(int entry, byte[] word) {
+        int at = entriesAt + entry * ENTRY_SIZE;
+        int keyAt = stringsAt + data.getInt(at + E_KEY_OFFSET);
+        int keyLength = data.getInt(at + E_KEY_LENGTH);
+        int from = 0;
+        int found;
+        while ((found = indexOf(keyAt, keyLength, word, from)) >= 0) {
+            int end = found + word.length;
+            boolean leftBoundary = found == 0 || CompiledDictionaryWriter.isWhitespace(data.get(keyAt + found - 1));
+            boolean rightBoundary = end == keyLength || CompiledDictionaryWriter.isWhitespace(data.get(keyAt + end));
+            if (leftBoundary && rightBoundary) {
+                return true;
+            }
+            from = found + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Лексикографическое сравнение байт строки в файле с искомыми байтами (как беззнаковые).
+     */
+    private int compare(int at, int length, byte[] word) {
+        int common = Math.min(length, word.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(data.get(at + i) & 0xFF, word[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, word.length);
+    }
+
+    private int indexOf(int at, int length, byte[] word, int from) {
+        int last = length - word.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < word.length; j++) {
+                if (data.get(at + i + j) != word[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean containsWhitespace(byte[] word) {
+        for (byte b : word) {
+            if (CompiledDictionaryWriter.isWhitespace(b)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int rank(int entry) {
+        return data.getInt(entriesAt + entry * ENTRY_SIZE + E_RANK);
+    }
+
+    @Override
+    public String key(int entry) {
+        int at = entriesAt + entry * ENTRY_SIZE;
+        byte[] key = new byte[data.getInt(at + E_KEY_LENGTH)];
+        data.get(stringsAt + data.getInt(at + E_KEY_OFFSET), key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String value(int entry) {
+        if (entry == NOT_FOUND) {
+            return null;
+        }
+        int at = entriesAt + entry * ENTRY_SIZE;
+        byte[] value = new byte[data.getInt(at + E_VALUE_LENGTH)];
+        data.get(stringsAt + data.getInt(at + E_VALUE_OFFSET), value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Срез отображения без копирования: байты перевода лежат в файле уже в UTF-8.
+     */
+    @Override
+    public ByteBuffer encodedValue(int entry) {
+        int at = entriesAt + entry * ENTRY_SIZE;
+        return data.slice(stringsAt + data.getInt(at + E_VALUE_OFFSET), data.getInt(at + E_VALUE_LENGTH));
+    }
+
+    @Override
+    public int size() {
+        return entryCount;
+    }
+
+    @Override
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public Instant builtAt() {
+        return builtAt;
+    }
+
+    @Override
+    public Duration buildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Ключи записей для хвостов {@link FuzzyTrie}: символ - code point, декодированный из UTF-8
+     * на месте, смещение - в байтах (для перевернутых - от конца ключа).
+     */
+    private final class EntryKeys implements FuzzyMatcher.Keys {
+
+        private final boolean reversed;
+
+        EntryKeys(boolean reversed) {
+            this.reversed = reversed;
+        }
+
+        @Override
+        public int symbolAt(int entry, int offset) {
+            int at = entriesAt + entry * ENTRY_SIZE;
+            int length = data.getInt(at + E_KEY_LENGTH);
+            if (offset >= length) {
+                return FuzzyMatcher.END;
+            }
+            int keyAt = stringsAt + data.getInt(at + E_KEY_OFFSET);
+            int from = keyAt + offset;
+            if (reversed) {
+                // offset - байты от конца ключа: символ кончается перед ними, начало - первый не 10xxxxxx
+                from = keyAt + length - 1 - offset;
+                while (from > keyAt && (data.get(from) & 0xC0) == 0x80) {
+                    from--;
+                }
+            }
+            int lead = data.get(from) & 0xFF;
+            if (lead < 0x80) {
+                return lead;
+            }
+            int width = lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+            int codePoint = lead & (0xFF >>> (width + 1));
+            for (int i = 1; i < width; i++) {
+                codePoint = (codePoint << 6) | (data.get(from + i) & 0x3F);
+            }
+            return codePoint;
+        }
+
+        @Override
+        public int width(int symbol) {
+            return symbol < 0x80 ? 1 : symbol < 0x800 ? 2 : symbol < 0x10000 ? 3 : 4;
+        }
+
+        @Override
+        public int[] symbols(String word) {
+            return word.codePoints().toArray();
+        }
+
+        @Override
+        public int rank(int entry) {
+            return MappedDictionaryIndex.this.rank(entry);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.foreverrip.dictionary;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Автомат Ахо-Корасик по ключам словаря для перевода текста. Алфавит автомата - не символы,
+ * а слова ключей: ключ "доброе утро" - путь из двух переходов. Так состояний столько же,
+ * сколько слов в ключах, а не букв, и фраза всегда совпадает целыми словами текста.
+ * <p>
+ * Слова текста подаются по одному ({@link #next}); состояние - самый длинный хвост уже поданных
+ * слов, который еще может продолжиться до ключа. Все ключи, кончающиеся на текущем слове,
+ * перебираются по ссылкам {@link #firstOutput}/{@link #nextOutput}. Слово, которого нет
+ * ни в одном ключе, возвращает автомат в корень: через него фраза не продолжается.
+ * <p>
+ * Строится по снимку словаря один раз, дальше только читается из любого потока.
+ */
+public final class PhraseAutomaton {
+
+    public static final int ROOT = 0;
+    public static final int NONE = -1;
+    /** Слово, которого нет ни в одном ключе. */
+    public static final int UNKNOWN_WORD = -1;
+
+    private final Map<String, Integer> words;
+    private final Transitions transitions;
+    /** Длина состояния в словах. */
+    private final int[] depth;
+    /** Запись словаря, ключ которой кончается в состоянии, либо {@link DictionaryIndex#NOT_FOUND}. */
+    private final int[] entry;
+    /** Самый длинный собственный хвост состояния, который есть в автомате. */
+    private final int[] failure;
+    /** Ближайший собственный хвост, в котором кончается ключ, либо {@link #NONE}. */
+    private final int[] output;
+    private final int maxWordLength;
+    private final Duration buildTime;
+
+    private PhraseAutomaton(Builder builder, long startNanos) {
+        this.words = builder.words;
+        this.transitions = builder.transitions;
+        this.depth = Arrays.copyOf(builder.depth, builder.count);
+        this.entry = Arrays.copyOf(builder.entry, builder.count);
+        this.failure = new int[builder.count];
+        this.output = new int[builder.count];
+        this.maxWordLength = builder.maxWordLength;
+        link(builder.parent, builder.word);
+        this.buildTime = Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Строит автомат по всем ключам снимка. Ключи с одинаковой последовательностью слов
+     * (различаются только пробелами) дают одно состояние; в нем остается раньше стоящая запись.
+     * Записи, удаленные через API, пропускаются; ключи, добавленные через API, попадают в автомат
+     * только в снимке после слияния изменений.
+     */
+    public static PhraseAutomaton build(DictionaryIndex index) {
+        long start = System.nanoTime();
+        Builder builder = new Builder(index.size());
+        for (int e = 0; e < index.size(); e++) {
+            if (index.isLive(e)) {
+                builder.add(index, e);
+            }
+        }
+        return new PhraseAutomaton(builder, start);
+    }
+
+    /**
+     * Номер нормализованного слова в алфавите автомата, либо {@link #UNKNOWN_WORD}.
+     */
+    public int word(String normalizedWord) {
+        Integer id = words.get(normalizedWord);
+        return id != null ? id : UNKNOWN_WORD;
+    }
+
+    /**
+     * Состояние после слова {@code word}: переход, а если его нет - по ссылкам на хвосты.
+     */
+    public int next(int state, int word) {
+        if (word == UNKNOWN_WORD) {
+            return ROOT;
+        }
+        while (true) {
+            int child = transitions.get(state, word);
+            if (child != NONE) {
+                return child;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failure[state];
+        }
+    }
+
+    public int depth(int state) {
+        return depth[state];
+    }
+
+    /**
+     * Первое состояние с ключом среди состояния и его хвостов, либо {@link #NONE}.
+     */
+    public int firstOutput(int state) {
+        return entry[state] != DictionaryIndex.NOT_FOUND ? state : output[state];
+    }
+
+    public int nextOutput(int state) {
+        return output[state];
+    }
+
+    /**
+     * Запись словаря, ключ которой кончается в состоянии {@link #firstOutput выхода}.
+     */
+    public int entry(int state) {
+        return entry[state];
+    }
+
+    /**
+     * Самое длинное слово ключей в char: более длинное слово текста заведомо не совпадет.
+     */
+    public int maxWordLength() {
+        return maxWordLength;
+    }
+
+    public int size() {
+        return depth.length;
+    }
+
+    public Duration buildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Ссылки на хвосты в порядке обхода в ширину: хвост состояния короче его самого,
+     * поэтому к моменту обработки состояния ссылки всех более коротких уже посчитаны.
+     */
+    private void link(int[] parent, int[] word) {
+        int maxDepth = 0;
+        for (int d : depth) {
+            maxDepth = Math.max(maxDepth, d);
+        }
+        int[] byDepth = new int[maxDepth + 2];
+        for (int d : depth) {
+            byDepth[d + 1]++;
+        }
+        for (int d = 1; d < byDepth.length; d++) {
+            byDepth[d] += byDepth[d - 1];
+        }
+        int[] order = new int[depth.length];
+        for (int state = 0; state < depth.length; state++) {
+            order[byDepth[depth[state]]++] = state;
+        }
+
+        failure[ROOT] = ROOT;
+        output[ROOT] = NONE;
+        for (int state : order) {
+            if (state == ROOT) {
+                continue;
+            }
+            int tail = parent[state] == ROOT ? ROOT : next(failure[parent[state]], word[state]);
+            failure[state] = tail;
+            output[state] = entry[tail] != DictionaryIndex.NOT_FOUND ? tail : output[tail];
+        }
+    }
+
+    private static final class Builder {
+
+        private final Map<String, Integer> words = new HashMap<>();
+        private final Transitions transitions;
+        private int[] parent;
+        private int[] word;
+        private int[] depth;
+        private int[] entry;
+        private int count;
+        private int maxWordLength;
+
+        Builder(int keys) {
+            int capacity = Math.max(16, keys + keys / 4);
+            this.transitions = new Transitions(capacity);
+            this.parent = new int[capacity];
+            this.word = new int[capacity];
+            this.depth = new int[capacity];
+            this.entry = new int[capacity];
+            newState(NONE, NONE);
+        }
+
+        void add(DictionaryIndex index, int e) {
+            String key = index.key(e);
+            int state = ROOT;
+            int i = 0;
+            while (i < key.length()) {
+                while (i < key.length() && DictionaryMatcher.isWhitespace(key.charAt(i))) {
+                    i++;
+                }
+                int end = i;
+                while (end < key.length() && !DictionaryMatcher.isWhitespace(key.charAt(end))) {
+                    end++;
+                }
+                if (end == i) {
+                    break;
+                }
+                String token = key.substring(i, end);
+                maxWordLength = Math.max(maxWordLength, token.length());
+                int id = words.computeIfAbsent(token, t -> words.size());
+                int child = transitions.get(state, id);
+                if (child == NONE) {
+                    child = newState(state, id);
+                    transitions.put(state, id, child);
+                }
+                state = child;
+                i = end;
+            }
+            if (state != ROOT && (entry[state] == DictionaryIndex.NOT_FOUND || index.rank(e) < index.rank(entry[state]))) {
+                entry[state] = e;
+            }
+        }
+
+        private int newState(int from, int id) {
+            if (count == depth.length) {
+                int capacity = count * 2;
+                parent = Arrays.copyOf(parent, capacity);
+                word = Arrays.copyOf(word, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+                entry = Arrays.copyOf(entry, capacity);
+            }
+            parent[count] = from;
+            word[count] = id;
+            depth[count] = from == NONE ? 0 : depth[from] + 1;
+            entry[count] = DictionaryIndex.NOT_FOUND;
+            return count++;
+        }
+    }
+
+    /**
+     * Переходы (состояние, слово) -> состояние в одной таблице с открытой адресацией:
+     * без объекта на состояние, как было бы с картой детей в каждом узле.
+     */
+    private static final class Transitions {
+
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        Transitions(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            Arrays.fill(values, NONE);
+        }
+
+        int get(int state, int word) {
+            long key = key(state, word);
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] != NONE; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return NONE;
+        }
+
+        void put(int state, int word, int child) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            insert(key(state, word), child);
+            size++;
+        }
+
+        private void insert(long key, int value) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != NONE) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(values, NONE);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != NONE) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static long key(int state, int word) {
+            return ((long) state << 32) | (word & 0xFFFFFFFFL);
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.ShardingProperties;
+import com.example.foreverrip.sharding.ShardRing;
+import org.springframework.stereotype.Component;
+
+/**
+ * Какая часть словаря принадлежит этому узлу. Без шардирования узлу принадлежит все.
+ * <p>
+ * Точный ключ ищется только на узле-владельце: клиент отправляет слово туда, куда его
+ * нормализованная форма попадает на кольце. Нечеткое совпадение может найтись на любом узле,
+ * поэтому в шардированном режиме ответ сопровождается видом совпадения и rank записи
+ * ({@link com.example.foreverrip.sharding.MatchKind}), а клиент сливает ответы всех шардов.
+ */
+@Component
+public class ShardMembership {
+
+    private final ShardRing ring;
+    private final String node;
+
+    public ShardMembership(ShardingProperties properties) {
+        if (properties.getNodes().isEmpty()) {
+            this.ring = null;
+            this.node = null;
+            return;
+        }
+        if (!properties.getNodes().contains(properties.getNode())) {
+            throw new IllegalArgumentException("translation.sharding.node '" + properties.getNode()
+                + "' is not one of translation.sharding.nodes " + properties.getNodes());
+        }
+        this.ring = new ShardRing(properties.getNodes(), properties.getVirtualNodes());
+        this.node = properties.getNode();
+    }
+
+    public boolean isSharded() {
+        return ring != null;
+    }
+
+    /**
+     * Загружать ли запись с этим нормализованным ключом.
+     */
+    public boolean owns(String normalizedKey) {
+        return ring == null || node.equals(ring.owner(normalizedKey));
+    }
+
+    /**
+     * Описание для журнала и /actuator/info, например {@code b of [a, b, c] x 128 points}.
+     */
+    public String describe() {
+        return ring == null ? "not sharded" : node + " of " + ring;
+    }
+}
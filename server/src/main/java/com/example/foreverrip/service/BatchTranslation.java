@@ -0,0 +1,16 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.sharding.MatchKind;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Одна строка ответа потокового пакетного перевода: исходное слово и его перевод.
+ * Вид совпадения и rank заполняются только в шардированном режиме, иначе их нет в JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchTranslation(String word, String translation, MatchKind match, Integer rank) {
+
+    public BatchTranslation(String word, String translation) {
+        this(word, translation, null, null);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.ExecutionProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Лимит одновременных задач {@link TranslationExecutor}, подстраиваемый по задержке
+ * (по образцу алгоритма Gradient2). Время завершенных задач, вместе с ожиданием в очереди пула,
+ * усредняется по окнам ({@link #WINDOW_NANOS}, не меньше {@link #MIN_WINDOW_SAMPLES} задач);
+ * по окнам ведется и долгая скользящая средняя. Пока средняя окна не выше опорной - долгой
+ * с допуском {@code tolerance}, но не выше {@code latency-target}, - лимит растет на ~sqrt(лимита);
+ * когда задачи начинают ждать в очереди и задержка растет, лимит снижается пропорционально
+ * (не больше чем вдвое за окно). Так принимается столько задач, сколько узел успевает
+ * выполнить за целевое время, а остальные сразу отклоняются.
+ * <p>
+ * При выключенной адаптации лимит постоянный - {@code max-pending}.
+ */
+final class ConcurrencyLimit {
+
+    private static final long WINDOW_NANOS = 100_000_000;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    /** Долгая средняя - примерно по последним 100 окнам. */
+    private static final double LONG_WINDOWS = 100;
+
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTarget;
+    private final double tolerance;
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    /** Сглаженный лимит (дробный, чтобы малые шаги накапливались). */
+    private double estimate;
+    /** Долгая средняя задержка, нс. */
+    private double longLatency;
+    private long windowStart = System.nanoTime();
+    private long windowLatency;
+    private int windowSamples;
+    private int windowMaxRunning;
+
+    ConcurrencyLimit(ExecutionProperties properties) {
+        ExecutionProperties.Limit config = properties.getLimit();
+        this.adaptive = config.isAdaptive();
+        this.maxLimit = properties.getMaxPending();
+        this.minLimit = Math.min(config.getMinLimit(), maxLimit);
+        this.latencyTarget = config.getLatencyTarget().toNanos();
+        this.tolerance = config.getTolerance();
+        this.smoothing = config.getSmoothing();
+        this.estimate = adaptive ? clamp(config.getInitialLimit()) : maxLimit;
+        this.limit = (int) estimate;
+    }
+
+    /**
+     * Занимает место, если число выполняемых задач меньше лимита.
+     */
+    boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Освобождает место задачи, занятое в {@code startNanos}.
+     *
+     * @param sample учитывать ли время задачи: только успешно завершенные одиночные задачи,
+     *               время потока элементов зависит от его длины, а не от загрузки
+     */
+    void release(long startNanos, boolean sample) {
+        int running = inFlight.getAndDecrement();
+        if (sample && adaptive) {
+            update(System.nanoTime() - startNanos, running);
+        }
+    }
+
+    private synchronized void update(long latency, int running) {
+        windowLatency += latency;
+        windowSamples++;
+        windowMaxRunning = Math.max(windowMaxRunning, running);
+        long now = System.nanoTime();
+        if (now - windowStart < WINDOW_NANOS || windowSamples < MIN_WINDOW_SAMPLES) {
+            return;
+        }
+        double shortLatency = (double) windowLatency / windowSamples;
+        int maxRunning = windowMaxRunning;
+        windowStart = now;
+        windowLatency = 0;
+        windowSamples = 0;
+        windowMaxRunning = 0;
+
+        if (longLatency == 0) {
+            longLatency = shortLatency;
+            return;
+        }
+        longLatency += (shortLatency - longLatency) * 2 / (LONG_WINDOWS + 1);
+        // После долгой перегрузки долгая средняя завышена: возвращаем ее к обычной задержке
+        if (longLatency > 2 * shortLatency) {
+            longLatency *= 0.95;
+        }
+
+        double reference = Math.min(longLatency * tolerance, latencyTarget);
+        double gradient = Math.max(0.5, Math.min(1.0, reference / shortLatency));
+        // Нагрузка меньше половины лимита ничего не говорит о том, выдержит ли узел больше
+        if (gradient == 1.0 && maxRunning < estimate / 2) {
+            return;
+        }
+        double next = estimate * gradient + Math.sqrt(estimate);
+        estimate = clamp(estimate * (1 - smoothing) + next * smoothing);
+        limit = (int) estimate;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.dictionary.DictionaryHolder;
+import com.example.foreverrip.dictionary.DictionaryUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Изменения словаря через API (PUT/DELETE /api/dictionary/{word}).
+ * Запись в журнал изменений - блокирующий ввод-вывод (с fsync), поэтому она идет
+ * в boundedElastic, а не в CPU-пуле перевода и не в потоке Netty.
+ * Изменение видно переводу сразу после ответа; кэш результатов пересчитывает только
+ * те ответы, которые оно могло затронуть.
+ */
+@Service
+public class DictionaryUpdateService {
+
+    private static final Logger log = LoggerFactory.getLogger(DictionaryUpdateService.class);
+
+    private final DictionaryHolder dictionaryHolder;
+
+    public DictionaryUpdateService(DictionaryHolder dictionaryHolder) {
+        this.dictionaryHolder = dictionaryHolder;
+    }
+
+    public Mono<DictionaryUpdate> put(String word, String translation) {
+        return update(() -> dictionaryHolder.put(word, translation));
+    }
+
+    public Mono<DictionaryUpdate> delete(String word) {
+        return update(() -> dictionaryHolder.delete(word));
+    }
+
+    /**
+     * 403 - изменения через API выключены, 400 - пустое слово или перевод.
+     */
+    private Mono<DictionaryUpdate> update(Callable<DictionaryUpdate> change) {
+        if (!dictionaryHolder.isUpdatable()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN,
+                "Dictionary changes are disabled (translation.updates.directory is not set)"));
+        }
+        return Mono.fromCallable(change)
+            .subscribeOn(Schedulers.boundedElastic())
+            .doOnNext(update -> log.debug("Dictionary change {}", update))
+            .onErrorMap(IllegalArgumentException.class,
+                e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.dictionary.DictionaryIndex;
+import com.example.foreverrip.dictionary.LanguagePair;
+import com.example.foreverrip.dictionary.LanguagePairDictionaries;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Перевод слова для любой настроенной пары языков (GET /api/translate/{from}/{to}/{word}).
+ * Основная пара уходит в {@link TranslationService} как есть; для остальных тот же конвейер
+ * поиска идет по словарю пары ({@link LanguagePairDictionaries}) с нормализатором письменности
+ * исходного языка, а ответы кэшируются отдельно от основной пары.
+ * <p>
+ * Пока словарь пары загружается, запрос ждет его без потока: загрузка идет в своем пуле,
+ * и только поиск - в CPU-пуле {@link TranslationExecutor}. Ненастроенная пара - 404,
+ * неверный код языка - 400, словарь, который не удалось загрузить, - 503.
+ */
+@Service
+public class LanguagePairTranslationService {
+
+    private final LanguagePairDictionaries dictionaries;
+    private final TranslationService translationService;
+    private final TranslationResultCache resultCache;
+    private final TranslationExecutor executor;
+    private final TranslationMetrics metrics;
+
+    public LanguagePairTranslationService(LanguagePairDictionaries dictionaries,
+                                          TranslationService translationService,
+                                          TranslationResultCache resultCache, TranslationExecutor executor,
+                                          TranslationMetrics metrics) {
+        this.dictionaries = dictionaries;
+        this.translationService = translationService;
+        this.resultCache = resultCache;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Относится ли запрос к основной паре (для нее ответ несет заголовки шарда).
+     */
+    public boolean isDefault(String from, String to) {
+        return pair(from, to).equals(dictionaries.defaultPair());
+    }
+
+    public Mono<Translation> translate(String from, String to, String word, boolean fuzzy) {
+        return Mono.defer(() -> {
+            LanguagePair pair = configuredPair(from, to);
+            if (pair.equals(dictionaries.defaultPair())) {
+                return translationService.translate(word, fuzzy);
+            }
+            long start = System.nanoTime();
+            // Загрузка общая для всех ждущих запросов: отмена одного не должна ее отменять
+            return Mono.fromFuture(dictionaries.index(pair), true)
+                .onErrorMap(UncheckedIOException.class, LanguagePairTranslationService::unavailable)
+                .flatMap(dictionary -> {
+                    Translation cached = resultCache.getIfPresent(pair, word, fuzzy, dictionary);
+                    if (cached != null) {
+                        metrics.recordRequest(true, start);
+                        return Mono.just(cached);
+                    }
+                    return executor.execute(() -> compute(pair, word, fuzzy, dictionary))
+                        .doOnSuccess(translation -> metrics.recordRequest(false, start));
+                });
+        });
+    }
+
+    /**
+     * То же блокирующим вызовом - для режима виртуальных потоков.
+     */
+    public Translation translateBlocking(String from, String to, String word, boolean fuzzy) {
+        LanguagePair pair = configuredPair(from, to);
+        if (pair.equals(dictionaries.defaultPair())) {
+            return translationService.translateBlocking(word, fuzzy);
+        }
+        long start = System.nanoTime();
+        DictionaryIndex dictionary = join(dictionaries.index(pair));
+        Translation cached = resultCache.getIfPresent(pair, word, fuzzy, dictionary);
+        if (cached != null) {
+            metrics.recordRequest(true, start);
+            return cached;
+        }
+        Translation translation = executor.call(() -> compute(pair, word, fuzzy, dictionary));
+        metrics.recordRequest(false, start);
+        return translation;
+    }
+
+    private Translation compute(LanguagePair pair, String word, boolean fuzzy, DictionaryIndex dictionary) {
+        TextNormalizer normalizer = dictionaries.normalizer(pair);
+        return resultCache.compute(pair, word, fuzzy, dictionary,
+            (w, index) -> translationService.lookup(w, index, normalizer, fuzzy));
+    }
+
+    private LanguagePair configuredPair(String from, String to) {
+        LanguagePair pair = pair(from, to);
+        if (!pair.equals(dictionaries.defaultPair()) && !dictionaries.isConfigured(pair)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Language pair " + pair + " is not configured");
+        }
+        return pair;
+    }
+
+    private static LanguagePair pair(String from, String to) {
+        try {
+            return new LanguagePair(from, to);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static DictionaryIndex join(CompletableFuture<DictionaryIndex> loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw unavailable(io);
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static ResponseStatusException unavailable(UncheckedIOException e) {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.SnapshotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие слова кэша результатов в снимке для быстрого старта ({@code translation.snapshot}).
+ * Сохраняются сами слова, а не ответы: перевод по текущему словарю считается заново
+ * за микросекунды, и прогрев остается верным, даже если словарь с тех пор поменялся.
+ * <p>
+ * Слова сохраняются при остановке и раз в {@code save-interval} (на случай аварийного
+ * завершения) и переводятся в кэш при старте, до приема запросов.
+ */
+@Component
+public class ResultCacheSnapshot implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultCacheSnapshot.class);
+
+    static final String FILE_NAME = "hot-words.txt";
+
+    private final SnapshotProperties properties;
+    private final TranslationResultCache resultCache;
+    private final TranslationService translationService;
+    private final Path file;
+
+    private volatile ScheduledExecutorService saver;
+    private volatile boolean running;
+
+    public ResultCacheSnapshot(SnapshotProperties properties, TranslationResultCache resultCache,
+                               TranslationService translationService) {
+        this.properties = properties;
+        this.resultCache = resultCache;
+        this.translationService = translationService;
+        this.file = properties.getDirectory() != null ? properties.getDirectory().resolve(FILE_NAME) : null;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (file == null || properties.getHotEntries() <= 0) {
+            return;
+        }
+        restore();
+        long interval = properties.getSaveInterval().toMillis();
+        if (interval > 0) {
+            saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "result-cache-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            saver.scheduleWithFixedDelay(this::save, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void restore() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<String> words = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (words.size() > properties.getHotEntries()) {
+                words = words.subList(0, properties.getHotEntries());
+            }
+            translationService.warmUp(words);
+            log.info("Result cache warmed with {} words from {} (took {} ms)",
+                words.size(), file, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to warm result cache from {}", file, e);
+        }
+    }
+
+    /**
+     * Записывает горячие слова атомарной подменой файла; слова с переводом строки пропускаются.
+     */
+    void save() {
+        try {
+            List<String> words = resultCache.hottest(properties.getHotEntries()).stream()
+                .filter(word -> word.indexOf('\n') < 0 && word.indexOf('\r') < 0)
+                .toList();
+            if (words.isEmpty()) {
+                return;
+            }
+            Path directory = Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temp = Files.createTempFile(directory, FILE_NAME, ".tmp");
+            try {
+                Files.write(temp, words, StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            log.debug("Saved {} hot words to {}", words.size(), file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to save hot words to {}", file, e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ScheduledExecutorService executor = saver;
+        saver = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (file != null && properties.getHotEntries() > 0) {
+            save();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Раньше веб-сервера (его фаза - DEFAULT_PHASE - 2048): прогрев заканчивается до приема
+     * запросов, а последнее сохранение идет уже после того, как сервер перестал их принимать.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.text.Script;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * По одному {@link TextNormalizer} на письменность, общему для всех пар языков с ней:
+ * кэш недавних входов делят все пары с одной письменностью, а не заводит каждая пара.
+ * Кириллица - тот же бин, что нормализует основной словарь.
+ */
+@Component
+public class ScriptNormalizers {
+
+    private final Map<Script, TextNormalizer> normalizers = new EnumMap<>(Script.class);
+
+    public ScriptNormalizers(TextNormalizer cyrillic, NormalizationProperties properties) {
+        for (Script script : Script.values()) {
+            normalizers.put(script, script == cyrillic.script() ? cyrillic : new TextNormalizer(properties, script));
+        }
+    }
+
+    public TextNormalizer forScript(Script script) {
+        return normalizers.get(script);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.text.Script;
+import com.example.foreverrip.text.WordNormalization;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Unicode нормализация слов и строк словаря (NFKC форма, см. {@link WordNormalization}).
+ * Используется и при построении индекса словаря, и для входящих слов,
+ * поэтому обе стороны сравнения всегда приведены к одному виду.
+ * Клиент выбирает шард той же функцией, поэтому сама нормализация живет в модуле common,
+ * а здесь к ней добавлен ограниченный кэш недавних "тяжелых" входов.
+ * <p>
+ * Бин - нормализатор кириллицы основного словаря; нормализаторы других письменностей
+ * для пар языков - в {@link ScriptNormalizers}.
+ */
+@Component
+public class TextNormalizer {
+
+    private final Script script;
+    private final Cache<String, String> recent;
+
+    @Autowired
+    public TextNormalizer(NormalizationProperties properties) {
+        this(properties, Script.CYRILLIC);
+    }
+
+    public TextNormalizer(NormalizationProperties properties, Script script) {
+        this.script = script;
+        this.recent = properties.getCacheSize() > 0
+            ? Caffeine.newBuilder().maximumSize(properties.getCacheSize()).build()
+            : null;
+    }
+
+    public Script script() {
+        return script;
+    }
+
+    /**
+     * Нормализация входящего слова; медленный путь кэшируется.
+     */
+    public String normalize(String input) {
+        if (input == null || input.isEmpty() || WordNormalization.isAlreadyNormalized(input)) {
+            return input;
+        }
+        return recent != null
+            ? recent.get(input, script::normalizeSlow)
+            : script.normalizeSlow(input);
+    }
+
+    /**
+     * Нормализация без кэша - для массовой обработки (построение словаря),
+     * чтобы строки словаря не вытесняли из кэша реальные запросы.
+     */
+    public String normalizeUncached(String input) {
+        return script.normalize(input);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.dictionary.DictionaryIndex;
+import com.example.foreverrip.dictionary.PhraseAutomaton;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * Состояние перевода одного текста, который приходит кусками байт UTF-8.
+ * Куски обрабатываются по порядку в одном потоке за раз, поэтому синхронизации нет.
+ * <p>
+ * Текст делится на слова (между пробельными символами; знаки препинания по краям слова
+ * отрываются, если слово целиком не входит в ключи) и промежутки. Слова подаются
+ * в {@link PhraseAutomaton}, и из найденных фраз выбирается самая левая, из начинающихся
+ * на одном слове - самая длинная. Фраза заменяется переводом вместе с пробелами внутри,
+ * все остальное - слова без перевода, промежутки, пунктуация - выводится как было.
+ * <p>
+ * Память ограничена независимо от размера текста: в ожидании держатся только слова,
+ * которые еще могут оказаться началом фразы (не больше слов, чем в самом длинном ключе),
+ * а слишком длинное слово или промежуток выводятся, не дожидаясь конца.
+ */
+final class TextTranslation {
+
+    /** Промежуток длиннее этого (например, пустые строки подряд) фразу не продолжает. */
+    private static final int MAX_GAP_LENGTH = 256;
+    private static final int MIN_WORD_LIMIT = 1024;
+
+    private final DictionaryIndex dictionary;
+    private final PhraseAutomaton automaton;
+    private final TextNormalizer normalizer;
+    private final int maxWordLength;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    /** Байты куска плюс хвост предыдущего, разрезанный посреди символа. */
+    private ByteBuffer bytes = ByteBuffer.allocate(0);
+    private CharBuffer chars = CharBuffer.allocate(0);
+
+    /** Читаемое сейчас слово; после {@link #maxWordLength} символов оно выводится как есть. */
+    private final StringBuilder word = new StringBuilder();
+    private boolean overlongWord;
+    /** Пробельные символы после последнего слова, еще не отнесенные ни к чему. */
+    private final StringBuilder gap = new StringBuilder();
+
+    /** Слова, которые еще могут войти в фразу; первое - самое раннее невыведенное. */
+    private final ArrayDeque<Word> pending = new ArrayDeque<>();
+    private int state = PhraseAutomaton.ROOT;
+
+    private final StringBuilder out = new StringBuilder();
+
+    TextTranslation(DictionaryIndex dictionary, PhraseAutomaton automaton, TextNormalizer normalizer) {
+        this.dictionary = dictionary;
+        this.automaton = automaton;
+        this.normalizer = normalizer;
+        this.maxWordLength = Math.max(MIN_WORD_LIMIT, automaton.maxWordLength() * 4);
+    }
+
+    /**
+     * Обрабатывает очередной кусок и возвращает готовую часть перевода (возможно, пустую).
+     */
+    String translate(DataBuffer chunk) {
+        int length = chunk.readableByteCount();
+        if (bytes.capacity() < bytes.position() + length) {
+            bytes = ByteBuffer.allocate(bytes.position() + length).put(bytes.flip());
+        }
+        chunk.read(bytes.array(), bytes.position(), length);
+        bytes.position(bytes.position() + length);
+        bytes.flip();
+        if (chars.capacity() < bytes.remaining()) {
+            chars = CharBuffer.allocate(bytes.remaining());
+        }
+        decoder.decode(bytes, chars, false);
+        bytes.compact();
+        chars.flip();
+        while (chars.hasRemaining()) {
+            accept(chars.get());
+        }
+        chars.clear();
+        return drain();
+    }
+
+    /**
+     * Конец текста: дописывает отложенное.
+     */
+    String finish() {
+        bytes.flip();
+        if (chars.capacity() <= bytes.remaining()) {
+            chars = CharBuffer.allocate(bytes.remaining() + 1);
+        }
+        decoder.decode(bytes, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        while (chars.hasRemaining()) {
+            accept(chars.get());
+        }
+        endWord();
+        flush();
+        out.append(gap);
+        gap.setLength(0);
+        return drain();
+    }
+
+    private String drain() {
+        String result = out.toString();
+        out.setLength(0);
+        return result;
+    }
+
+    private void accept(char c) {
+        if (Character.isWhitespace(c)) {
+            endWord();
+            if (pending.isEmpty()) {
+                out.append(c);
+            } else if (gap.length() < MAX_GAP_LENGTH) {
+                gap.append(c);
+            } else {
+                flush();
+                out.append(gap).append(c);
+                gap.setLength(0);
+            }
+        } else if (overlongWord) {
+            out.append(c);
+        } else {
+            word.append(c);
+            if (word.length() > maxWordLength) {
+                // Такого слова нет ни в одном ключе: выводим без ожидания конца
+                flush();
+                out.append(gap).append(word);
+                gap.setLength(0);
+                word.setLength(0);
+                overlongWord = true;
+            }
+        }
+    }
+
+    private void endWord() {
+        overlongWord = false;
+        if (word.isEmpty()) {
+            return;
+        }
+        String raw = word.toString();
+        word.setLength(0);
+        int id = automaton.word(normalizer.normalizeUncached(raw));
+        if (id != PhraseAutomaton.UNKNOWN_WORD) {
+            feed(raw, id);
+            return;
+        }
+        int start = 0;
+        int end = raw.length();
+        while (start < end && !Character.isLetterOrDigit(raw.charAt(start))) {
+            start++;
+        }
+        while (end > start && !Character.isLetterOrDigit(raw.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end || (start == 0 && end == raw.length())) {
+            feed(raw, id);
+            return;
+        }
+        // Пунктуация по краям разрывает фразу
+        punctuation(raw.substring(0, start));
+        String core = raw.substring(start, end);
+        feed(core, automaton.word(normalizer.normalizeUncached(core)));
+        punctuation(raw.substring(end));
+    }
+
+    private void punctuation(String text) {
+        if (!text.isEmpty()) {
+            flush();
+            out.append(gap).append(text);
+            gap.setLength(0);
+        }
+    }
+
+    /**
+     * Очередное слово текста. Все слова до начала самого длинного живого хвоста автомата
+     * уже не войдут в новую фразу, и по ним можно принять решение.
+     */
+    private void feed(String text, int id) {
+        if (id == PhraseAutomaton.UNKNOWN_WORD) {
+            flush();
+            out.append(gap).append(text);
+            gap.setLength(0);
+            return;
+        }
+        Word current = new Word(text, gap.toString());
+        gap.setLength(0);
+        pending.addLast(current);
+        state = automaton.next(state, id);
+        for (int o = automaton.firstOutput(state); o != PhraseAutomaton.NONE; o = automaton.nextOutput(o)) {
+            // Фраза из depth последних слов; ее начало могло уже уйти в предыдущую фразу
+            int start = pending.size() - automaton.depth(o);
+            if (start >= 0) {
+                Word first = nth(start);
+                // Фраза могла быть удалена через API уже после построения автомата
+                if (automaton.depth(o) > first.phraseLength && dictionary.isLive(automaton.entry(o))) {
+                    first.phraseLength = automaton.depth(o);
+                    first.entry = automaton.entry(o);
+                }
+            }
+        }
+        resolve(automaton.depth(state));
+    }
+
+    /**
+     * Выводит все отложенные слова: после них фраза не продолжится.
+     */
+    private void flush() {
+        resolve(0);
+        state = PhraseAutomaton.ROOT;
+    }
+
+    /**
+     * Выводит отложенные слова, пока их больше, чем {@code live} последних (тех, что еще могут
+     * начать фразу): самую длинную фразу с первого слова переводом, иначе само слово.
+     */
+    private void resolve(int live) {
+        while (pending.size() > live) {
+            Word first = pending.pollFirst();
+            out.append(first.gapBefore);
+            if (first.phraseLength == 0) {
+                out.append(first.text);
+                continue;
+            }
+            out.append(dictionary.value(first.entry));
+            for (int i = 1; i < first.phraseLength; i++) {
+                pending.pollFirst();
+            }
+        }
+    }
+
+    private Word nth(int index) {
+        var iterator = pending.iterator();
+        for (int i = 0; i < index; i++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    private static final class Word {
+
+        private final String text;
+        private final String gapBefore;
+        /** Самая длинная фраза, начинающаяся на этом слове (в словах), и ее запись. */
+        private int phraseLength;
+        private int entry;
+
+        Word(String text, String gapBefore) {
+            this.text = text;
+            this.gapBefore = gapBefore;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.dictionary.DictionaryHolder;
+import com.example.foreverrip.dictionary.DictionaryIndex;
+import com.example.foreverrip.dictionary.DictionaryReloadedEvent;
+import com.example.foreverrip.dictionary.PhraseAutomaton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+/**
+ * Перевод произвольного текста (POST /text): фразы словаря заменяются переводами,
+ * остальное остается как было (см. {@link TextTranslation}).
+ * <p>
+ * Тело читается и переводится кусками в CPU-пуле {@link TranslationExecutor} и отдается
+ * по мере готовности, поэтому документ любого размера переводится в постоянной памяти,
+ * а скорость чтения входа определяется тем, как быстро клиент забирает ответ.
+ * <p>
+ * {@link PhraseAutomaton} строится по снимку словаря при первом переводе текста, а не при
+ * загрузке словаря: большинству серверов он не нужен, а отображенный словарь должен
+ * открываться без разбора записей. При перезагрузке словаря старый автомат отпускается.
+ */
+@Service
+public class TextTranslationService {
+
+    private static final Logger log = LoggerFactory.getLogger(TextTranslationService.class);
+
+    private final DictionaryHolder dictionaryHolder;
+    private final TextNormalizer normalizer;
+    private final TranslationExecutor executor;
+
+    private DictionaryIndex automatonIndex;
+    private PhraseAutomaton automaton;
+
+    public TextTranslationService(DictionaryHolder dictionaryHolder, TextNormalizer normalizer,
+                                  TranslationExecutor executor) {
+        this.dictionaryHolder = dictionaryHolder;
+        this.normalizer = normalizer;
+        this.executor = executor;
+    }
+
+    /**
+     * Переведенный текст частями; тело - UTF-8. Буферы тела освобождаются по мере чтения.
+     */
+    public Flux<String> translate(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            DictionaryIndex dictionary = dictionaryHolder.current();
+            TextTranslation[] translation = new TextTranslation[1];
+            // Пустой буфер в конце - сигнал дописать отложенное в том же CPU-потоке
+            DataBuffer end = DefaultDataBufferFactory.sharedInstance.allocateBuffer(0);
+            return executor.executeEach(body.concatWithValues(end), chunk -> {
+                    if (translation[0] == null) {
+                        translation[0] = new TextTranslation(dictionary, automaton(dictionary), normalizer);
+                    }
+                    if (chunk == end) {
+                        return translation[0].finish();
+                    }
+                    try {
+                        return translation[0].translate(chunk);
+                    } finally {
+                        DataBufferUtils.release(chunk);
+                    }
+                })
+                .filter(text -> !text.isEmpty())
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    private synchronized PhraseAutomaton automaton(DictionaryIndex dictionary) {
+        if (automatonIndex != dictionary) {
+            automaton = PhraseAutomaton.build(dictionary);
+            automatonIndex = dictionary;
+            log.info("Phrase automaton for dictionary version {}: {} states (took {} ms)",
+                dictionary.version(), automaton.size(), automaton.buildTime().toMillis());
+        }
+        return automaton;
+    }
+
+    @EventListener
+    public synchronized void onDictionaryReloaded(DictionaryReloadedEvent event) {
+        if (automatonIndex == event.previous()) {
+            automatonIndex = null;
+            automaton = null;
+        }
+    }
+}
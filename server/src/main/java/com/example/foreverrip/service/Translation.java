@@ -0,0 +1,129 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.dictionary.DictionaryIndex;
+import com.example.foreverrip.sharding.MatchKind;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Готовый ответ на перевод слова: {@code "translated: " + перевод + " :end"}
+ * либо {@code "Translation not found"}.
+ * <p>
+ * Перевод хранится срезом UTF-8, закодированным индексом словаря один раз при построении,
+ * префикс и суффикс - общие константы. Поэтому ответ собирается сразу в буфер ответа
+ * ({@link #encode}) без промежуточных String и char[]. Строковый вид ({@link #text()})
+ * нужен только пакетным ответам и строится лениво, один раз на объект.
+ * Вид совпадения и rank записи нужны клиенту шардированного словаря для слияния ответов шардов.
+ */
+public final class Translation {
+
+    static final String NOT_FOUND_TEXT = "Translation not found";
+
+    private static final byte[] PREFIX = "translated: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = " :end".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NOT_FOUND_BYTES = NOT_FOUND_TEXT.getBytes(StandardCharsets.UTF_8);
+
+    public static final Translation NOT_FOUND =
+        new Translation(MatchKind.NONE, DictionaryIndex.NOT_FOUND, -1, null, NOT_FOUND_TEXT);
+
+    private final MatchKind match;
+    private final int entry;
+    private final int rank;
+
+    /**
+     * Общий буфер индекса: не меняем ни содержимое, ни позицию. Null - перевод не найден.
+     */
+    private final ByteBuffer value;
+
+    /**
+     * Строковый вид; гонка при ленивом построении безопасна - String неизменяем.
+     */
+    private String text;
+
+    private Translation(MatchKind match, int entry, int rank, ByteBuffer value, String text) {
+        this.match = match;
+        this.entry = entry;
+        this.rank = rank;
+        this.value = value;
+        this.text = text;
+    }
+
+    /**
+     * Ответ с переводом записи {@code entry} из {@link DictionaryIndex#encodedValue}.
+     */
+    static Translation of(MatchKind match, int entry, int rank, ByteBuffer encodedValue) {
+        return new Translation(match, entry, rank, encodedValue, null);
+    }
+
+    public boolean isFound() {
+        return value != null;
+    }
+
+    public MatchKind match() {
+        return match;
+    }
+
+    /**
+     * Номер найденной записи в снимке словаря ({@link DictionaryIndex#NOT_FOUND}, если перевод не найден):
+     * по нему кэш результатов проверяет, не изменилась ли запись через API.
+     */
+    int entry() {
+        return entry;
+    }
+
+    /**
+     * Номер найденной записи в исходном словаре; -1, если перевод не найден.
+     */
+    public int rank() {
+        return rank;
+    }
+
+    /**
+     * Длина ответа в байтах UTF-8.
+     */
+    public int encodedLength() {
+        return value == null ? NOT_FOUND_BYTES.length : PREFIX.length + value.remaining() + SUFFIX.length;
+    }
+
+    /**
+     * Пишет ответ в новый буфер из фабрики (на сервере - пул Netty); освобождает буфер тот, кто его пишет.
+     */
+    public DataBuffer encode(DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(encodedLength());
+        if (value == null) {
+            return buffer.write(NOT_FOUND_BYTES);
+        }
+        buffer.write(PREFIX);
+        if (value.hasArray()) {
+            buffer.write(value.array(), value.arrayOffset() + value.position(), value.remaining());
+        } else {
+            // Отображенный файл: копия только заголовка буфера, не байт
+            buffer.write(value.duplicate());
+        }
+        return buffer.write(SUFFIX);
+    }
+
+    /**
+     * Ответ строкой - тот же текст, что уходит байтами из {@link #encode}.
+     */
+    public String text() {
+        String result = text;
+        if (result == null) {
+            byte[] bytes = new byte[encodedLength()];
+            System.arraycopy(PREFIX, 0, bytes, 0, PREFIX.length);
+            value.get(value.position(), bytes, PREFIX.length, value.remaining());
+            System.arraycopy(SUFFIX, 0, bytes, bytes.length - SUFFIX.length, SUFFIX.length);
+            result = new String(bytes, StandardCharsets.UTF_8);
+            text = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+}
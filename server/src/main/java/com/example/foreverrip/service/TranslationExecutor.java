@@ -0,0 +1,137 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.ExecutionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Выполняет CPU-работу перевода в отдельном параллельном пуле фиксированного размера
+ * вместо boundedElastic. Число одновременно принятых задач ограничено {@link ConcurrencyLimit}:
+ * лимит подстраивается по времени выполнения задач (не выше {@code translation.execution.max-pending}),
+ * а лишние задачи сразу получают {@link TranslationOverloadedException} (503 с Retry-After),
+ * а не ждут в очереди, увеличивая задержку всем.
+ * <p>
+ * В режиме {@link ExecutionProperties.Mode#VIRTUAL_THREADS} пул не нужен: одиночные запросы
+ * считаются прямо в своем виртуальном потоке ({@link #call}), а потоки элементов - в
+ * виртуальных потоках вместо CPU-пула. Лимит действует в обоих режимах.
+ */
+@Component
+public class TranslationExecutor implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TranslationExecutor.class);
+
+    private final ExecutionProperties properties;
+    private final Scheduler scheduler;
+    private final ConcurrencyLimit limit;
+    private final Counter rejected;
+
+    public TranslationExecutor(ExecutionProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.scheduler = properties.getMode() == ExecutionProperties.Mode.VIRTUAL_THREADS
+            ? Schedulers.fromExecutor(new VirtualThreadTaskExecutor("translation-virtual-"))
+            : Schedulers.newParallel("translation-cpu", properties.getThreads(), true);
+
+        this.limit = new ConcurrencyLimit(properties);
+
+        Gauge.builder("translation.execution.pending", limit, ConcurrencyLimit::inFlight)
+            .description("Translation tasks running or queued on the CPU scheduler")
+            .register(registry);
+        Gauge.builder("translation.execution.limit", limit, ConcurrencyLimit::limit)
+            .description("Current limit of concurrent translation tasks")
+            .register(registry);
+        this.rejected = Counter.builder("translation.execution.rejected")
+            .description("Translation tasks shed because the concurrency limit was reached")
+            .register(registry);
+
+        if (properties.getMode() == ExecutionProperties.Mode.VIRTUAL_THREADS) {
+            log.info("Translation execution on virtual threads, {} concurrency limit {} (max {})",
+                properties.getLimit().isAdaptive() ? "adaptive" : "fixed", limit.limit(), properties.getMaxPending());
+        } else {
+            log.info("Translation scheduler: {} threads, {} concurrency limit {} (max {})", properties.getThreads(),
+                properties.getLimit().isAdaptive() ? "adaptive" : "fixed", limit.limit(), properties.getMaxPending());
+        }
+    }
+
+    /**
+     * Одна задача в CPU-пуле.
+     */
+    public <T> Mono<T> execute(Callable<T> task) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                return Mono.error(overloaded());
+            }
+            long start = System.nanoTime();
+            return Mono.fromCallable(task)
+                .subscribeOn(scheduler)
+                .doFinally(signal -> limit.release(start, signal == SignalType.ON_COMPLETE));
+        });
+    }
+
+    /**
+     * Одна задача в текущем потоке - для блокирующего кода в виртуальных потоках.
+     * Лимит тот же, что у {@link #execute}: при перегрузке сразу бросается {@link TranslationOverloadedException}.
+     */
+    public <T> T call(Supplier<T> task) {
+        if (!tryAcquire()) {
+            throw overloaded();
+        }
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            T result = task.get();
+            completed = true;
+            return result;
+        } finally {
+            limit.release(start, completed);
+        }
+    }
+
+    /**
+     * Поток элементов, обрабатываемый в CPU-пуле по порядку. Весь поток занимает одно место
+     * в лимите, а вперед читается не больше {@code batch-prefetch} элементов.
+     */
+    public <T, R> Flux<R> executeEach(Flux<T> items, Function<T, R> task) {
+        return Flux.defer(() -> {
+            if (!tryAcquire()) {
+                return Flux.error(overloaded());
+            }
+            return items
+                .publishOn(scheduler, properties.getBatchPrefetch())
+                .map(task)
+                .doFinally(signal -> limit.release(0, false));
+        });
+    }
+
+    private boolean tryAcquire() {
+        if (!limit.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private TranslationOverloadedException overloaded() {
+        return new TranslationOverloadedException(
+            "Translation concurrency limit reached (" + limit.limit() + " in flight)", properties.getRetryAfter());
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
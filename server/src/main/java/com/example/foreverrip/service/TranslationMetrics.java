@@ -0,0 +1,75 @@
+package com.example.foreverrip.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таймеры конвейера перевода. Все таймеры регистрируются заранее, поэтому замер
+ * на горячем пути - это два System.nanoTime() и запись в таймер, без поиска метра и аллокаций.
+ * Гистограммы для Prometheus включаются через
+ * {@code management.metrics.distribution.percentiles-histogram.*}.
+ */
+@Component
+public class TranslationMetrics {
+
+    /**
+     * Стадии {@code translation.stage}.
+     */
+    public enum Stage {
+        /** нормализация входного слова */
+        NORMALIZE("normalize"),
+        /** точный поиск ключа в снимке словаря */
+        DICTIONARY("dictionary"),
+        /** поиск ключа с опечаткой ({@code ?fuzzy=1}), если точного ключа нет */
+        FUZZY("fuzzy"),
+        /** нечеткое совпадение (слово внутри ключа, подстрока), если точного ключа нет */
+        MATCH("match"),
+        /** постобработка найденного перевода */
+        POST_PROCESS("post-process");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Timer[] stages = new Timer[Stage.values().length];
+    private final Timer cachedRequests;
+    private final Timer computedRequests;
+
+    public TranslationMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = Timer.builder("translation.stage")
+                .description("Time spent in one stage of the translation pipeline")
+                .tag("stage", stage.tag)
+                .register(registry);
+        }
+        this.cachedRequests = requestTimer(registry, "hit");
+        this.computedRequests = requestTimer(registry, "miss");
+    }
+
+    private static Timer requestTimer(MeterRegistry registry, String cache) {
+        return Timer.builder("translation.request")
+            .description("End-to-end time to translate one word, from subscription to result")
+            .tag("cache", cache)
+            .register(registry);
+    }
+
+    /**
+     * Записывает время стадии, начавшейся в {@code startNanos}, и возвращает момент ее окончания -
+     * начало следующей стадии.
+     */
+    public long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stages[stage.ordinal()].record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void recordRequest(boolean cached, long startNanos) {
+        (cached ? cachedRequests : computedRequests).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.ResultCacheProperties;
+import com.example.foreverrip.dictionary.DictionaryIndex;
+import com.example.foreverrip.dictionary.DictionaryReloadedEvent;
+import com.example.foreverrip.dictionary.LanguagePair;
+import com.example.foreverrip.dictionary.LanguagePairEvictedEvent;
+import com.example.foreverrip.sharding.MatchKind;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Кэш готовых ответов ({@link Translation}) по исходному (ненормализованному) слову.
+ * Трафик распределен по Ципфу, поэтому небольшой кэш закрывает большую часть запросов.
+ * <p>
+ * Каждая запись помечена версией словаря, из которой она посчитана: при перезагрузке
+ * кэш очищается целиком, а запись, посчитанная по старому снимку уже после очистки,
+ * не будет отдана и пересчитается при следующем обращении. Изменения словаря через API
+ * кэш не очищают: запись помнит {@link DictionaryIndex#changeStamp() отметку изменений},
+ * с которой посчитана, и не отдается, если ее ответ с тех пор мог измениться.
+ * Ответы поиска с опечатками ({@code fuzzy}) хранятся в отдельном кэше того же размера,
+ * чтобы не подменять обычные ответы на те же слова. Ответы остальных пар языков - в третьем кэше
+ * ({@code translation.results.pairs}) по ключу {@code пара + слово}; при выгрузке словаря пары
+ * ее ответы удаляются, чтобы кэш не удерживал выгруженный словарь.
+ * Метрики публикуются под именем {@code cache.*} с тегом {@code cache=translation.results}
+ * ({@code translation.results.fuzzy}), время вычисления при промахе - {@code translation.results.load}.
+ */
+@Component
+public class TranslationResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TranslationResultCache.class);
+
+    static final String CACHE_NAME = "translation.results";
+    static final String FUZZY_CACHE_NAME = "translation.results.fuzzy";
+    static final String PAIRS_CACHE_NAME = "translation.results.pairs";
+
+    private final Cache<String, Entry> cache;
+    private final Cache<String, Entry> fuzzyCache;
+    private final Cache<String, Entry> pairCache;
+    private final Timer loadTimer;
+
+    public TranslationResultCache(ResultCacheProperties properties, MeterRegistry registry) {
+        this.cache = newCache(properties, registry, CACHE_NAME);
+        this.fuzzyCache = newCache(properties, registry, FUZZY_CACHE_NAME);
+        this.pairCache = newCache(properties, registry, PAIRS_CACHE_NAME);
+        // CaffeineCacheMetrics считает время загрузки только для LoadingCache, поэтому таймер свой
+        this.loadTimer = Timer.builder("translation.results.load")
+            .description("Time to compute a translation on a result cache miss")
+            .register(registry);
+    }
+
+    private static Cache<String, Entry> newCache(ResultCacheProperties properties, MeterRegistry registry,
+                                                 String name) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        Cache<String, Entry> cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getExpireAfterWrite())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        return cache;
+    }
+
+    /**
+     * Ответ для слова по данному снимку словаря; при промахе вызывается {@code loader}.
+     */
+    public Translation get(String word, boolean fuzzy, DictionaryIndex index,
+                           BiFunction<String, DictionaryIndex, Translation> loader) {
+        Translation translation = getIfPresent(word, fuzzy, index);
+        return translation != null ? translation : compute(word, fuzzy, index, loader);
+    }
+
+    /**
+     * Готовый ответ, посчитанный по этому же снимку словаря, либо null. Учитывается в hit/miss.
+     */
+    public Translation getIfPresent(String word, boolean fuzzy, DictionaryIndex index) {
+        return getIfPresent(fuzzy ? fuzzyCache : cache, word, index);
+    }
+
+    /**
+     * Вычисляет ответ после промаха {@link #getIfPresent} и кладет его в кэш.
+     * Одновременные вычисления одного слова выполняются один раз.
+     */
+    public Translation compute(String word, boolean fuzzy, DictionaryIndex index,
+                               BiFunction<String, DictionaryIndex, Translation> loader) {
+        return compute(fuzzy ? fuzzyCache : cache, word, index, dictionary -> loader.apply(word, dictionary));
+    }
+
+    /**
+     * {@link #getIfPresent(String, boolean, DictionaryIndex)} для пары языков, кроме основной.
+     */
+    public Translation getIfPresent(LanguagePair pair, String word, boolean fuzzy, DictionaryIndex index) {
+        return getIfPresent(pairCache, pairKey(pair, word, fuzzy), index);
+    }
+
+    /**
+     * {@link #compute(String, boolean, DictionaryIndex, BiFunction)} для пары языков, кроме основной.
+     */
+    public Translation compute(LanguagePair pair, String word, boolean fuzzy, DictionaryIndex index,
+                               BiFunction<String, DictionaryIndex, Translation> loader) {
+        return compute(pairCache, pairKey(pair, word, fuzzy), index, dictionary -> loader.apply(word, dictionary));
+    }
+
+    private static String pairKey(LanguagePair pair, String word, boolean fuzzy) {
+        return pair + (fuzzy ? "~" : ":") + word;
+    }
+
+    private static Translation getIfPresent(Cache<String, Entry> cache, String key, DictionaryIndex index) {
+        if (cache == null) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(key);
+        return entry != null && entry.isValid(index) ? entry.translation : null;
+    }
+
+    private Translation compute(Cache<String, Entry> cache, String key, DictionaryIndex index,
+                                Function<DictionaryIndex, Translation> loader) {
+        if (cache == null) {
+            return loader.apply(index);
+        }
+
+        long version = index.version();
+        // Отметка берется до поиска: изменение во время поиска сделает запись устаревшей
+        long stamp = index.changeStamp();
+        // compute не трогает счетчики hit/miss - промах уже учтен в getIfPresent
+        Entry entry = cache.asMap().compute(key, (k, existing) ->
+            existing != null && (existing.version > version || existing.isValid(index))
+                ? existing
+                : new Entry(version, stamp, load(index, loader)));
+        if (entry.version > version) {
+            // Запрос начался до перезагрузки: отвечаем по своему снимку, не портя кэш
+            return loader.apply(index);
+        }
+        return entry.translation;
+    }
+
+    private Translation load(DictionaryIndex index, Function<DictionaryIndex, Translation> loader) {
+        long start = System.nanoTime();
+        try {
+            return loader.apply(index);
+        } finally {
+            loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * До {@code limit} самых горячих слов обычного кэша по оценке TinyLFU, самые горячие первыми.
+     */
+    public List<String> hottest(int limit) {
+        if (cache == null) {
+            return List.of();
+        }
+        return cache.policy().eviction()
+            .map(eviction -> List.copyOf(eviction.hottest(limit).keySet()))
+            .orElse(List.of());
+    }
+
+    @EventListener
+    public void onDictionaryReloaded(DictionaryReloadedEvent event) {
+        if (cache != null) {
+            long size = cache.estimatedSize() + fuzzyCache.estimatedSize();
+            cache.invalidateAll();
+            fuzzyCache.invalidateAll();
+            log.info("Result cache cleared after dictionary reload ({} entries dropped)", size);
+        }
+    }
+
+    @EventListener
+    public void onLanguagePairEvicted(LanguagePairEvictedEvent event) {
+        if (pairCache != null) {
+            String exact = event.pair() + ":";
+            String fuzzy = event.pair() + "~";
+            pairCache.asMap().keySet().removeIf(key -> key.startsWith(exact) || key.startsWith(fuzzy));
+        }
+    }
+
+    private record Entry(long version, long stamp, Translation translation) {
+
+        boolean isValid(DictionaryIndex index) {
+            return version == index.version()
+                && index.unchangedSince(stamp, translation.entry(), translation.match() == MatchKind.EXACT);
+        }
+    }
+}
@@ -1,271 +1,249 @@
 package com.example.foreverrip.service;
 
+import com.example.foreverrip.config.FuzzyProperties;
+import com.example.foreverrip.dictionary.DictionaryHolder;
+import com.example.foreverrip.dictionary.DictionaryIndex;
+import com.example.foreverrip.dictionary.ShardMembership;
+import com.example.foreverrip.service.TranslationMetrics.Stage;
+import com.example.foreverrip.sharding.MatchKind;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.text.Normalizer;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.BiFunction;
 
 @Service
 public class TranslationService {
     
     private static final Logger log = LoggerFactory.getLogger(TranslationService.class);
     
-    // ============================
-    // НЕОПТИМАЛЬНАЯ ЛОГИКА НАЧИНАЕТСЯ ЗДЕСЬ
-    // ============================
+    /**
+     * Промах в ответе GET /batch - в нижнем регистре, как все строки пакета: так он с самого начала
+     * отдавался и сортировался после "translated: ...".
+     */
+    private static final String BATCH_NOT_FOUND_TEXT = Translation.NOT_FOUND_TEXT.toLowerCase(Locale.ROOT);
+    
+    private final DictionaryHolder dictionaryHolder;
+    private final TextNormalizer normalizer;
+    private final TranslationResultCache resultCache;
+    private final TranslationExecutor executor;
+    private final TranslationMetrics metrics;
+    private final FuzzyProperties fuzzy;
+    private final boolean sharded;
+    
+    public TranslationService(DictionaryHolder dictionaryHolder, TextNormalizer normalizer,
+                              TranslationResultCache resultCache, TranslationExecutor executor,
+                              TranslationMetrics metrics, FuzzyProperties fuzzy, ShardMembership shard) {
+        this.dictionaryHolder = dictionaryHolder;
+        this.normalizer = normalizer;
+        this.resultCache = resultCache;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.fuzzy = fuzzy;
+        this.sharded = shard.isSharded();
+    }
     
     /**
      * Перевод одного слова с русского на английский
-     * НЕОПТИМАЛЬНОСТИ:
-     * 1. Чтение всего файла при каждом запросе
-     * 2. Сложные regex с lookaround
-     * 3. Тяжелая Unicode нормализация
+     * Словарь берется из уже построенного в памяти индекса (один снимок на запрос),
+     * поиск идет по заранее построенным структурам индекса без regex.
+     * Попадание в кэш результатов отдается сразу в потоке запроса,
+     * промах считается в CPU-пуле {@link TranslationExecutor}.
+     * Ответ - {@link Translation}: байты перевода берутся из индекса без копирования.
+     * Время запроса пишется в {@code translation.request}, подробный журнал - только на DEBUG.
      */
-    public Mono<String> translate(String russianWord) {
-        return Mono.fromCallable(() -> {
-            log.info("START translation for: {}", russianWord);
-            long startTime = System.currentTimeMillis();
-            
-            // 1. ТЯЖЕЛАЯ UNICODE НОРМАЛИЗАЦИЯ (делается каждый раз)
-            String normalizedWord = heavyUnicodeNormalization(russianWord);
-            
-            // 2. ЧТЕНИЕ ВСЕГО ФАЙЛА ПРИ КАЖДОМ ЗАПРОСЕ (вместо кэширования)
-            Map<String, String> dictionary = readEntireDictionaryEveryTime();
-            
-            // 3. СЛОЖНЫЙ REGEX ПОИСК (с lookaround - медленные операции)
-            String translation = complexRegexSearch(normalizedWord, dictionary);
-            
-            // 4. ДОПОЛНИТЕЛЬНЫЕ НЕНУЖНЫЕ ОПЕРАЦИИ
-            translation = unnecessaryPostProcessing(translation);
-            
-            long endTime = System.currentTimeMillis();
-            log.info("END translation for {}: {} (took {} ms)", 
-                russianWord, translation, endTime - startTime);
-            
-            return translation;
-        }).subscribeOn(Schedulers.boundedElastic()); // Выполняем в отдельном потоке
+    public Mono<Translation> translate(String russianWord) {
+        return translate(russianWord, false);
     }
     
     /**
-     * Пакетный перевод слов
-     * НЕОПТИМАЛЬНОСТИ:
-     * 1. Обработка каждого слова отдельно (нет группировки)
-     * 2. Многократная сортировка
-     * 3. Дублирующие преобразования
+     * Перевод с поиском по опечаткам, если {@code fuzzy}: без точного ключа сначала ищется
+     * ближайший ключ в пределах {@link FuzzyProperties#getMaxDistance()} правок, и только потом
+     * слово внутри ключа и подстрока.
      */
-    public Flux<String> translateBatch(List<String> words) {
-        log.info("Starting batch translation of {} words", words.size());
-        
-        return Flux.fromIterable(words)
-            // НЕОПТИМАЛЬНО: flatMap создает много потоков
-            .flatMap(word -> translate(word))
-            .collectList()
-            .flatMapMany(translations -> {
-                // НЕОПТИМАЛЬНО: Создаем временный список
-                List<String> tempList = new ArrayList<>(translations);
-                
-                // НЕОПТИМАЛЬНО: Сортируем (хотя порядок не важен)
-                Collections.sort(tempList);
-                
-                // НЕОПТИМАЛЬНО: Еще раз сортируем в обратном порядке
-                tempList.sort(Collections.reverseOrder());
-                
-                // НЕОПТИМАЛЬНО: Убираем дубликаты (хотя их не должно быть)
-                Set<String> uniqueSet = new HashSet<>(tempList);
-                List<String> uniqueList = new ArrayList<>(uniqueSet);
-                
-                // НЕОПТИМАЛЬНО: Снова сортируем
-                Collections.sort(uniqueList);
-                
-                return Flux.fromIterable(uniqueList);
-            })
-            .map(String::toUpperCase)  // НЕОПТИМАЛЬНО: Преобразование
-            .map(String::toLowerCase)  // НЕОПТИМАЛЬНО: И обратное преобразование
-            .distinct()                // НЕОПТИМАЛЬНО: Опять убираем дубликаты
-            .sort();                   // НЕОПТИМАЛЬНО: Снова сортируем
+    public Mono<Translation> translate(String russianWord, boolean fuzzy) {
+        BiFunction<String, DictionaryIndex, Translation> loader =
+            fuzzy ? this::translateFuzzyUncached : this::translateUncached;
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            // Текущий снимок словаря (построен при старте, подменяется при перезагрузке)
+            DictionaryIndex dictionary = dictionaryHolder.current();
+            Translation cached = resultCache.getIfPresent(russianWord, fuzzy, dictionary);
+            if (cached != null) {
+                metrics.recordRequest(true, start);
+                return Mono.just(cached);
+            }
+            
+            return executor.execute(() -> resultCache.compute(russianWord, fuzzy, dictionary, loader))
+                .doOnSuccess(translation -> {
+                    metrics.recordRequest(false, start);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Translated {} -> {} in {} us", russianWord, translation,
+                            (System.nanoTime() - start) / 1000);
+                    }
+                });
+        });
     }
     
-    // ============================
-    // НЕОПТИМАЛЬНЫЕ МЕТОДЫ
-    // ============================
-    
     /**
-     * Тяжелая Unicode нормализация (NFKC форма)
-     * Это дорогая операция, которая выполняется каждый раз
+     * То же, что {@link #translate(String, boolean)}, обычным блокирующим вызовом - для режима
+     * виртуальных потоков: попадание отдается сразу, промах считается в потоке запроса.
      */
-    private String heavyUnicodeNormalization(String input) {
-        if (input == null || input.isEmpty()) {
-            return input;
+    public Translation translateBlocking(String russianWord, boolean fuzzy) {
+        long start = System.nanoTime();
+        DictionaryIndex dictionary = dictionaryHolder.current();
+        Translation cached = resultCache.getIfPresent(russianWord, fuzzy, dictionary);
+        if (cached != null) {
+            metrics.recordRequest(true, start);
+            return cached;
         }
-        
-        // Нормализация в форму NFKC (самая тяжелая)
-        String normalized = Normalizer.normalize(input, Normalizer.Form.NFKC);
-        
-        // Удаляем диакритические знаки (ненужно для русского)
-        normalized = normalized.replaceAll("\\p{M}", "");
-        
-        // Приводим к нижнему регистру
-        normalized = normalized.toLowerCase();
-        
-        // Убираем пробелы
-        normalized = normalized.trim();
-        
-        // НЕОПТИМАЛЬНО: Делаем еще раз то же самое
-        normalized = Normalizer.normalize(normalized, Normalizer.Form.NFKC);
-        normalized = normalized.toLowerCase();
-        normalized = normalized.trim();
-        
-        return normalized;
+        BiFunction<String, DictionaryIndex, Translation> loader =
+            fuzzy ? this::translateFuzzyUncached : this::translateUncached;
+        Translation translation = executor.call(() -> resultCache.compute(russianWord, fuzzy, dictionary, loader));
+        metrics.recordRequest(false, start);
+        if (log.isDebugEnabled()) {
+            log.debug("Translated {} -> {} in {} us", russianWord, translation, (System.nanoTime() - start) / 1000);
+        }
+        return translation;
     }
     
     /**
-     * Чтение всего файла словаря каждый раз
-     * Вместо того чтобы закешировать словарь в памяти
+     * Полный конвейер перевода без кэша: нормализация, поиск по индексу, сборка ответа.
+     * Каждая стадия пишется в {@code translation.stage}.
      */
-    private Map<String, String> readEntireDictionaryEveryTime() {
-        Map<String, String> dictionary = new HashMap<>();
-        
-        try {
-            // Чтение файла с диска при каждом запросе
-            ClassPathResource resource = new ClassPathResource("dictionary.txt");
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(resource.getInputStream(), "UTF-8")
-            );
-            
-            String line;
-            int lineCount = 0;
-            
-            while ((line = reader.readLine()) != null) {
-                lineCount++;
-                
-                // Пропускаем пустые строки и комментарии
-                if (line.trim().isEmpty() || line.startsWith("#")) {
-                    continue;
-                }
-                
-                // НЕОПТИМАЛЬНО: Применяем тяжелую нормализацию к каждой строке
-                line = heavyUnicodeNormalization(line);
-                
-                // Разделяем по знаку равенства
-                String[] parts = line.split("=", 2);
-                if (parts.length == 2) {
-                    String russian = heavyUnicodeNormalization(parts[0]); // Дублирование
-                    String english = heavyUnicodeNormalization(parts[1]); // Дублирование
-                    
-                    // НЕОПТИМАЛЬНО: Проверяем, нет ли уже такого ключа
-                    if (dictionary.containsKey(russian)) {
-                        // НЕОПТИМАЛЬНО: Логируем конфликт (медленно)
-                        log.warn("Duplicate key found: {}", russian);
-                    }
-                    
-                    dictionary.put(russian, english);
-                }
+    private Translation translateUncached(String russianWord, DictionaryIndex dictionary) {
+        return translateUncached(russianWord, dictionary, false);
+    }
+    
+    private Translation translateFuzzyUncached(String russianWord, DictionaryIndex dictionary) {
+        return translateUncached(russianWord, dictionary, true);
+    }
+    
+    private Translation translateUncached(String russianWord, DictionaryIndex dictionary, boolean fuzzy) {
+        return lookup(russianWord, dictionary, normalizer, fuzzy);
+    }
+    
+    /**
+     * Тот же конвейер для словаря любой пары языков с нормализатором ее письменности.
+     */
+    Translation lookup(String word, DictionaryIndex dictionary, TextNormalizer normalizer, boolean fuzzy) {
+        long start = System.nanoTime();
+        
+        // 1. UNICODE НОРМАЛИЗАЦИЯ (быстрый путь для уже нормализованных слов)
+        String normalizedWord = normalizer.normalize(word);
+        start = metrics.record(Stage.NORMALIZE, start);
+        
+        // 2. ПОИСК ПО ИНДЕКСУ: точный ключ, ключ с опечаткой (по запросу, если точного нет),
+        // затем слово внутри ключа и подстрока
+        int exact = dictionary.exactEntry(normalizedWord);
+        start = metrics.record(Stage.DICTIONARY, start);
+        MatchKind match = MatchKind.FUZZY;
+        int entry = DictionaryIndex.NOT_FOUND;
+        if (exact == DictionaryIndex.NOT_FOUND && fuzzy) {
+            entry = dictionary.fuzzyEntry(normalizedWord, maxDistance(normalizedWord));
+            start = metrics.record(Stage.FUZZY, start);
+        }
+        if (entry == DictionaryIndex.NOT_FOUND) {
+            // Как в прежнем переборе: раньше стоящий ключ со словом внутри обгоняет точный ключ
+            entry = dictionary.tokenEntry(normalizedWord);
+            match = entry != DictionaryIndex.NOT_FOUND && entry == exact && !dictionary.shadowedElsewhere(entry)
+                ? MatchKind.EXACT
+                : MatchKind.TOKEN;
+            if (entry == DictionaryIndex.NOT_FOUND) {
+                match = MatchKind.SUBSTRING;
+                entry = dictionary.substringEntry(normalizedWord);
             }
-            
-            reader.close();
-            log.info("Dictionary loaded: {} lines, {} entries", lineCount, dictionary.size());
-            
-            // НЕОПТИМАЛЬНО: Создаем временную копию мапы (бесполезно)
-            Map<String, String> tempMap = new HashMap<>(dictionary);
-            dictionary.clear();
-            dictionary.putAll(tempMap);
-            
-        } catch (Exception e) {
-            log.error("Error reading dictionary file", e);
+            start = metrics.record(Stage.MATCH, start);
         }
         
-        return dictionary;
+        // 3. ОТВЕТ: перевод в индексе уже нормализован и закодирован в UTF-8,
+        // префикс и суффикс добавляются при записи в буфер ответа
+        Translation result = entry == DictionaryIndex.NOT_FOUND
+            ? Translation.NOT_FOUND
+            : Translation.of(match, entry, dictionary.rank(entry), dictionary.encodedValue(entry));
+        metrics.record(Stage.POST_PROCESS, start);
+        return result;
     }
     
     /**
-     * Поиск перевода с использованием сложных regex
-     * Использует lookaround выражения, которые очень медленные
+     * Допустимое число правок: короткие слова исправляются не больше чем одной.
      */
-    private String complexRegexSearch(String word, Map<String, String> dictionary) {
-        // НЕОПТИМАЛЬНО: Создаем сложный regex с lookaround
-        // (?<=^| ) - positive lookbehind (начало строки или пробел)
-        // (?= |$) - positive lookahead (пробел или конец строки)
-        String regex = "(?<=^|\\s)" + Pattern.quote(word) + "(?=\\s|$)";
-        Pattern pattern = Pattern.compile(regex);
-        
-        String translation = null;
-        
-        // НЕОПТИМАЛЬНО: Итерируем по всей мапе (O(n) вместо O(1))
-        for (Map.Entry<String, String> entry : dictionary.entrySet()) {
-            String key = entry.getKey();
-            
-            // Проверяем точное совпадение с lookaround
-            Matcher matcher = pattern.matcher(key);
-            if (matcher.find()) {
-                translation = entry.getValue();
-                break;
-            }
-            
-            // НЕОПТИМАЛЬНО: Дополнительная проверка с другим regex
-            Pattern additionalPattern = Pattern.compile(".*" + word + ".*");
-            Matcher additionalMatcher = additionalPattern.matcher(key);
-            if (additionalMatcher.matches()) {
-                translation = entry.getValue();
-                // НЕОПТИМАЛЬНО: Не выходим, продолжаем искать
+    private int maxDistance(String normalizedWord) {
+        int length = normalizedWord.codePointCount(0, normalizedWord.length());
+        return length <= fuzzy.getShortWordLength() ? Math.min(1, fuzzy.getMaxDistance()) : fuzzy.getMaxDistance();
+    }
+    
+    /**
+     * Пакетный перевод (GET /batch) блокирующим вызовом - для режима виртуальных потоков.
+     */
+    public List<String> translateBatchBlocking(List<String> words) {
+        log.debug("Starting blocking batch translation of {} words", words.size());
+        return executor.call(() -> {
+            DictionaryIndex dictionary = dictionaryHolder.current();
+            Set<String> translations = new TreeSet<>();
+            for (String word : words) {
+                translations.add(batchText(resultCache.get(word, false, dictionary, this::translateUncached).text()));
             }
-        }
-        
-        // НЕОПТИМАЛЬНО: Если не нашли, ищем через stream (еще медленнее)
-        if (translation == null) {
-            translation = dictionary.entrySet().stream()
-                .filter(e -> e.getKey().contains(word))
-                .map(Map.Entry::getValue)
-                .findFirst()
-                .orElse("Translation not found");
-        }
-        
-        return translation;
+            return List.copyOf(translations);
+        });
+    }
+    
+    private static String batchText(String text) {
+        return Translation.NOT_FOUND_TEXT.equals(text) ? BATCH_NOT_FOUND_TEXT : text;
     }
     
     /**
-     * Ненужная постобработка результата
-     * ИСПРАВЛЕНО: убрана сортировка букв, которая ломала слова
+     * Заполняет кэш результатов переводами слов по текущему снимку словаря (прогрев после старта).
+     * Промахи кэша при этом не учитываются.
      */
-    private String unnecessaryPostProcessing(String input) {
-        if (input == null || input.equals("Translation not found")) {
-            return input;
+    public void warmUp(Collection<String> words) {
+        DictionaryIndex dictionary = dictionaryHolder.current();
+        for (String word : words) {
+            resultCache.compute(word, false, dictionary, this::translateUncached);
         }
+    }
+    
+    /**
+     * Пакетный перевод слов (GET /batch): отсортированный список уникальных переводов.
+     * Все слова проходят через {@link #translateStream} за один проход по одному снимку словаря,
+     * сортировка и удаление дубликатов делаются один раз в TreeSet.
+     */
+    public Flux<String> translateBatch(List<String> words) {
+        log.debug("Starting batch translation of {} words", words.size());
         
-        // НЕОПТИМАЛЬНО: Разбиваем строку на массив символов
-        char[] chars = input.toCharArray();
-        
-        // НЕОПТИМАЛЬНО: Создаем список символов
-        List<Character> charList = new ArrayList<>();
-        for (char c : chars) {
-            charList.add(c);
-        }
-        
-        // ИСПРАВЛЕНО: Убрана сортировка букв, которая ломала слова
-        // Collections.sort(charList);  ← ЭТУ СТРОКУ УДАЛИЛИ
-        
-        // НЕОПТИМАЛЬНО: Собираем обратно в строку
-        StringBuilder sb = new StringBuilder();
-        for (Character c : charList) {
-            sb.append(c);
+        return translateStream(Flux.fromIterable(words))
+            .map(translation -> batchText(translation.translation()))
+            .collect(TreeSet<String>::new, Set::add)
+            .flatMapMany(Flux::fromIterable);
+    }
+    
+    /**
+     * Потоковый перевод (POST /batch): по одному результату на каждое входное слово, в порядке входа.
+     * Весь поток переводится по одному снимку словаря; повторяющиеся слова вычисляются один раз
+     * и дальше берутся из кэша результатов (TinyLFU не дает редким словам большого пакета
+     * вытеснить горячие). Ничего не накапливается, поэтому память не зависит от размера пакета,
+     * а скорость чтения входа определяется тем, как быстро клиент забирает ответ.
+     */
+    public Flux<BatchTranslation> translateStream(Flux<String> words) {
+        return Flux.defer(() -> {
+            DictionaryIndex dictionary = dictionaryHolder.current();
+            return executor.executeEach(words, word ->
+                batchTranslation(word, resultCache.get(word, false, dictionary, this::translateUncached)));
+        });
+    }
+    
+    /**
+     * В шардированном режиме строка пакета несет вид совпадения и rank для слияния на клиенте.
+     */
+    private BatchTranslation batchTranslation(String word, Translation translation) {
+        if (!sharded) {
+            return new BatchTranslation(word, translation.text());
         }
-        String result = sb.toString();
-        
-        // НЕОПТИМАЛЬНО: Еще раз нормализуем
-        result = heavyUnicodeNormalization(result);
-        
-        // НЕОПТИМАЛЬНО: Добавляем префикс и суффикс
-        result = "translated: " + result + " :end";
-        
-        return result;
+        return translation.isFound()
+            ? new BatchTranslation(word, translation.text(), translation.match(), translation.rank())
+            : new BatchTranslation(word, translation.text(), MatchKind.NONE, null);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.example.foreverrip.config;
+
+import com.example.foreverrip.controller.VirtualThreadsConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.assertj.AssertableApplicationContext;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Ровно один набор бинов режима при любом написании {@code translation.execution.mode}:
+ * раньше {@code VIRTUAL_THREADS} не подходил ни под одно условие, и контроллеров не было вовсе.
+ */
+class ConditionalOnExecutionModeTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+        .withUserConfiguration(ReactiveBeans.class, VirtualThreadsBeans.class, VirtualThreadsConfiguration.class);
+
+    @Test
+    void reactiveByDefault() {
+        runner.run(context -> assertMode(context, true));
+    }
+
+    @Test
+    void reactiveInAnySpelling() {
+        for (String value : new String[] {"reactive", "REACTIVE", "Reactive"}) {
+            runner.withPropertyValues("translation.execution.mode=" + value)
+                .run(context -> assertMode(context, true));
+        }
+    }
+
+    @Test
+    void virtualThreadsInAnySpelling() {
+        for (String value : new String[] {"virtual-threads", "VIRTUAL_THREADS", "virtual_threads", "VirtualThreads"}) {
+            runner.withPropertyValues("translation.execution.mode=" + value)
+                .run(context -> assertMode(context, false));
+        }
+    }
+
+    private static void assertMode(AssertableApplicationContext context, boolean reactive) {
+        assertEquals(reactive ? 1 : 0, context.getBeansOfType(ReactiveBeans.class).size());
+        assertEquals(reactive ? 0 : 1, context.getBeansOfType(VirtualThreadsBeans.class).size());
+        assertEquals(reactive ? 0 : 1, context.getBeansOfType(VirtualThreadsConfiguration.class).size());
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnExecutionMode(ExecutionProperties.Mode.REACTIVE)
+    static class ReactiveBeans {
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnExecutionMode(ExecutionProperties.Mode.VIRTUAL_THREADS)
+    static class VirtualThreadsBeans {
+    }
+}
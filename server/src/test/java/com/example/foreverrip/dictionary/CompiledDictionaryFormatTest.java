@@ -0,0 +1,198 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.text.Script;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Формат {@link CompiledDictionaryWriter}: файл после записи и открытия через {@link MappedDictionaryIndex}
+ * отвечает так же, как {@link InMemoryDictionaryIndex} из тех же записей; файлы без нечеткого поиска
+ * читаются; обрезанные и чужие файлы отвергаются при открытии.
+ */
+class CompiledDictionaryFormatTest {
+
+    private static final String[] KEYS = {
+        "большая собака", "собака", "кот", "чёрный кот", "кот учёный", "котёнок",
+        "кошка", "дикая кошка", "ко", "синий\tкит", "кит", "new york", "york", "в", "рыба-меч", "ёж",
+    };
+
+    private static final String[] WORDS = {
+        "большая собака", "собака", "кот", "кошка", "ко", "к", "о", "ш", "кош", "отё", "york", "or",
+        "синий", "кит", "меч", "рыба", "ёж", "ё", "в", "кот уч", "жираф", "кот кот", "",
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mappedIndexAnswersLikeInMemoryIndex() throws IOException {
+        LinkedHashMap<String, String> entries = entries();
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries, 42L, file);
+
+        DictionaryIndex expected = new InMemoryDictionaryIndex(new LinkedHashMap<>(entries), null, "test", 1,
+            System.nanoTime());
+        MappedDictionaryIndex mapped = MappedDictionaryIndex.open(file, 1);
+
+        assertTrue(MappedDictionaryIndex.isCompiled(file));
+        assertEquals(42L, mapped.sourceChecksum());
+        assertEquals(expected.size(), mapped.size());
+        for (String word : WORDS) {
+            assertSame(expected, expected.exactEntry(word), mapped, mapped.exactEntry(word), "exact: " + word);
+            assertSame(expected, expected.tokenEntry(word), mapped, mapped.tokenEntry(word), "token: " + word);
+            assertSame(expected, expected.substringEntry(word), mapped, mapped.substringEntry(word),
+                "substring: " + word);
+            assertSame(expected, expected.lookupEntry(word), mapped, mapped.lookupEntry(word), "lookup: " + word);
+        }
+        // Ранги - порядок строк исходного файла, хотя записи в файле отсортированы по байтам ключа
+        for (String key : KEYS) {
+            int entry = mapped.exactEntry(key);
+            int expectedEntry = expected.exactEntry(key);
+            assertEquals(expected.rank(expectedEntry), mapped.rank(entry), key);
+            assertEquals(expected.value(expectedEntry), mapped.value(entry), key);
+            assertEquals(expected.encodedValue(expectedEntry), mapped.encodedValue(entry), key);
+        }
+        assertEquals("кошка", mapped.key(mapped.fuzzyEntry("кошкв", 1)));
+    }
+
+    @Test
+    void scriptsAreRecordedInHeader() throws IOException {
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries(), 0, Script.GREEK, Script.LATIN, file);
+
+        MappedDictionaryIndex mapped = MappedDictionaryIndex.open(file, 1);
+
+        assertEquals(Script.GREEK, mapped.fromScript());
+        assertEquals(Script.LATIN, mapped.toScript());
+        assertEquals(CompiledDictionaryFormat.normalizationFingerprint(Script.GREEK, Script.LATIN),
+            mapped.normalizationFingerprint());
+        assertTrue(mapped.checkScripts(Script.GREEK, Script.LATIN));
+        assertThrows(IOException.class, () -> mapped.checkScripts(Script.LATIN, Script.LATIN));
+
+        // Файл без письменностей (как до версии 4) проверить нечем
+        CompiledDictionaryWriter.write(entries(), 0, file);
+        MappedDictionaryIndex unknown = MappedDictionaryIndex.open(file, 1);
+        assertNull(unknown.fromScript());
+        assertNull(unknown.toScript());
+        assertFalse(unknown.checkScripts(Script.LATIN, Script.LATIN));
+    }
+
+    @Test
+    void emptyDictionaryRoundTrips() throws IOException {
+        Path file = dir.resolve("empty.ripd");
+        CompiledDictionaryWriter.write(new LinkedHashMap<>(), 0, file);
+
+        MappedDictionaryIndex mapped = MappedDictionaryIndex.open(file, 1);
+
+        assertEquals(0, mapped.size());
+        assertEquals(DictionaryIndex.NOT_FOUND, mapped.lookupEntry("кот"));
+        assertEquals(DictionaryIndex.NOT_FOUND, mapped.fuzzyEntry("кот", 1));
+    }
+
+    @Test
+    void fileWithoutFuzzySectionsIsReadable() throws IOException {
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries(), 0, file);
+        patchInt(file, CompiledDictionaryFormat.H_FORMAT_VERSION,
+            CompiledDictionaryFormat.FORMAT_VERSION_WITHOUT_FUZZY);
+
+        MappedDictionaryIndex mapped = MappedDictionaryIndex.open(file, 1);
+
+        assertEquals(DictionaryIndex.NOT_FOUND, mapped.fuzzyEntry("кошкв", 1));
+        assertEquals("кошка", mapped.key(mapped.exactEntry("кошка")));
+        assertEquals("кот учёный", mapped.key(mapped.tokenEntry("учёный")));
+        assertEquals("дикая кошка", mapped.key(mapped.substringEntry("кош")));
+    }
+
+    @Test
+    void unsupportedFormatVersionIsRejected() throws IOException {
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries(), 0, file);
+        patchInt(file, CompiledDictionaryFormat.H_FORMAT_VERSION, CompiledDictionaryFormat.FORMAT_VERSION + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> MappedDictionaryIndex.open(file, 1));
+    }
+
+    @Test
+    void textFileIsNotCompiled() throws IOException {
+        Path file = dir.resolve("dictionary.txt");
+        Files.writeString(file, "кот=cat\nсобака=dog\n", StandardCharsets.UTF_8);
+
+        assertFalse(MappedDictionaryIndex.isCompiled(file));
+        assertThrows(IllegalArgumentException.class, () -> MappedDictionaryIndex.open(file, 1));
+    }
+
+    @Test
+    void badMagicIsRejected() throws IOException {
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries(), 0, file);
+        patchInt(file, CompiledDictionaryFormat.H_MAGIC, 0x12345678);
+
+        assertFalse(MappedDictionaryIndex.isCompiled(file));
+        assertThrows(IllegalArgumentException.class, () -> MappedDictionaryIndex.open(file, 1));
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries(), 0, file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        for (int length : new int[] {2, CompiledDictionaryFormat.HEADER_SIZE - 1, CompiledDictionaryFormat.HEADER_SIZE,
+                bytes.length / 2, bytes.length - 1}) {
+            Path truncated = dir.resolve("truncated-" + length + ".ripd");
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertThrows(IllegalArgumentException.class, () -> MappedDictionaryIndex.open(truncated, 1),
+                "length " + length);
+        }
+    }
+
+    @Test
+    void sectionOffsetOutsideFileIsRejected() throws IOException {
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries(), 0, file);
+        patchInt(file, CompiledDictionaryFormat.H_GRAMS, Integer.MAX_VALUE - 8);
+
+        assertThrows(IllegalArgumentException.class, () -> MappedDictionaryIndex.open(file, 1));
+    }
+
+    private static void assertSame(DictionaryIndex expectedIndex, int expectedEntry,
+                                   DictionaryIndex actualIndex, int actualEntry, String message) {
+        assertEquals(key(expectedIndex, expectedEntry), key(actualIndex, actualEntry), message);
+        if (expectedEntry != DictionaryIndex.NOT_FOUND) {
+            assertEquals(expectedIndex.rank(expectedEntry), actualIndex.rank(actualEntry), message);
+        }
+    }
+
+    private static String key(DictionaryIndex index, int entry) {
+        return entry == DictionaryIndex.NOT_FOUND ? null : index.key(entry);
+    }
+
+    private static LinkedHashMap<String, String> entries() {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        for (String key : KEYS) {
+            entries.put(key, "перевод " + entries.size());
+        }
+        return entries;
+    }
+
+    private static void patchInt(Path file, int offset, int value) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(offset, value);
+        Files.write(file, bytes);
+    }
+}
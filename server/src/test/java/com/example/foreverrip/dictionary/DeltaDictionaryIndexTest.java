@@ -0,0 +1,568 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.UpdatesProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Изменения через API ({@link DictionaryUpdates}) поверх базового индекса: видимость в
+ * {@link DeltaDictionaryIndex} до и после слияния и перезагрузки, повтор журнала после перезапуска.
+ */
+class DeltaDictionaryIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicReference<DictionaryIndex> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong(1);
+    private DictionaryUpdates updates;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (updates != null) {
+            updates.close();
+        }
+    }
+
+    @Test
+    void addedKeysAreFoundByTokenAndSubstring() throws IOException {
+        open(base());
+        updates.put("синий кит", "blue whale");
+
+        assertFound("синий кит", index().tokenEntry("кит"));
+        assertFound("синий кит", index().substringEntry("ний"));
+        assertEquals(DictionaryIndex.NOT_FOUND, index().tokenEntry("ний"));
+
+        updates.compact();
+        assertTrue(index().base() instanceof InMemoryDictionaryIndex);
+        assertFound("синий кит", index().tokenEntry("кит"));
+
+        // После слияния у базового индекса свои ранги: добавленный ключ сравнивается уже с ними
+        updates.put("лошадь", "horse");
+        assertFound("лошадь", index().substringEntry("ошад"));
+        assertFound("лошадь", index().tokenEntry("лошадь"));
+        assertEquals(DictionaryIndex.NOT_FOUND, index().substringEntry("жираф"));
+    }
+
+    @Test
+    void putAndDeleteAreVisibleImmediately() throws IOException {
+        open(base());
+        DictionaryIndex snapshot = index();
+
+        assertEquals(DictionaryUpdate.Outcome.UPDATED, updates.put("кошка", "kitty").outcome());
+        assertEquals("kitty", snapshot.value(snapshot.exactEntry("кошка")));
+        assertEquals(DictionaryUpdate.Outcome.UNCHANGED, updates.put("кошка", "kitty").outcome());
+
+        int dog = snapshot.exactEntry("собака");
+        assertEquals(DictionaryUpdate.Outcome.DELETED, updates.delete("собака").outcome());
+        assertEquals(DictionaryIndex.NOT_FOUND, snapshot.exactEntry("собака"));
+        assertFalse(snapshot.isLive(dog));
+        assertEquals(DictionaryUpdate.Outcome.NOT_FOUND, updates.delete("собака").outcome());
+        // Удаленный ключ больше не находится внутри других: следующий по порядку - "большая собака"
+        assertFound("большая собака", snapshot.substringEntry("собак"));
+        assertFound("большая собака", snapshot.tokenEntry("собака"));
+
+        assertEquals(DictionaryUpdate.Outcome.CREATED, updates.put("собака", "hound").outcome());
+        assertEquals("hound", snapshot.value(snapshot.exactEntry("собака")));
+    }
+
+    @Test
+    void addedKeysRankAfterBaseKeys() throws IOException {
+        open(base());
+        updates.put("кот", "tomcat");
+
+        // "кот" раньше "кошка" только по алфавиту; по порядку в словаре добавленный - последний,
+        // и из подстрок побеждает он
+        assertFound("кот", index().substringEntry("ко"));
+        assertFound("кот", index().fuzzyEntry("кат", 1));
+        assertTrue(index().rank(index().exactEntry("кот")) > index().rank(index().exactEntry("лиса")));
+    }
+
+    @Test
+    void compactionKeepsChangesAndRanks() throws IOException {
+        open(base());
+        updates.put("синий кит", "blue whale");
+        updates.delete("кошка");
+        updates.put("собака", "hound");
+        DeltaDictionaryIndex before = index();
+
+        updates.compact();
+
+        DeltaDictionaryIndex after = index();
+        assertTrue(after != before);
+        assertEquals(0, updates.pending());
+        assertEquals(DictionaryIndex.NOT_FOUND, after.exactEntry("кошка"));
+        assertEquals("hound", after.value(after.exactEntry("собака")));
+        assertEquals("blue whale", after.value(after.exactEntry("синий кит")));
+        assertEquals(4, after.base().size());
+        assertTrue(after.rank(after.exactEntry("синий кит")) > after.rank(after.exactEntry("лиса")));
+    }
+
+    @Test
+    void changesMadeDuringCompactionMoveToNewSnapshot() throws IOException {
+        CountingIndex base = new CountingIndex(base());
+        open(base);
+        updates.put("синий кит", "blue whale");
+        base.onKeyRead = () -> {
+            try {
+                updates.put("волк", "wolf");
+                updates.delete("собака");
+                updates.put("синий кит", "blue whale 2");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        updates.compact();
+
+        // Слито только замороженное; пришедшее за время слияния - в верхнем слое нового снимка
+        DeltaDictionaryIndex index = index();
+        assertEquals(3, updates.pending());
+        assertEquals("blue whale", index.base().value(index.base().exactEntry("синий кит")));
+        assertEquals(DictionaryIndex.NOT_FOUND, index.base().exactEntry("волк"));
+        assertEquals("blue whale 2", index.value(index.exactEntry("синий кит")));
+        assertEquals("wolf", index.value(index.exactEntry("волк")));
+        assertEquals(DictionaryIndex.NOT_FOUND, index.exactEntry("собака"));
+        assertFound("волк", index.tokenEntry("волк"));
+
+        // Они же - в журнале после заморозки: переживают перезапуск
+        updates.close();
+        updates = null;
+        open(base());
+        assertEquals("blue whale 2", index().value(index().exactEntry("синий кит")));
+        assertEquals("wolf", index().value(index().exactEntry("волк")));
+        assertEquals(DictionaryIndex.NOT_FOUND, index().exactEntry("собака"));
+    }
+
+    @Test
+    void rebaseAppliesChangesToNewDictionary() throws IOException {
+        open(base());
+        updates.put("синий кит", "blue whale");
+        updates.compact();
+        updates.delete("лиса");
+        updates.put("кошка", "kitty");
+
+        updates.rebase(index(entries("кошка", "cat", "лиса", "fox", "волк", "wolf")));
+
+        DictionaryIndex index = index();
+        assertEquals("kitty", index.value(index.exactEntry("кошка")));
+        assertEquals("blue whale", index.value(index.exactEntry("синий кит")));
+        assertEquals("wolf", index.value(index.exactEntry("волк")));
+        assertEquals(DictionaryIndex.NOT_FOUND, index.exactEntry("лиса"));
+        assertEquals(DictionaryIndex.NOT_FOUND, index.exactEntry("собака"));
+    }
+
+    @Test
+    void compactionOverCompiledDictionaryStaysMapped() throws IOException {
+        MappedDictionaryIndex base = mapped(entries("кошка", "cat", "собака", "dog", "большая собака", "big dog",
+            "лиса", "fox"));
+        open(base);
+        updates.put("синий кит", "blue whale");
+        updates.delete("кошка");
+        updates.put("собака", "hound");
+
+        updates.compact();
+
+        DeltaDictionaryIndex index = index();
+        assertTrue(index.base() instanceof MappedDictionaryIndex);
+        assertEquals(base.source(), index.source());
+        assertEquals(DictionaryIndex.NOT_FOUND, index.exactEntry("кошка"));
+        assertEquals("hound", index.value(index.exactEntry("собака")));
+        assertEquals("blue whale", index.value(index.exactEntry("синий кит")));
+        assertFound("синий кит", index.tokenEntry("кит"));
+        assertFound("большая собака", index.tokenEntry("большая"));
+        // Ранги записей словаря сохраняются, добавленный ключ - после них
+        assertEquals(base.rank(base.exactEntry("лиса")), index.rank(index.exactEntry("лиса")));
+        assertTrue(index.rank(index.exactEntry("синий кит")) > index.rank(index.exactEntry("лиса")));
+
+        // Прежний слитый файл удаляется после следующего слияния
+        updates.put("волк", "wolf");
+        updates.compact();
+        assertEquals(List.of(dir.resolve(DeltaLog.MERGED + 2 + ".ripd")), mergedFiles());
+        assertEquals("wolf", index().value(index().exactEntry("волк")));
+
+        // После перезапуска файлы прошлого запуска не нужны: изменения снова накладываются на словарь
+        updates.close();
+        updates = null;
+        open(base);
+        assertEquals(1, mergedFiles().size());
+        assertEquals("blue whale", index().value(index().exactEntry("синий кит")));
+        assertEquals("wolf", index().value(index().exactEntry("волк")));
+    }
+
+    @Test
+    void rebaseForgetsChangesAlreadyInDictionary() throws IOException {
+        open(base());
+        updates.put("кошка", "kitty");
+        updates.put("синий кит", "blue whale");
+        updates.delete("лиса");
+        updates.compact();
+        assertEquals(3, updates.folded());
+
+        // Новый файл словаря уже содержит перевод "кошки" и не содержит "лисы"
+        LinkedHashMap<String, String> reloaded = entries("кошка", "kitty", "волк", "wolf");
+        updates.rebase(index(reloaded));
+
+        assertEquals(1, updates.folded());
+        assertEquals("blue whale", index().value(index().exactEntry("синий кит")));
+        assertEquals("kitty", index().value(index().exactEntry("кошка")));
+
+        updates.close();
+        updates = null;
+        open(index(reloaded));
+        assertEquals(1, updates.folded());
+        assertEquals("blue whale", index().value(index().exactEntry("синий кит")));
+        assertEquals(DictionaryIndex.NOT_FOUND, index().exactEntry("лиса"));
+    }
+
+    @Test
+    void logIsReplayedAfterRestartWithoutTruncatedTail() throws IOException {
+        open(base());
+        updates.put("синий кит", "blue whale");
+        updates.delete("кошка");
+        updates.put("лиса", "vixen");
+        updates.close();
+        updates = null;
+
+        // Сбой посреди последней записи: от нее остается только часть
+        try (FileChannel log = FileChannel.open(dir.resolve(DeltaLog.LOG), StandardOpenOption.WRITE)) {
+            log.truncate(log.size() - 3);
+        }
+
+        open(base());
+        DictionaryIndex index = index();
+        assertEquals("blue whale", index.value(index.exactEntry("синий кит")));
+        assertEquals(DictionaryIndex.NOT_FOUND, index.exactEntry("кошка"));
+        assertEquals("fox", index.value(index.exactEntry("лиса")));
+
+        // Журнал продолжается с конца последней целой записи
+        updates.put("волк", "wolf");
+        updates.close();
+        updates = null;
+        open(base());
+        index = index();
+        assertEquals("wolf", index.value(index.exactEntry("волк")));
+        assertEquals("blue whale", index.value(index.exactEntry("синий кит")));
+    }
+
+    @Test
+    void compactedChangesSurviveRestart() throws IOException {
+        open(base());
+        updates.put("синий кит", "blue whale");
+        updates.compact();
+        updates.put("кошка", "kitty");
+        updates.close();
+        updates = null;
+
+        open(base());
+        DictionaryIndex index = index();
+        assertEquals("blue whale", index.value(index.exactEntry("синий кит")));
+        assertEquals("kitty", index.value(index.exactEntry("кошка")));
+        assertNull(index.value(index.exactEntry("жираф")));
+    }
+
+    @Test
+    void deletedBestMatchesInLargeBaseAreReplacedWithoutScanningIt() throws IOException {
+        Random random = new Random(5);
+        LinkedHashMap<String, String> entries = randomEntries(random, 50_000);
+        assertDeletedBestMatchesAreReplaced(random, entries, index(entries));
+    }
+
+    @Test
+    void deletedBestMatchesInLargeMappedBaseAreReplacedWithoutScanningIt() throws IOException {
+        Random random = new Random(6);
+        LinkedHashMap<String, String> entries = randomEntries(random, 20_000);
+        Path file = dir.resolve("base.ripd");
+        CompiledDictionaryWriter.write(entries, 0, file);
+        assertDeletedBestMatchesAreReplaced(random, entries, MappedDictionaryIndex.open(file, 1));
+    }
+
+    /**
+     * Ответы после удалений совпадают с перебором живых ключей, а поиск читает лишь малую часть
+     * ключей базового индекса, даже когда его лучшая запись удалена.
+     */
+    private void assertDeletedBestMatchesAreReplaced(Random random, LinkedHashMap<String, String> entries,
+                                                     DictionaryIndex index) throws IOException {
+        CountingIndex base = new CountingIndex(index);
+        open(base);
+        List<String> keys = new ArrayList<>(entries.keySet());
+        Set<String> deleted = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            String key = randomKey(random);
+            if (!entries.containsKey(key)) {
+                updates.put(key, "added");
+                keys.add(key);
+            }
+        }
+
+        for (int probe = 0; probe < 100; probe++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            int start = random.nextInt(key.length());
+            String word = key.substring(start, Math.min(key.length(), start + 1 + random.nextInt(6))).strip();
+            if (word.isEmpty()) {
+                continue;
+            }
+            for (int round = 0; round < 3; round++) {
+                // Первый поиск короткого слова один раз собирает его список: его не считаем
+                index().tokenEntry(word);
+                index().substringEntry(word);
+
+                base.keyReads = 0;
+                int token = index().tokenEntry(word);
+                int substring = index().substringEntry(word);
+                int fuzzy = index().fuzzyEntry(word + "ы", 1);
+                assertTrue(base.keyReads < 1_000, word + ": " + base.keyReads + " keys read");
+
+                assertEquals(expected(keys, deleted, k -> DictionaryMatcher.hasTokenOccurrence(k, word), true),
+                    keyOf(token), "token: " + word);
+                assertEquals(expected(keys, deleted, k -> k.contains(word), false), keyOf(substring),
+                    "substring: " + word);
+                assertEquals(expectedFuzzy(keys, deleted, word + "ы", 1), keyOf(fuzzy), "fuzzy: " + word);
+
+                // Удаляем лучший ответ: следующий поиск должен найти следующий по порядку
+                int best = round % 2 == 0 ? token : substring;
+                if (best == DictionaryIndex.NOT_FOUND) {
+                    best = fuzzy;
+                }
+                if (best == DictionaryIndex.NOT_FOUND) {
+                    break;
+                }
+                String bestKey = index().key(best);
+                updates.delete(bestKey);
+                deleted.add(bestKey);
+            }
+        }
+    }
+
+    private String keyOf(int entry) {
+        return entry == DictionaryIndex.NOT_FOUND ? null : current.get().key(entry);
+    }
+
+    /**
+     * Прежний перебор по живым ключам в порядке словаря: первый или последний подходящий.
+     */
+    private static String expected(List<String> keys, Set<String> deleted, Predicate<String> matches,
+                                   boolean first) {
+        String found = null;
+        for (String key : keys) {
+            if (!deleted.contains(key) && matches.test(key)) {
+                if (first) {
+                    return key;
+                }
+                found = key;
+            }
+        }
+        return found;
+    }
+
+    private static String expectedFuzzy(List<String> keys, Set<String> deleted, String word, int maxDistance) {
+        String found = null;
+        int bestDistance = maxDistance + 1;
+        for (String key : keys) {
+            int distance = FuzzyMatcher.distance(word, key, maxDistance);
+            if (!deleted.contains(key) && distance < bestDistance) {
+                found = key;
+                bestDistance = distance;
+            }
+        }
+        return found;
+    }
+
+    private static LinkedHashMap<String, String> randomEntries(Random random, int size) {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        while (entries.size() < size) {
+            entries.putIfAbsent(randomKey(random), "v" + entries.size());
+        }
+        return entries;
+    }
+
+    /**
+     * Ключи из слогов: много общих слов и n-грамм, в том числе коротких.
+     */
+    private static String randomKey(Random random) {
+        String[] syllables = {"ка", "ко", "ту", "ма", "ри", "сон", "лес", "от", "а", "р"};
+        StringBuilder key = new StringBuilder();
+        int words = 1 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                key.append(' ');
+            }
+            int length = 1 + random.nextInt(3);
+            for (int i = 0; i < length; i++) {
+                key.append(syllables[random.nextInt(syllables.length)]);
+            }
+        }
+        return key.toString();
+    }
+
+    private void open(DictionaryIndex base) throws IOException {
+        UpdatesProperties properties = new UpdatesProperties();
+        properties.setDirectory(dir);
+        properties.setSync(false);
+        updates = new DictionaryUpdates(properties, current, versions::incrementAndGet, (previous, next) -> { },
+            new SimpleMeterRegistry());
+        current.set(updates.open(base));
+    }
+
+    private MappedDictionaryIndex mapped(LinkedHashMap<String, String> entries) throws IOException {
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries, 0, file);
+        return MappedDictionaryIndex.open(file, 1);
+    }
+
+    private List<Path> mergedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(DeltaLog.MERGED)).sorted().toList();
+        }
+    }
+
+    private DeltaDictionaryIndex index() {
+        return (DeltaDictionaryIndex) current.get();
+    }
+
+    private void assertFound(String key, int entry) {
+        assertTrue(entry != DictionaryIndex.NOT_FOUND, "expected " + key);
+        assertEquals(key, current.get().key(entry));
+    }
+
+    private static DictionaryIndex base() {
+        return index(entries("кошка", "cat", "собака", "dog", "большая собака", "big dog", "лиса", "fox"));
+    }
+
+    private static LinkedHashMap<String, String> entries(String... keysAndValues) {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            entries.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return entries;
+    }
+
+    private static DictionaryIndex index(LinkedHashMap<String, String> entries) {
+        return new InMemoryDictionaryIndex(entries, null, "test", 1, System.nanoTime());
+    }
+
+    /**
+     * Базовый индекс, который считает чтения ключей: перебор словаря читает их все.
+     * {@code onKeyRead} выполняется один раз при следующем чтении ключа (например, посреди слияния).
+     */
+    private static final class CountingIndex implements DictionaryIndex {
+
+        private final DictionaryIndex index;
+        int keyReads;
+        Runnable onKeyRead;
+
+        CountingIndex(DictionaryIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public int exactEntry(String normalizedWord) {
+            return index.exactEntry(normalizedWord);
+        }
+
+        @Override
+        public int tokenEntry(String normalizedWord) {
+            return index.tokenEntry(normalizedWord);
+        }
+
+        @Override
+        public int substringEntry(String normalizedWord) {
+            return index.substringEntry(normalizedWord);
+        }
+
+        @Override
+        public int fuzzyEntry(String normalizedWord, int maxDistance) {
+            return index.fuzzyEntry(normalizedWord, maxDistance);
+        }
+
+        @Override
+        public int fuzzyEntry(String normalizedWord, int maxDistance, IntPredicate accept) {
+            return index.fuzzyEntry(normalizedWord, maxDistance, accept);
+        }
+
+        @Override
+        public IntBuffer candidateEntries(String normalizedWord) {
+            return index.candidateEntries(normalizedWord);
+        }
+
+        @Override
+        public int rank(int entry) {
+            return index.rank(entry);
+        }
+
+        @Override
+        public String key(int entry) {
+            keyReads++;
+            Runnable action = onKeyRead;
+            onKeyRead = null;
+            if (action != null) {
+                action.run();
+            }
+            return index.key(entry);
+        }
+
+        @Override
+        public String value(int entry) {
+            return index.value(entry);
+        }
+
+        @Override
+        public ByteBuffer encodedValue(int entry) {
+            return index.encodedValue(entry);
+        }
+
+        @Override
+        public int size() {
+            return index.size();
+        }
+
+        @Override
+        public String source() {
+            return index.source();
+        }
+
+        @Override
+        public long version() {
+            return index.version();
+        }
+
+        @Override
+        public Instant builtAt() {
+            return index.builtAt();
+        }
+
+        @Override
+        public Duration buildTime() {
+            return index.buildTime();
+        }
+    }
+}
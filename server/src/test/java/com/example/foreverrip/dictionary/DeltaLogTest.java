@@ -0,0 +1,150 @@
+package com.example.foreverrip.dictionary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Восстановление {@link DeltaLog} после сбоя: недописанная и поврежденная записи, неудачное слияние,
+ * одновременно оставшиеся файлы слитых изменений, замороженного и текущего журналов.
+ */
+class DeltaLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tornWriteIsDroppedAndLogContinuesAfterLastWholeRecord() throws IOException {
+        DeltaLog log = open();
+        log.append("кошка", "cat");
+        log.append("собака", "dog");
+        log.append("лиса", "fox");
+        log.close();
+        try (FileChannel channel = FileChannel.open(dir.resolve(DeltaLog.LOG), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        log = new DeltaLog(dir, false);
+        assertEquals(changes("кошка", "cat", "собака", "dog"), log.open());
+        log.append("волк", "wolf");
+        log.close();
+
+        log = new DeltaLog(dir, false);
+        assertEquals(changes("кошка", "cat", "собака", "dog", "волк", "wolf"), log.open());
+        log.close();
+    }
+
+    @Test
+    void recordWithBadChecksumDropsItAndEverythingAfterIt() throws IOException {
+        DeltaLog log = open();
+        log.append("кошка", "cat");
+        long first = Files.size(dir.resolve(DeltaLog.LOG));
+        log.append("собака", "dog");
+        log.append("лиса", null);
+        log.close();
+        // Байт в теле второй записи: длина цела, контрольная сумма не сходится
+        byte[] bytes = Files.readAllBytes(dir.resolve(DeltaLog.LOG));
+        bytes[(int) first + 2 * Integer.BYTES + 3] ^= 1;
+        Files.write(dir.resolve(DeltaLog.LOG), bytes);
+
+        log = new DeltaLog(dir, false);
+        assertEquals(changes("кошка", "cat"), log.open());
+        log.close();
+        assertEquals(first, Files.size(dir.resolve(DeltaLog.LOG)));
+    }
+
+    @Test
+    void rotateAfterFailedCompactionAppendsToFrozenLog() throws IOException {
+        DeltaLog log = open();
+        log.append("кошка", "cat");
+        log.rotate();
+        // Слияние не удалось: замороженный журнал остался, следующая заморозка дописывает к нему
+        log.append("собака", "dog");
+        log.append("кошка", "kitty");
+        log.rotate();
+
+        assertEquals(0, Files.size(dir.resolve(DeltaLog.LOG)));
+        assertEquals(List.of("кошка", "собака", "кошка"), keys(dir.resolve(DeltaLog.FROZEN)));
+        log.append("лиса", "fox");
+        log.close();
+
+        log = new DeltaLog(dir, false);
+        assertEquals(changes("кошка", "kitty", "собака", "dog", "лиса", "fox"), log.open());
+        log.writeCompacted(changes("кошка", "kitty", "собака", "dog"));
+        assertFalse(Files.exists(dir.resolve(DeltaLog.FROZEN)));
+        log.close();
+    }
+
+    @Test
+    void openReadsCompactedThenFrozenThenCurrentLog() throws IOException {
+        DeltaLog log = open();
+        log.append("кошка", "cat");
+        log.append("лиса", "fox");
+        log.rotate();
+        log.writeCompacted(changes("кошка", "cat", "лиса", "fox"));
+        log.append("кошка", "kitty");
+        log.append("волк", "wolf");
+        log.rotate();
+        // Сбой посреди слияния: есть и слитые изменения, и замороженный журнал, и текущий
+        log.append("кошка", "tomcat");
+        log.append("лиса", null);
+        log.close();
+        assertTrue(Files.exists(dir.resolve(DeltaLog.COMPACTED)));
+        assertTrue(Files.exists(dir.resolve(DeltaLog.FROZEN)));
+
+        log = new DeltaLog(dir, false);
+        LinkedHashMap<String, String> changes = log.open();
+        log.close();
+
+        // Последнее изменение ключа побеждает, порядок - первого изменения
+        assertEquals(changes("кошка", "tomcat", "лиса", null, "волк", "wolf"), changes);
+        assertEquals(List.of("кошка", "лиса", "волк"), new ArrayList<>(changes.keySet()));
+    }
+
+    private DeltaLog open() throws IOException {
+        DeltaLog log = new DeltaLog(dir, false);
+        assertTrue(log.open().isEmpty());
+        return log;
+    }
+
+    /**
+     * Ключи записей файла журнала по порядку.
+     */
+    private static List<String> keys(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        List<String> keys = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            int length = buffer.getInt();
+            buffer.getInt();
+            byte[] body = new byte[length];
+            buffer.get(body);
+            ByteBuffer record = ByteBuffer.wrap(body, 1, length - 1);
+            byte[] key = new byte[record.getInt()];
+            record.get(key);
+            keys.add(new String(key, StandardCharsets.UTF_8));
+        }
+        return keys;
+    }
+
+    private static LinkedHashMap<String, String> changes(String... keysAndValues) {
+        LinkedHashMap<String, String> changes = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            changes.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.config.ShardingProperties;
+import com.example.foreverrip.service.TextNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DictionaryLoaderTest {
+
+    private final DictionaryLoader loader = new DictionaryLoader(new TextNormalizer(new NormalizationProperties()));
+
+    @Test
+    void parsesNormalizedEntriesInFileOrder() throws IOException {
+        LinkedHashMap<String, String> entries = parse("""
+            # комментарий
+
+            Привет = Hello World\s
+            ВёЛкА\t=\tFIR  Tree
+            а=b=c
+            привет=hi
+            """);
+
+        assertEquals(List.of("привет", "вёлка", "а"), List.copyOf(entries.keySet()));
+        assertEquals("hi", entries.get("привет"));
+        assertEquals("fir  tree", entries.get("вёлка"));
+        assertEquals("b=c", entries.get("а"));
+    }
+
+    @Test
+    void fileAndApiNormalizeTheSameWay() throws IOException {
+        String word = " İSTANBUL Ёж ";
+        String translation = "İstanbuĺ Hedgehog";
+        LinkedHashMap<String, String> entries = parse(word + "=" + translation);
+
+        String key = loader.normalizeKey(word);
+        assertEquals("istanbul ёж", key);
+        assertEquals(loader.normalizeValue(translation), entries.get(key));
+        // Хранимые ключ и перевод уже окончательны
+        assertEquals(key, loader.normalizeKey(key));
+        assertEquals(entries.get(key), loader.normalizeValue(entries.get(key)));
+    }
+
+    @Test
+    void shardMarksExactKeysFoundInEarlierKeysOfWholeDictionary() throws IOException {
+        // Ключи из одного-двух слов; перед частью двухсловных стоит тот же ключ внутри более длинного
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            String key = "слово" + i % 40 + (i % 3 == 0 ? " слово" + (i + 7) % 50 : "");
+            if (i % 6 == 0) {
+                text.append("очень ").append(key).append(" давно=w").append(i).append('\n');
+            }
+            text.append(key).append("=v").append(i).append('\n');
+        }
+        DictionaryIndex whole = load(text.toString(), null);
+        int shadowed = 0;
+        for (String node : List.of("a", "b", "c")) {
+            ShardingProperties properties = new ShardingProperties();
+            properties.setNodes(List.of("a", "b", "c"));
+            properties.setNode(node);
+            DictionaryIndex shard = load(text.toString(), new ShardMembership(properties));
+            for (int entry = 0; entry < shard.size(); entry++) {
+                int first = whole.tokenEntry(shard.key(entry));
+                boolean expected = whole.rank(first) < shard.rank(entry);
+                assertEquals(expected, shard.shadowedElsewhere(entry), node + ": " + shard.key(entry));
+                shadowed += expected ? 1 : 0;
+            }
+        }
+        assertTrue(shadowed > 0);
+    }
+
+    private DictionaryIndex load(String text, ShardMembership shard) throws IOException {
+        return loader.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), "test", 1, shard);
+    }
+
+    private LinkedHashMap<String, String> parse(String text) throws IOException {
+        return loader.parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), "test");
+    }
+}
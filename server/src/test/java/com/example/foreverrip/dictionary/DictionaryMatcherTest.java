@@ -0,0 +1,185 @@
+package com.example.foreverrip.dictionary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Поиск по индексам против прежнего перебора записей с regex (complexRegexSearch до индексов),
+ * перенесенного сюда как есть: записи в порядке файла, первая с lookaround-совпадением,
+ * иначе последняя с {@code .*word.*}, иначе первая с {@code contains}.
+ * Слова - без метасимволов regex: их прежний поиск разбирал как шаблон, новый сравнивает буквально.
+ */
+class DictionaryMatcherTest {
+
+    private static final List<String> KEYS = List.of(
+        "большая собака",
+        "собака",
+        "кот",
+        "чёрный кот",
+        "кот учёный",
+        "котёнок",
+        "кошка",
+        "дикая кошка",
+        "ко",
+        "синий\tкит",
+        "кит",
+        "new york",
+        "york",
+        "в",
+        "рыба-меч");
+
+    /** Слово и ключ, который выбирал прежний перебор (null - перевод не найден). */
+    private static final String[][] CASES = {
+        // точный ключ, перед которым нет ключа с этим словом
+        {"большая собака", "большая собака"},
+        {"котёнок", "котёнок"},
+        {"кошка", "кошка"},
+        // слово внутри раньше стоящего ключа обгоняет точный ключ
+        {"собака", "большая собака"},
+        {"york", "new york"},
+        // из нескольких ключей со словом - первый по файлу
+        {"кот", "кот"},
+        {"учёный", "кот учёный"},
+        {"чёрный", "чёрный кот"},
+        {"дикая", "дикая кошка"},
+        {"new york", "new york"},
+        // табуляция - тоже граница слова
+        {"синий", "синий\tкит"},
+        {"кит", "синий\tкит"},
+        // подстрока: побеждает последняя по файлу, даже если раньше есть другие
+        {"ко", "ко"},
+        {"к", "кит"},
+        {"о", "ко"},
+        {"o", "york"},
+        {"кош", "дикая кошка"},
+        {"шка", "дикая кошка"},
+        {"отё", "котёнок"},
+        {"ака", "собака"},
+        {"or", "york"},
+        {"ыба", "рыба-меч"},
+        {"ий\tк", "синий\tкит"},
+        {"кот уч", "кот учёный"},
+        {"ая соб", "большая собака"},
+        // дефис - не граница слова
+        {"меч", "рыба-меч"},
+        {"рыба", "рыба-меч"},
+        // ничего
+        {"жираф", null},
+        {"кот кот", null},
+        {"ёё", null},
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tableMatchesBaselineScan() throws IOException {
+        LinkedHashMap<String, String> entries = entries(KEYS);
+        DictionaryIndex inMemory = inMemory(entries);
+        DictionaryIndex mapped = mapped(entries);
+        for (String[] row : CASES) {
+            String word = row[0];
+            assertEquals(row[1], baseline(word, entries), "baseline: " + word);
+            assertEquals(row[1], key(inMemory, inMemory.lookupEntry(word)), "in-memory: " + word);
+            assertEquals(row[1], key(mapped, mapped.lookupEntry(word)), "mapped: " + word);
+            assertEquals(row[1], key(inMemory, new DictionaryMatcher(KEYS.toArray(new String[0])).find(word)),
+                "matcher: " + word);
+        }
+    }
+
+    @Test
+    void randomDictionariesMatchBaselineScan() throws IOException {
+        Random random = new Random(7);
+        for (int round = 0; round < 30; round++) {
+            LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+            while (entries.size() < 200) {
+                entries.putIfAbsent(randomText(random, 1, 10), "v" + entries.size());
+            }
+            DictionaryIndex inMemory = inMemory(entries);
+            DictionaryIndex mapped = mapped(entries);
+            for (int i = 0; i < 500; i++) {
+                String word = randomText(random, 1, 5);
+                String expected = baseline(word, entries);
+                assertEquals(expected, key(inMemory, inMemory.lookupEntry(word)), "in-memory: " + word);
+                assertEquals(expected, key(mapped, mapped.lookupEntry(word)), "mapped: " + word);
+            }
+        }
+    }
+
+    /**
+     * Прежний complexRegexSearch; вместо перевода возвращает ключ выбранной записи.
+     */
+    private static String baseline(String word, Map<String, String> dictionary) {
+        String regex = "(?<=^|\\s)" + Pattern.quote(word) + "(?=\\s|$)";
+        Pattern pattern = Pattern.compile(regex);
+
+        String translation = null;
+        for (Map.Entry<String, String> entry : dictionary.entrySet()) {
+            String key = entry.getKey();
+            Matcher matcher = pattern.matcher(key);
+            if (matcher.find()) {
+                translation = key;
+                break;
+            }
+            Pattern additionalPattern = Pattern.compile(".*" + word + ".*");
+            Matcher additionalMatcher = additionalPattern.matcher(key);
+            if (additionalMatcher.matches()) {
+                translation = key;
+            }
+        }
+
+        if (translation == null) {
+            translation = dictionary.keySet().stream()
+                .filter(key -> key.contains(word))
+                .findFirst()
+                .orElse(null);
+        }
+        return translation;
+    }
+
+    /**
+     * Ключи из двух букв и пробела: много совпадений слов и подстрок, в том числе на краях ключа.
+     */
+    private static String randomText(Random random, int minLength, int maxLength) {
+        String alphabet = "аб ";
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString().strip().isEmpty() ? "а" : text.toString().strip();
+    }
+
+    private static String key(DictionaryIndex index, int entry) {
+        return entry == DictionaryIndex.NOT_FOUND ? null : index.key(entry);
+    }
+
+    private static LinkedHashMap<String, String> entries(List<String> keys) {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        for (String key : keys) {
+            entries.put(key, "v" + entries.size());
+        }
+        return entries;
+    }
+
+    private static DictionaryIndex inMemory(LinkedHashMap<String, String> entries) {
+        return new InMemoryDictionaryIndex(new LinkedHashMap<>(entries), null, "test", 1, System.nanoTime());
+    }
+
+    private DictionaryIndex mapped(LinkedHashMap<String, String> entries) throws IOException {
+        Path file = dir.resolve("dictionary.ripd");
+        CompiledDictionaryWriter.write(entries, 0, file);
+        return MappedDictionaryIndex.open(file, 1);
+    }
+}
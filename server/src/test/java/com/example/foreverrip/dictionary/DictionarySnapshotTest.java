@@ -0,0 +1,71 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.SnapshotProperties;
+import com.example.foreverrip.text.Script;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Снимок словаря используется только при совпадении и контрольной суммы источника,
+ * и отпечатка нормализации; иначе пересобирается.
+ */
+class DictionarySnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotWithSameSourceAndNormalizationIsReused() {
+        DictionarySnapshot snapshot = snapshot(Script.CYRILLIC);
+        snapshot.write(entries(), 7L);
+
+        MappedDictionaryIndex restored = snapshot.open(7L, 1);
+
+        assertNotNull(restored);
+        assertEquals("cat", restored.value(restored.exactEntry("кот")));
+    }
+
+    @Test
+    void snapshotOfAnotherSourceIsRebuilt() {
+        DictionarySnapshot snapshot = snapshot(Script.CYRILLIC);
+        snapshot.write(entries(), 7L);
+
+        assertNull(snapshot.open(8L, 1));
+    }
+
+    @Test
+    void snapshotWithOtherNormalizationIsRebuilt() {
+        snapshot(Script.CYRILLIC).write(entries(), 7L);
+
+        assertNull(snapshot(Script.LATIN).open(7L, 1));
+    }
+
+    @Test
+    void snapshotWithoutFingerprintIsRebuilt() throws IOException {
+        // Снимки, записанные до появления отпечатка, несут в заголовке 0
+        CompiledDictionaryWriter.write(entries(), 7L, dir.resolve(DictionarySnapshot.FILE_NAME));
+
+        assertNull(snapshot(Script.CYRILLIC).open(7L, 1));
+    }
+
+    private DictionarySnapshot snapshot(Script script) {
+        SnapshotProperties properties = new SnapshotProperties();
+        properties.setDirectory(dir);
+        return new DictionarySnapshot(properties, script);
+    }
+
+    private static LinkedHashMap<String, String> entries() {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        entries.put("кот", "cat");
+        entries.put("собака", "dog");
+        return entries;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.foreverrip.dictionary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Поиск по опечаткам ({@link FuzzyMatcher} по деревьям обоих видов индекса) против перебора
+ * всех ключей с расстоянием OSA, посчитанным полной таблицей.
+ */
+class FuzzyMatcherTest {
+
+    private static final String ALPHABET = "абвгде";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void distanceMatchesFullTable() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20_000; i++) {
+            String word = randomWord(random, 0, 7);
+            String key = randomWord(random, 0, 7);
+            for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+                int expected = Math.min(osa(word, key), maxDistance + 1);
+                assertEquals(expected, FuzzyMatcher.distance(word, key, maxDistance),
+                    word + " / " + key + " / " + maxDistance);
+            }
+        }
+    }
+
+    @Test
+    void transpositionIsOneEdit() {
+        assertEquals(1, FuzzyMatcher.distance("кошка", "кошак", 2));
+        assertEquals(1, FuzzyMatcher.distance("окшка", "кошка", 2));
+        // OSA не правит одну подстроку дважды: "ca" -> "abc" - три правки, а не две
+        assertEquals(3, FuzzyMatcher.distance("ca", "abc", 3));
+    }
+
+    @Test
+    void inMemoryIndexFindsClosestKey() {
+        Random random = new Random(2);
+        for (int round = 0; round < 20; round++) {
+            LinkedHashMap<String, String> entries = randomEntries(random, 300);
+            DictionaryIndex index = inMemory(entries);
+            assertClosest(random, entries, index);
+        }
+    }
+
+    @Test
+    void mappedIndexFindsClosestKey() throws IOException {
+        Random random = new Random(3);
+        for (int round = 0; round < 10; round++) {
+            LinkedHashMap<String, String> entries = randomEntries(random, 300);
+            Path file = dir.resolve("fuzzy-" + round + ".ripd");
+            CompiledDictionaryWriter.write(new LinkedHashMap<>(entries), 0, file);
+            assertClosest(random, entries, MappedDictionaryIndex.open(file, 1));
+        }
+    }
+
+    @Test
+    void tieGoesToEarlierKey() {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        entries.put("кошкб", "b");
+        entries.put("кошка", "a");
+        entries.put("кошкв", "c");
+        DictionaryIndex index = inMemory(entries);
+        assertEquals("кошкб", index.key(index.fuzzyEntry("кошкг", 1)));
+        assertEquals("кошка", index.key(index.fuzzyEntry("кошкаа", 1)));
+        assertEquals(DictionaryIndex.NOT_FOUND, index.fuzzyEntry("собака", 2));
+    }
+
+    private static void assertClosest(Random random, LinkedHashMap<String, String> entries, DictionaryIndex index) {
+        for (int query = 0; query < 200; query++) {
+            String word = randomWord(random, 1, 8);
+            for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+                String expected = bruteForce(entries, word, maxDistance);
+                int entry = index.fuzzyEntry(word, maxDistance);
+                String actual = entry == DictionaryIndex.NOT_FOUND ? null : index.key(entry);
+                assertEquals(expected, actual, word + " within " + maxDistance);
+            }
+        }
+    }
+
+    /**
+     * Ближайший ключ, при равном расстоянии - первый в словаре.
+     */
+    private static String bruteForce(LinkedHashMap<String, String> entries, String word, int maxDistance) {
+        String best = null;
+        int bestDistance = maxDistance + 1;
+        for (String key : entries.keySet()) {
+            int distance = osa(word, key);
+            if (distance < bestDistance) {
+                best = key;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Расстояние optimal string alignment (Дамерау-Левенштейн без повторной правки подстроки).
+     */
+    private static int osa(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static LinkedHashMap<String, String> randomEntries(Random random, int size) {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        while (entries.size() < size) {
+            String key = randomWord(random, 1, 9);
+            entries.putIfAbsent(key, "v" + entries.size());
+        }
+        return entries;
+    }
+
+    private static String randomWord(Random random, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return word.toString();
+    }
+
+    private static DictionaryIndex inMemory(LinkedHashMap<String, String> entries) {
+        return new InMemoryDictionaryIndex(new LinkedHashMap<>(entries), null, "test", 1, System.nanoTime());
+    }
+}
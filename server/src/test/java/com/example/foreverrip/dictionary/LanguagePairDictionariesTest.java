@@ -0,0 +1,187 @@
+package com.example.foreverrip.dictionary;
+
+import com.example.foreverrip.config.LanguagesProperties;
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.service.ScriptNormalizers;
+import com.example.foreverrip.service.TextNormalizer;
+import com.example.foreverrip.text.Script;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ленивая загрузка словарей пар, выгрузка дольше всех не использованных и нормализация по письменности.
+ */
+class LanguagePairDictionariesTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<LanguagePairEvictedEvent> evicted = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private LanguagePairDictionaries dictionaries;
+
+    @AfterEach
+    void tearDown() {
+        if (dictionaries != null) {
+            dictionaries.destroy();
+        }
+    }
+
+    @Test
+    void loadsOnFirstUseAndNormalizesByScript() throws IOException {
+        open(2, 1000);
+        LanguagePair greek = new LanguagePair("EL", "en");
+
+        assertEquals(0, dictionaries.residentPairs());
+        DictionaryIndex index = dictionaries.index(greek).join();
+
+        // Ключи сведены по правилам греческого: без ударений, с σ вместо конечной ς
+        String key = dictionaries.normalizer(greek).normalize("ΛΌΓΟΣ");
+        assertEquals("λογοσ", key);
+        assertEquals("word", index.value(index.exactEntry(key)));
+        assertSame(index, dictionaries.index(greek).join());
+        assertEquals(1, dictionaries.residentPairs());
+        assertEquals(1.0, registry.get("translation.languages.loads").counter().count());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPair() throws IOException, InterruptedException {
+        open(2, 1000);
+        LanguagePair de = new LanguagePair("de", "en");
+        LanguagePair el = new LanguagePair("el", "en");
+        LanguagePair fr = new LanguagePair("fr", "en");
+
+        DictionaryIndex german = dictionaries.index(de).join();
+        Thread.sleep(5);
+        dictionaries.index(el).join();
+        Thread.sleep(5);
+        // de использована позже el
+        dictionaries.index(de).join();
+        Thread.sleep(5);
+        dictionaries.index(fr).join();
+        await(() -> evicted.size() == 1);
+
+        assertEquals(2, dictionaries.residentPairs());
+        assertEquals(el, evicted.get(0).pair());
+        Thread.sleep(5);
+        assertSame(german, dictionaries.index(de).join());
+        // Выгруженная пара загружается заново, теперь дольше всех не использована fr
+        dictionaries.index(el).join();
+        await(() -> evicted.size() == 2);
+        assertEquals(fr, evicted.get(1).pair());
+        assertEquals(4.0, registry.get("translation.languages.loads").counter().count());
+    }
+
+    @Test
+    void boundsResidentEntries() throws IOException, InterruptedException {
+        open(8, 3);
+        LanguagePair de = new LanguagePair("de", "en");
+        LanguagePair el = new LanguagePair("el", "en");
+
+        dictionaries.index(de).join();
+        Thread.sleep(5);
+        dictionaries.index(el).join();
+        await(() -> evicted.size() == 1);
+
+        // В каждом словаре по две записи: вместе они не помещаются в три
+        assertEquals(1, dictionaries.residentPairs());
+        assertEquals(2, dictionaries.residentEntries());
+        assertEquals(de, evicted.get(0).pair());
+    }
+
+    @Test
+    void failedLoadIsRetried() throws IOException {
+        open(2, 1000);
+        LanguagePair missing = new LanguagePair("it", "en");
+
+        CompletionException failure = assertThrows(CompletionException.class,
+            () -> dictionaries.index(missing).join());
+        assertTrue(failure.getCause() instanceof UncheckedIOException);
+        assertEquals(0, dictionaries.residentPairs());
+
+        Files.writeString(dir.resolve("it-en.txt"), "casa=house\n");
+        DictionaryIndex index = dictionaries.index(missing).join();
+        assertNotEquals(DictionaryIndex.NOT_FOUND, index.exactEntry("casa"));
+    }
+
+    @Test
+    void compiledDictionaryWithOtherScriptsIsNotLoaded() throws IOException {
+        open(2, 1000);
+        Path text = dir.resolve("source.txt");
+        Files.writeString(text, "maison=house\n");
+        // Собран без письменностей - как основной словарь, CYRILLIC -> CYRILLIC
+        DictionaryCompiler.compile(text, dir.resolve("de-en.txt"));
+        DictionaryCompiler.compile(text, dir.resolve("fr-en.txt"), Script.LATIN, Script.LATIN);
+
+        CompletionException failure = assertThrows(CompletionException.class,
+            () -> dictionaries.index(new LanguagePair("de", "en")).join());
+        assertTrue(failure.getCause() instanceof UncheckedIOException);
+        assertTrue(failure.getCause().getMessage().contains("could not be loaded"));
+
+        DictionaryIndex index = dictionaries.index(new LanguagePair("fr", "en")).join();
+        assertEquals("house", index.value(index.exactEntry("maison")));
+        assertEquals(1, dictionaries.residentPairs());
+    }
+
+    @Test
+    void rejectsUnknownPairs() throws IOException {
+        open(2, 1000);
+
+        assertFalse(dictionaries.isConfigured(new LanguagePair("xx", "en")));
+        assertThrows(IllegalArgumentException.class, () -> dictionaries.index(new LanguagePair("xx", "en")));
+        assertThrows(IllegalArgumentException.class, () -> new LanguagePair("d1", "en"));
+        assertEquals(new LanguagePair("ru", "en"), dictionaries.defaultPair());
+    }
+
+    /**
+     * Словарь отдается запросам раньше, чем загрузчик выгрузит лишние пары.
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    private void open(int maxResidentPairs, long maxResidentEntries) throws IOException {
+        Files.writeString(dir.resolve("de-en.txt"), "Straße=street\nHaus=house\n");
+        Files.writeString(dir.resolve("el-en.txt"), "λόγος=word\nσπίτι=house\n");
+        Files.writeString(dir.resolve("fr-en.txt"), "maison=house\n");
+
+        LanguagesProperties properties = new LanguagesProperties();
+        properties.setMaxResidentPairs(maxResidentPairs);
+        properties.setMaxResidentEntries(maxResidentEntries);
+        properties.setLoaderThreads(1);
+        for (String from : List.of("de", "el", "fr", "it")) {
+            LanguagesProperties.Pair pair = new LanguagesProperties.Pair();
+            pair.setFrom(from);
+            pair.setTo("en");
+            pair.setLocation(dir.resolve(from + "-en.txt"));
+            properties.getPairs().add(pair);
+        }
+        NormalizationProperties normalization = new NormalizationProperties();
+        ScriptNormalizers normalizers = new ScriptNormalizers(new TextNormalizer(normalization), normalization);
+        dictionaries = new LanguagePairDictionaries(properties, normalizers,
+            event -> evicted.add((LanguagePairEvictedEvent) event), registry);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.foreverrip.dictionary;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PhraseAutomatonTest {
+
+    @Test
+    void reportsEveryKeyEndingAtWord() {
+        DictionaryIndex index = index("а б в", "x", "а б", "y", "в", "w", "б в г", "z");
+        PhraseAutomaton automaton = PhraseAutomaton.build(index);
+
+        assertEquals(List.of(), outputs(automaton, index, "а"));
+        assertEquals(List.of("а б"), outputs(automaton, index, "а", "б"));
+        assertEquals(List.of("а б в", "в"), outputs(automaton, index, "а", "б", "в"));
+        // Хвост "б в" продолжается до "б в г", хотя "а б в г" ключом не является
+        assertEquals(List.of("б в г"), outputs(automaton, index, "а", "б", "в", "г"));
+    }
+
+    @Test
+    void unknownWordBreaksPhrase() {
+        DictionaryIndex index = index("а б", "y");
+        PhraseAutomaton automaton = PhraseAutomaton.build(index);
+
+        assertEquals(PhraseAutomaton.UNKNOWN_WORD, automaton.word("д"));
+        int state = automaton.next(automaton.next(PhraseAutomaton.ROOT, automaton.word("а")),
+            PhraseAutomaton.UNKNOWN_WORD);
+        assertEquals(PhraseAutomaton.ROOT, state);
+        assertEquals(PhraseAutomaton.NONE, automaton.firstOutput(automaton.next(state, automaton.word("б"))));
+    }
+
+    @Test
+    void keysDifferingOnlyInSpacesShareState() {
+        DictionaryIndex index = index("доброе утро", "good morning", "доброе  утро", "morning!");
+        PhraseAutomaton automaton = PhraseAutomaton.build(index);
+
+        assertEquals(List.of("доброе утро"), outputs(automaton, index, "доброе", "утро"));
+    }
+
+    /**
+     * Ключи всех выходов после последнего из слов, от самого длинного.
+     */
+    private static List<String> outputs(PhraseAutomaton automaton, DictionaryIndex index, String... words) {
+        int state = PhraseAutomaton.ROOT;
+        for (String word : words) {
+            state = automaton.next(state, automaton.word(word));
+        }
+        List<String> keys = new ArrayList<>();
+        for (int o = automaton.firstOutput(state); o != PhraseAutomaton.NONE; o = automaton.nextOutput(o)) {
+            assertEquals(index.key(automaton.entry(o)).split(" +").length, automaton.depth(o));
+            keys.add(index.key(automaton.entry(o)));
+        }
+        return keys;
+    }
+
+    private static DictionaryIndex index(String... keysAndValues) {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            entries.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return new InMemoryDictionaryIndex(entries, null, "test", 1, System.nanoTime());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.ExecutionProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Отказ сверх лимита и подстройка лимита по задержке. Окно лимита - 100 мс реального времени,
+ * поэтому каждое окно здесь ждет его конца, а задержки задач задаются моментом их начала.
+ */
+class ConcurrencyLimitTest {
+
+    @Test
+    void fixedLimitShedsAboveMaxPending() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(properties(false, 3, 64));
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(3, limit.inFlight());
+
+        limit.release(System.nanoTime(), true);
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(3, limit.limit());
+    }
+
+    @Test
+    void initialLimitStaysWithinBounds() {
+        assertEquals(100, new ConcurrencyLimit(properties(true, 100, 500)).limit());
+        assertEquals(4, new ConcurrencyLimit(properties(true, 100, 1)).limit());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyGrows() throws InterruptedException {
+        ConcurrencyLimit limit = new ConcurrencyLimit(properties(true, 1024, 64));
+        window(limit, 32, TimeUnit.MILLISECONDS.toNanos(1));
+        window(limit, 32, TimeUnit.MILLISECONDS.toNanos(1));
+        int before = limit.limit();
+
+        for (int i = 0; i < 10; i++) {
+            window(limit, 32, TimeUnit.MILLISECONDS.toNanos(40));
+        }
+
+        assertTrue(limit.limit() < before * 3 / 4, "limit " + limit.limit() + " after " + before);
+        assertTrue(limit.limit() >= 4);
+        // Сверх сниженного лимита задачи сразу отклоняются
+        int accepted = 0;
+        while (limit.tryAcquire()) {
+            accepted++;
+        }
+        assertEquals(limit.limit(), accepted);
+    }
+
+    @Test
+    void limitGrowsWhileLatencyStaysLowUnderLoad() throws InterruptedException {
+        ConcurrencyLimit limit = new ConcurrencyLimit(properties(true, 1024, 16));
+        for (int i = 0; i < 5; i++) {
+            window(limit, Math.max(10, limit.limit()), TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        assertTrue(limit.limit() > 16, "limit " + limit.limit());
+        assertTrue(limit.limit() <= 1024);
+    }
+
+    @Test
+    void lightLoadDoesNotRaiseLimit() throws InterruptedException {
+        ConcurrencyLimit limit = new ConcurrencyLimit(properties(true, 1024, 64));
+        for (int i = 0; i < 4; i++) {
+            // По одной задаче за раз: узел ни разу не был загружен даже наполовину
+            Thread.sleep(101);
+            for (int task = 0; task < 12; task++) {
+                assertTrue(limit.tryAcquire());
+                limit.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1), true);
+            }
+        }
+
+        assertEquals(64, limit.limit());
+    }
+
+    /**
+     * Одно окно: {@code concurrency} задач одновременно, каждая длилась {@code latencyNanos}.
+     */
+    private static void window(ConcurrencyLimit limit, int concurrency, long latencyNanos)
+            throws InterruptedException {
+        Thread.sleep(101);
+        int acquired = 0;
+        while (acquired < concurrency && limit.tryAcquire()) {
+            acquired++;
+        }
+        long start = System.nanoTime() - latencyNanos;
+        for (int i = 0; i < acquired; i++) {
+            limit.release(start, true);
+        }
+    }
+
+    private static ExecutionProperties properties(boolean adaptive, int maxPending, int initialLimit) {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setMaxPending(maxPending);
+        properties.getLimit().setAdaptive(adaptive);
+        properties.getLimit().setInitialLimit(initialLimit);
+        return properties;
+    }
+}
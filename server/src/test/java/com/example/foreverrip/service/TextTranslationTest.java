@@ -0,0 +1,98 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.NormalizationProperties;
+import com.example.foreverrip.dictionary.DictionaryIndex;
+import com.example.foreverrip.dictionary.DictionaryLoader;
+import com.example.foreverrip.dictionary.PhraseAutomaton;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Перевод текста через {@link PhraseAutomaton}: самая левая и самая длинная фраза,
+ * и тот же результат при любом делении тела на куски, в том числе посреди символа UTF-8.
+ */
+class TextTranslationTest {
+
+    private static final String DICTIONARY = """
+        доброе утро=good morning
+        утро=morning
+        доброе=kind
+        добрый день=good afternoon
+        кот=cat
+        а б в=x
+        а б=y
+        б в г=z
+        """;
+
+    private final TextNormalizer normalizer = new TextNormalizer(new NormalizationProperties());
+    private final DictionaryIndex dictionary = load();
+    private final PhraseAutomaton automaton = PhraseAutomaton.build(dictionary);
+
+    @Test
+    void replacesLongestLeftmostPhrases() {
+        assertEquals("good morning, cat! good morning и добрый вечер",
+            translate("Доброе утро, кот! доброе   утро и добрый вечер"));
+        assertEquals("kind cat", translate("доброе кот"));
+        assertEquals("x г", translate("а б в г"));
+        assertEquals("y г", translate("а б г"));
+        // Самая левая фраза побеждает более длинную, начатую позже
+        assertEquals("y z", translate("а б б в г"));
+    }
+
+    @Test
+    void keepsGapsAndUnknownWords() {
+        assertEquals("  cat\n\tсобака  ", translate("  кот\n\tсобака  "));
+        assertEquals("", translate(""));
+    }
+
+    @Test
+    void splitsAnywhereInUtf8() {
+        String text = "Доброе утро, кот! доброе   утро и добрый день; а б в г ёж";
+        String expected = translate(text);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= bytes.length; split++) {
+            assertEquals(expected, translate(Arrays.copyOfRange(bytes, 0, split),
+                Arrays.copyOfRange(bytes, split, bytes.length)), "split at byte " + split);
+        }
+        byte[][] single = new byte[bytes.length][];
+        for (int i = 0; i < bytes.length; i++) {
+            single[i] = new byte[] {bytes[i]};
+        }
+        assertEquals(expected, translate(single));
+    }
+
+    @Test
+    void truncatedCharacterAtEndIsReplaced() {
+        byte[] bytes = "кот".getBytes(StandardCharsets.UTF_8);
+        assertEquals("ко\uFFFD", translate(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    private String translate(String text) {
+        return translate(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String translate(byte[]... chunks) {
+        TextTranslation translation = new TextTranslation(dictionary, automaton, normalizer);
+        StringBuilder out = new StringBuilder();
+        for (byte[] chunk : chunks) {
+            out.append(translation.translate(DefaultDataBufferFactory.sharedInstance.wrap(chunk)));
+        }
+        return out.append(translation.finish()).toString();
+    }
+
+    private DictionaryIndex load() {
+        try {
+            return new DictionaryLoader(normalizer).load(
+                new ByteArrayInputStream(DICTIONARY.getBytes(StandardCharsets.UTF_8)), "test", 1);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.foreverrip.service;
+
+import com.example.foreverrip.config.ExecutionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TranslationExecutorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TranslationExecutor executor = new TranslationExecutor(properties(), registry);
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void shedsTasksOverLimitWithRetryAfter() {
+        TranslationOverloadedException rejected = executor.call(() ->
+            assertThrows(TranslationOverloadedException.class, () -> executor.call(() -> "nested")));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        assertEquals("3", rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, registry.get("translation.execution.rejected").counter().count());
+        // Место освобождено, в том числе после отказа
+        assertEquals("next", executor.call(() -> "next"));
+    }
+
+    @Test
+    void reactiveTaskIsRejectedWhileSlotIsTaken() {
+        Throwable error = executor.call(() -> assertThrows(TranslationOverloadedException.class,
+            () -> executor.execute(() -> "nested").block()));
+
+        assertEquals(TranslationOverloadedException.class, error.getClass());
+        assertEquals("done", executor.execute(() -> "done").block());
+    }
+
+    private static ExecutionProperties properties() {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setThreads(1);
+        properties.setMaxPending(1);
+        properties.setRetryAfter(Duration.ofMillis(2500));
+        properties.getLimit().setAdaptive(false);
+        return properties;
+    }
+}